@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.benchmark;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import io.parsingdata.metal.data.ByteStream;
+
+/**
+ * A {@link ByteStream} over an array of bytes, so that benchmarks measure
+ * parsing and not reading from storage.
+ */
+public class ArrayByteStream implements ByteStream {
+
+    private final byte[] data;
+
+    public ArrayByteStream(final byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public byte[] read(final BigInteger offset, final int length) throws IOException {
+        return read(offset.longValueExact(), length);
+    }
+
+    @Override
+    public byte[] read(final long offset, final int length) throws IOException {
+        if (!isAvailable(offset, length)) {
+            throw new IOException("Data to read is not available.");
+        }
+        final byte[] output = new byte[length];
+        System.arraycopy(data, (int) offset, output, 0, length);
+        return output;
+    }
+
+    @Override
+    public ByteBuffer readBuffer(final long offset, final int length) throws IOException {
+        if (!isAvailable(offset, length)) {
+            throw new IOException("Data to read is not available.");
+        }
+        return ByteBuffer.wrap(data, (int) offset, length).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean isAvailable(final BigInteger offset, final BigInteger length) {
+        return offset.add(length).compareTo(BigInteger.valueOf(data.length)) <= 0;
+    }
+
+    @Override
+    public boolean isAvailable(final long offset, final long length) {
+        return offset >= 0 && length >= 0 && offset <= data.length && length <= data.length - offset;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + data.length + ")";
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.benchmark;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.foldLeft;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.mul;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.encoding.Encoding.DEFAULT_ENCODING;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.parsingdata.metal.Shorthand;
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.expression.Expression;
+import io.parsingdata.metal.expression.ExpressionCompiler;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+
+/**
+ * Evaluates reference-heavy expressions on a {@link ParseState} that contains
+ * <code>count</code> parsed values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionBenchmark {
+
+    private static final ValueExpression REF = ref("value");
+    private static final ValueExpression LAST = last(ref("value"));
+    private static final ValueExpression COUNT = count(ref("value"));
+    private static final ValueExpression FOLD = foldLeft(ref("value"), Shorthand::add);
+    private static final Expression PREDICATE = eqNum(add(mul(last(ref("value")), con(3)), con(7)), last(ref("value")));
+    private static final Expression COMPILED_PREDICATE = ExpressionCompiler.compile(PREDICATE);
+
+    @Param({ "16", "256", "4096" })
+    public int count;
+
+    private ParseState parseState;
+
+    @Setup
+    public void setup() {
+        final byte[] data = new byte[count * 4];
+        new Random(count).nextBytes(data);
+        parseState = rep(def("value", con(4))).parse(new Environment(createFromByteStream(new ArrayByteStream(data)), DEFAULT_ENCODING)).get();
+    }
+
+    @Benchmark
+    public ImmutableList<Value> evalRef() {
+        return REF.eval(parseState, DEFAULT_ENCODING);
+    }
+
+    @Benchmark
+    public ImmutableList<Value> evalLast() {
+        return LAST.eval(parseState, DEFAULT_ENCODING);
+    }
+
+    @Benchmark
+    public ImmutableList<Value> evalCount() {
+        return COUNT.eval(parseState, DEFAULT_ENCODING);
+    }
+
+    @Benchmark
+    public ImmutableList<Value> evalFold() {
+        return FOLD.eval(parseState, DEFAULT_ENCODING);
+    }
+
+    @Benchmark
+    public boolean evalPredicate() {
+        return PREDICATE.eval(parseState, DEFAULT_ENCODING);
+    }
+
+    @Benchmark
+    public boolean evalCompiledPredicate() {
+        return COMPILED_PREDICATE.eval(parseState, DEFAULT_ENCODING);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.benchmark;
+
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.encoding.Encoding.DEFAULT_ENCODING;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.format.JPEG;
+import io.parsingdata.metal.format.PNG;
+import io.parsingdata.metal.format.ZIP;
+import io.parsingdata.metal.token.CompiledToken;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.token.TokenCompiler;
+
+/**
+ * End-to-end parses of the bundled formats. The <code>scale</code> parameter
+ * multiplies the amount of structures in the input, so comparing the scores
+ * of different scales shows how parsing time grows with input size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    private static final CompiledToken COMPILED_ZIP = TokenCompiler.compile(ZIP.FORMAT);
+
+    @Param({ "1", "16", "256" })
+    public int scale;
+
+    private byte[] zip;
+    private byte[] png;
+    private byte[] jpeg;
+
+    @Setup
+    public void setup() {
+        zip = Inputs.zip(scale, 1024);
+        png = Inputs.png(scale, 1024);
+        jpeg = Inputs.jpeg(4, scale * 64);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseZip() {
+        return parse(ZIP.FORMAT, zip);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseCompiledZip() {
+        return COMPILED_ZIP.parse(createFromByteStream(new ArrayByteStream(zip)), DEFAULT_ENCODING);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parsePng() {
+        return parse(PNG.FORMAT, png);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseJpeg() {
+        return parse(JPEG.FORMAT, jpeg);
+    }
+
+    private static Optional<ParseState> parse(final Token token, final byte[] data) {
+        return token.parse(new Environment(createFromByteStream(new ArrayByteStream(data)), DEFAULT_ENCODING));
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Generates valid inputs of a configurable size for the formats in the
+ * <code>metal-formats</code> module. The content is pseudo-random but
+ * deterministic, so that repeated runs parse the same input.
+ */
+public final class Inputs {
+
+    private static final long SEED = 0x6d6574616cL;
+
+    private Inputs() {}
+
+    public static byte[] png(final int chunkCount, final int chunkSize) {
+        final Random random = new Random(SEED);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.writeBytes(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a });
+        for (int i = 0; i < chunkCount; i++) {
+            final byte[] type = "IDAT".getBytes(StandardCharsets.US_ASCII);
+            final byte[] data = randomBytes(random, chunkSize);
+            final CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(data);
+            output.writeBytes(bigEndian(chunkSize));
+            output.writeBytes(type);
+            output.writeBytes(data);
+            output.writeBytes(bigEndian((int) crc.getValue()));
+        }
+        output.writeBytes(bigEndian(0));
+        output.writeBytes("IEND".getBytes(StandardCharsets.US_ASCII));
+        output.writeBytes(new byte[] { (byte) 0xae, 0x42, 0x60, (byte) 0x82 });
+        return output.toByteArray();
+    }
+
+    public static byte[] zip(final int fileCount, final int fileSize) {
+        final Random random = new Random(SEED);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        for (int i = 0; i < fileCount; i++) {
+            final byte[] name = ("file" + i).getBytes(StandardCharsets.US_ASCII);
+            // Alternate between stored random data and deflated compressible data.
+            final boolean deflate = i % 2 == 1;
+            final byte[] data = deflate ? repeatedBytes(random, fileSize) : randomBytes(random, fileSize);
+            final byte[] stored = deflate ? deflate(data) : data;
+            final CRC32 crc = new CRC32();
+            crc.update(data);
+            final int offset = output.size();
+            output.writeBytes(littleEndian(0x04034b50));
+            output.writeBytes(fileHeader(deflate, (int) crc.getValue(), stored.length, data.length, name.length));
+            output.writeBytes(name);
+            output.writeBytes(stored);
+            directory.writeBytes(littleEndian(0x02014b50));
+            directory.writeBytes(shortLittleEndian(20));
+            directory.writeBytes(fileHeader(deflate, (int) crc.getValue(), stored.length, data.length, name.length));
+            directory.writeBytes(shortLittleEndian(0)); // file comment size
+            directory.writeBytes(shortLittleEndian(0)); // file disk
+            directory.writeBytes(shortLittleEndian(0)); // internal file attributes
+            directory.writeBytes(littleEndian(0)); // external file attributes
+            directory.writeBytes(littleEndian(offset));
+            directory.writeBytes(name);
+        }
+        final int directoryOffset = output.size();
+        output.writeBytes(directory.toByteArray());
+        output.writeBytes(littleEndian(0x06054b50));
+        output.writeBytes(shortLittleEndian(0)); // disk number
+        output.writeBytes(shortLittleEndian(0)); // directory disk
+        output.writeBytes(shortLittleEndian(fileCount));
+        output.writeBytes(shortLittleEndian(fileCount));
+        output.writeBytes(littleEndian(directory.size()));
+        output.writeBytes(littleEndian(directoryOffset));
+        output.writeBytes(shortLittleEndian(0)); // comment size
+        return output.toByteArray();
+    }
+
+    private static byte[] fileHeader(final boolean deflate, final int crc, final int compressedSize, final int uncompressedSize, final int nameSize) {
+        return ByteBuffer.allocate(26).order(ByteOrder.LITTLE_ENDIAN)
+            .putShort((short) 20) // extract version
+            .putShort((short) 0) // bit flag
+            .putShort((short) (deflate ? 8 : 0))
+            .putShort((short) 0) // last modification time
+            .putShort((short) 0) // last modification date
+            .putInt(crc)
+            .putInt(compressedSize)
+            .putInt(uncompressedSize)
+            .putShort((short) nameSize)
+            .putShort((short) 0) // extra field size
+            .array();
+    }
+
+    public static byte[] jpeg(final int segmentCount, final int scanSize) {
+        final Random random = new Random(SEED);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.writeBytes(new byte[] { (byte) 0xff, (byte) 0xd8 });
+        for (int i = 0; i < segmentCount; i++) {
+            final byte[] payload = randomBytes(random, 16);
+            output.writeBytes(new byte[] { (byte) 0xff, (byte) 0xe0 });
+            output.writeBytes(shortBigEndian(payload.length + 2));
+            output.writeBytes(payload);
+        }
+        output.writeBytes(new byte[] { (byte) 0xff, (byte) 0xda });
+        output.writeBytes(shortBigEndian(12));
+        output.writeBytes(randomBytes(random, 10));
+        for (int i = 0; i < scanSize; i++) {
+            final int value = random.nextInt(256);
+            if (value == 0xff) {
+                output.writeBytes(new byte[] { (byte) 0xff, 0x00 });
+            } else {
+                output.write(value);
+            }
+        }
+        output.writeBytes(new byte[] { (byte) 0xff, (byte) 0xd9 });
+        return output.toByteArray();
+    }
+
+    private static byte[] randomBytes(final Random random, final int size) {
+        final byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private static byte[] repeatedBytes(final Random random, final int size) {
+        final byte[] pattern = randomBytes(random, 16);
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = pattern[i % pattern.length];
+        }
+        return data;
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return output.toByteArray();
+    }
+
+    private static byte[] bigEndian(final int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+    }
+
+    private static byte[] shortBigEndian(final int value) {
+        return ByteBuffer.allocate(Short.BYTES).putShort((short) value).array();
+    }
+
+    private static byte[] littleEndian(final int value) {
+        return ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static byte[] shortLittleEndian(final int value) {
+        return ByteBuffer.allocate(Short.BYTES).order(ByteOrder.LITTLE_ENDIAN).putShort((short) value).array();
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.benchmark;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Shorthand.until;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.encoding.Encoding.DEFAULT_ENCODING;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.token.Token;
+
+/**
+ * Parses inputs of <code>size</code> bytes with a single kind of token, to
+ * measure the cost of each token in isolation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class TokenBenchmark {
+
+    private static final Token DEF = rep(def("value", con(4)));
+    private static final Token SEQ = rep(seq(def("a", con(1)), def("b", con(1)), def("c", con(2))));
+    private static final Token CHO = rep(cho(def("zero", con(1), eq(con(0))), def("one", con(1), eq(con(1))), def("other", con(1))));
+    private static final Token UNTIL = until("text", def("terminator", con(1), eq(con(0))));
+
+    @Param({ "256", "4096", "65536" })
+    public int size;
+
+    private byte[] data;
+    private byte[] text;
+    private byte[] pointers;
+    private Token sub;
+    private Token tie;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(size);
+        data = new byte[size];
+        random.nextBytes(data);
+        text = new byte[size];
+        for (int i = 0; i < size - 1; i++) {
+            text[i] = (byte) (1 + random.nextInt(255));
+        }
+        // A table of pointers, followed by the values they point to in reverse order.
+        final int count = size / 8;
+        final ByteBuffer table = ByteBuffer.allocate(count * 8);
+        for (int i = 0; i < count; i++) {
+            table.putInt((count * 2 - 1 - i) * 4);
+        }
+        pointers = table.array();
+        sub = seq(repn(def("pointer", con(4)), con(count)), sub(def("target", con(4)), ref("pointer")));
+        tie = seq(def("block", con(size)), tie(DEF, last(ref("block"))));
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseDef() {
+        return parse(DEF, data);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseSeq() {
+        return parse(SEQ, data);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseCho() {
+        return parse(CHO, data);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseUntil() {
+        return parse(UNTIL, text);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseSub() {
+        return parse(sub, pointers);
+    }
+
+    @Benchmark
+    public Optional<ParseState> parseTie() {
+        return parse(tie, data);
+    }
+
+    private static Optional<ParseState> parse(final Token token, final byte[] data) {
+        return token.parse(new Environment(createFromByteStream(new ArrayByteStream(data)), DEFAULT_ENCODING));
+    }
+
+}
@@ -48,6 +48,7 @@ import io.parsingdata.metal.expression.value.ConstantFactory;
 import io.parsingdata.metal.expression.value.CoreValue;
 import io.parsingdata.metal.expression.value.Elvis;
 import io.parsingdata.metal.expression.value.Expand;
+import io.parsingdata.metal.expression.value.Find;
 import io.parsingdata.metal.expression.value.FoldCat;
 import io.parsingdata.metal.expression.value.FoldLeft;
 import io.parsingdata.metal.expression.value.FoldRight;
@@ -82,6 +83,7 @@ import io.parsingdata.metal.token.Post;
 import io.parsingdata.metal.token.Pre;
 import io.parsingdata.metal.token.Rep;
 import io.parsingdata.metal.token.RepN;
+import io.parsingdata.metal.token.Scan;
 import io.parsingdata.metal.token.Seq;
 import io.parsingdata.metal.token.Tie;
 import io.parsingdata.metal.token.Token;
@@ -121,6 +123,10 @@ public final class Shorthand {
     public static Token repn(final String name, final Token token, final SingleValueExpression n) { return repn(name, token, n, null); }
     public static Token repn(final Token token, final SingleValueExpression n, final Encoding encoding) { return repn(NO_NAME, token, n, encoding); }
     public static Token repn(final Token token, final SingleValueExpression n) { return repn(token, n, null); }
+    public static Token prepn(final String name, final Token token, final SingleValueExpression n, final Encoding encoding) { return new RepN(name, token, n, encoding, true); }
+    public static Token prepn(final String name, final Token token, final SingleValueExpression n) { return prepn(name, token, n, null); }
+    public static Token prepn(final Token token, final SingleValueExpression n, final Encoding encoding) { return prepn(NO_NAME, token, n, encoding); }
+    public static Token prepn(final Token token, final SingleValueExpression n) { return prepn(token, n, null); }
     public static Token seq(final String name, final Encoding encoding, final Token token1, final Token token2, final Token... tokens) { return new Seq(name, encoding, token1, token2, tokens); }
     public static Token seq(final String name, final Token token1, final Token token2, final Token... tokens) { return seq(name, null, token1, token2, tokens); }
     public static Token seq(final Encoding encoding, final Token token1, final Token token2, final Token... tokens) { return seq(NO_NAME, encoding, token1, token2, tokens); }
@@ -129,6 +135,10 @@ public final class Shorthand {
     public static Token sub(final String name, final Token token, final ValueExpression address) { return sub(name, token, address, null); }
     public static Token sub(final Token token, final ValueExpression address, final Encoding encoding) { return sub(NO_NAME, token, address, encoding); }
     public static Token sub(final Token token, final ValueExpression address) { return sub(token, address, null); }
+    public static Token psub(final String name, final Token token, final ValueExpression address, final Encoding encoding) { return new io.parsingdata.metal.token.Sub(name, token, address, encoding, true); }
+    public static Token psub(final String name, final Token token, final ValueExpression address) { return psub(name, token, address, null); }
+    public static Token psub(final Token token, final ValueExpression address, final Encoding encoding) { return psub(NO_NAME, token, address, encoding); }
+    public static Token psub(final Token token, final ValueExpression address) { return psub(token, address, null); }
     public static Token pre(final String name, final Token token, final Expression predicate, final Encoding encoding) { return new Pre(name, token, predicate, encoding); }
     public static Token pre(final String name, final Token token, final Expression predicate) { return pre(name, token, predicate, null); }
     public static Token pre(final Token token, final Expression predicate, final Encoding encoding) { return pre(NO_NAME, token, predicate, encoding); }
@@ -158,6 +168,12 @@ public final class Shorthand {
     public static Token until(final String name, final ValueExpression initialSize, final Token terminator) { return until(name, initialSize, null, terminator, null); }
     public static Token until(final String name, final Token terminator, final Encoding encoding) { return until(name, null, terminator, encoding); }
     public static Token until(final String name, final Token terminator) { return until(name, terminator, null); }
+    public static Token scan(final String name, final Expression predicate, final SingleValueExpression escapeSize, final Expression escape, final Encoding encoding) { return new Scan(name, predicate, escapeSize, escape, encoding); }
+    public static Token scan(final String name, final Expression predicate, final SingleValueExpression escapeSize, final Expression escape) { return scan(name, predicate, escapeSize, escape, null); }
+    public static Token scan(final String name, final Expression predicate, final long escapeSize, final Expression escape, final Encoding encoding) { return scan(name, predicate, con(escapeSize), escape, encoding); }
+    public static Token scan(final String name, final Expression predicate, final long escapeSize, final Expression escape) { return scan(name, predicate, escapeSize, escape, null); }
+    public static Token scan(final String name, final Expression predicate, final Encoding encoding) { return scan(name, predicate, null, null, encoding); }
+    public static Token scan(final String name, final Expression predicate) { return scan(name, predicate, (Encoding)null); }
     public static Token when(final String name, final Token token, final Expression predicate, final Encoding encoding) { return cho(name, encoding, pre(def(EMPTY_NAME, 0), not(predicate)), token); }
     public static Token when(final String name, final Token token, final Expression predicate) { return when(name, token, predicate, null); }
     public static Token when(final Token token, final Expression predicate, final Encoding encoding) { return when(EMPTY_NAME, token, predicate, encoding); }
@@ -190,8 +206,8 @@ public final class Shorthand {
     public static DefinitionRef ref(final Token definition, final ValueExpression limit) { return new DefinitionRef(definition, limit); }
     public static SingleValueExpression first(final ValueExpression operand) { return new First(operand); }
     public static SingleValueExpression last(final ValueExpression operand) { return new Last(operand); }
-    public static SingleValueExpression last(final NameRef operand) { return new Last(new NameRef(operand.reference, con(1))); }
-    public static SingleValueExpression last(final DefinitionRef operand) { return new Last(new DefinitionRef(operand.reference, con(1))); }
+    public static SingleValueExpression last(final NameRef operand) { return new Last(new NameRef(operand.reference)); }
+    public static SingleValueExpression last(final DefinitionRef operand) { return new Last(new DefinitionRef(operand.reference)); }
     public static ValueExpression nth(final ValueExpression values, final ValueExpression indices) { return new Nth(values, indices); }
     public static ValueExpression offset(final ValueExpression operand) { return new Offset(operand); }
     public static SingleValueExpression iteration(final int level) { return iteration(con(level)); }
@@ -211,6 +227,8 @@ public final class Shorthand {
     public static BinaryValueExpression mapLeft(final BiFunction<ValueExpression, ValueExpression, BinaryValueExpression> func, final ValueExpression left, final ValueExpression rightExpand) { return func.apply(left, exp(rightExpand, count(left))); }
     public static BinaryValueExpression mapRight(final BiFunction<ValueExpression, ValueExpression, BinaryValueExpression> func, final ValueExpression leftExpand, final ValueExpression right) { return func.apply(exp(leftExpand, count(right)), right); }
     public static ValueExpression bytes(final ValueExpression operand) { return new Bytes(operand); }
+    public static ValueExpression find(final ValueExpression patterns, final SingleValueExpression size) { return new Find(patterns, size); }
+    public static ValueExpression find(final ValueExpression patterns) { return find(patterns, null); }
     public static ValueExpression scope(final ValueExpression scopedValueExpression, final SingleValueExpression scopeSize) { return new Scope(scopedValueExpression, scopeSize); }
 
     public static BinaryLogicalExpression and(final Expression left, final Expression right) { return new And(left, right); }
@@ -75,6 +75,13 @@ public final class Util {
         return argument;
     }
 
+    public static long checkNotNegative(final long argument, final String name) {
+        if (argument < 0) {
+            throw new IllegalArgumentException(format("Argument %s may not be negative.", name));
+        }
+        return argument;
+    }
+
     public static String format(final String format, final Object... args) {
         return String.format(Locale.ENGLISH, format, args);
     }
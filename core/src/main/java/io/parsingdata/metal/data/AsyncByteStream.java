@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An input that is read asynchronously, such as an object in a remote store.
+ * <p>
+ * A read returns immediately with a future that completes with the data, so
+ * that multiple reads can be in flight at the same time. A failed read
+ * completes the future exceptionally, preferably with an
+ * {@link java.io.IOException}. Whether data is available must be known
+ * without reading, typically from a size that is obtained in advance.
+ * <p>
+ * Parsing requires a {@link ByteStream}, which
+ * {@link ReadAheadByteStream} provides on top of an AsyncByteStream.
+ */
+public interface AsyncByteStream {
+
+    /**
+     * @param offset the offset of the data to read
+     * @param length the amount of bytes to read, which must be available
+     * @return a future that completes with a buffer holding the
+     * <code>length</code> bytes at <code>offset</code> between its position
+     * and its limit
+     */
+    CompletableFuture<ByteBuffer> read(long offset, int length);
+
+    boolean isAvailable(long offset, long length);
+
+}
@@ -18,6 +18,7 @@ package io.parsingdata.metal.data;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 public interface ByteStream {
 
@@ -25,4 +26,16 @@ public interface ByteStream {
 
     boolean isAvailable(BigInteger offset, BigInteger length);
 
+    default byte[] read(final long offset, final int length) throws IOException {
+        return read(BigInteger.valueOf(offset), length);
+    }
+
+    default boolean isAvailable(final long offset, final long length) {
+        return isAvailable(BigInteger.valueOf(offset), BigInteger.valueOf(length));
+    }
+
+    default ByteBuffer readBuffer(final long offset, final int length) throws IOException {
+        return ByteBuffer.wrap(read(offset, length)).asReadOnlyBuffer();
+    }
+
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.format;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link ByteStream} that caches the data of another ByteStream.
+ * <p>
+ * The <code>input</code> is read in aligned blocks of <code>blockSize</code>
+ * bytes. At most <code>blockCount</code> blocks are kept, evicting the least
+ * recently used block when the cache is full. When a read requires multiple
+ * adjacent blocks that are not cached, they are fetched from the
+ * <code>input</code> using a single read. Reads that span more blocks than
+ * the cache can hold bypass the cache.
+ * <p>
+ * The amount of block lookups that were served from the cache and the amount
+ * that required a read from the <code>input</code> are counted, to allow
+ * sizing the cache for a specific workload.
+ */
+public class CachingByteStream implements ByteStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    public static final int DEFAULT_BLOCK_COUNT = 256;
+
+    public final ByteStream input;
+    public final int blockSize;
+    public final int blockCount;
+
+    private final Map<Long, byte[]> blocks;
+    private long hits;
+    private long misses;
+
+    public CachingByteStream(final ByteStream input, final int blockSize, final int blockCount) {
+        this.input = checkNotNull(input, "input");
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Argument blockSize must be positive.");
+        }
+        if (blockCount <= 0) {
+            throw new IllegalArgumentException("Argument blockCount must be positive.");
+        }
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+                return size() > blockCount;
+            }
+        };
+    }
+
+    public CachingByteStream(final ByteStream input) {
+        this(input, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT);
+    }
+
+    @Override
+    public byte[] read(final BigInteger offset, final int length) throws IOException {
+        return read(offset.longValueExact(), length);
+    }
+
+    @Override
+    public byte[] read(final long start, final int length) throws IOException {
+        final long end = start + length;
+        if (length == 0) {
+            return input.read(start, length);
+        }
+        final long firstBlock = start / blockSize;
+        final byte[][] found = new byte[(int) ((end - 1) / blockSize - firstBlock + 1)][];
+        if (found.length > blockCount) {
+            synchronized (blocks) {
+                misses += found.length;
+            }
+            return input.read(start, length);
+        }
+        lookup(firstBlock, found);
+        for (int i = 0; i < found.length;) {
+            if (found[i] != null) {
+                i++;
+                continue;
+            }
+            final int runStart = i;
+            while (i < found.length && found[i] == null) {
+                i++;
+            }
+            fetch(firstBlock, runStart, i - runStart, found);
+        }
+        return copy(start, length, firstBlock, found);
+    }
+
+    private void lookup(final long firstBlock, final byte[][] found) {
+        synchronized (blocks) {
+            for (int i = 0; i < found.length; i++) {
+                found[i] = blocks.get(firstBlock + i);
+                if (found[i] == null) {
+                    misses++;
+                } else {
+                    hits++;
+                }
+            }
+        }
+    }
+
+    private void fetch(final long firstBlock, final int index, final int count, final byte[][] found) throws IOException {
+        final long position = (firstBlock + index) * blockSize;
+        final int runLength = availableLength(position, Math.toIntExact((long) count * blockSize));
+        final byte[] data = input.read(position, runLength);
+        synchronized (blocks) {
+            for (int i = 0; i < count && i * blockSize < runLength; i++) {
+                found[index + i] = Arrays.copyOfRange(data, i * blockSize, Math.min((i + 1) * blockSize, runLength));
+                blocks.put(firstBlock + index + i, found[index + i]);
+            }
+        }
+    }
+
+    private int availableLength(final long position, final int maxLength) {
+        if (input.isAvailable(position, maxLength)) {
+            return maxLength;
+        }
+        // Only the final block of the input can be partial, so search for its actual length.
+        int low = 0;
+        int high = maxLength - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (input.isAvailable(position, middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private byte[] copy(final long start, final int length, final long firstBlock, final byte[][] found) throws IOException {
+        final byte[] output = new byte[length];
+        int copied = 0;
+        for (int i = 0; i < found.length; i++) {
+            final int blockOffset = i == 0 ? (int) (start - firstBlock * blockSize) : 0;
+            final int toCopy = Math.min(length - copied, blockSize - blockOffset);
+            if (found[i] == null || found[i].length < blockOffset + toCopy) {
+                throw new IOException(format("Data to read is not available (offset=%d;length=%d;input=%s).", start, length, input));
+            }
+            System.arraycopy(found[i], blockOffset, output, copied, toCopy);
+            copied += toCopy;
+        }
+        return output;
+    }
+
+    @Override
+    public boolean isAvailable(final BigInteger offset, final BigInteger length) {
+        return input.isAvailable(offset, length);
+    }
+
+    @Override
+    public boolean isAvailable(final long offset, final long length) {
+        return input.isAvailable(offset, length);
+    }
+
+    public long getHits() {
+        synchronized (blocks) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (blocks) {
+            return misses;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + input + ";blockSize=" + blockSize + ";blockCount=" + blockCount + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(input, ((CachingByteStream)obj).input)
+            && Objects.equals(blockSize, ((CachingByteStream)obj).blockSize)
+            && Objects.equals(blockCount, ((CachingByteStream)obj).blockCount);
+        // The cached blocks and counters are excluded from equals() and hashCode() because they are cached data.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), input, blockSize, blockCount);
+    }
+
+}
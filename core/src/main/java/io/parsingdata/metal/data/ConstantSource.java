@@ -22,6 +22,7 @@ import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.format;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -50,6 +51,31 @@ public class ConstantSource extends Source {
         return checkNotNegative(length, "length").add(checkNotNegative(offset, "offset")).compareTo(BigInteger.valueOf(data.length)) <= 0;
     }
 
+    @Override
+    protected byte[] getData(final long offset, final int length) {
+        if (!isAvailable(offset, length)) {
+            throw new IllegalStateException(format("Data to read is not available ([offset=%d;length=%d;source=%s).", offset, length, this));
+        }
+        final byte[] outputData = new byte[length];
+        System.arraycopy(data, (int) offset, outputData, 0, length);
+        return outputData;
+    }
+
+    @Override
+    protected ByteBuffer getBuffer(final long offset, final int length) {
+        if (!isAvailable(offset, length)) {
+            throw new IllegalStateException(format("Data to read is not available ([offset=%d;length=%d;source=%s).", offset, length, this));
+        }
+        return ByteBuffer.wrap(data, (int) offset, length).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    protected boolean isAvailable(final long offset, final long length) {
+        checkNotNegative(offset, "offset");
+        checkNotNegative(length, "length");
+        return offset <= data.length && length <= data.length - offset;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(0x" + bytesToHexString(data) + ")";
@@ -24,6 +24,7 @@ import static io.parsingdata.metal.Util.format;
 import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import io.parsingdata.metal.Trampoline;
@@ -39,7 +40,7 @@ public class DataExpressionSource extends Source {
     public final ParseState parseState;
     public final Encoding encoding;
 
-    private byte[] cache = null;
+    private volatile byte[] cache = null;
 
     public DataExpressionSource(final ValueExpression dataExpression, final int index, final ParseState parseState, final Encoding encoding) {
         this.dataExpression = checkNotNull(dataExpression, "dataExpression");
@@ -65,19 +66,53 @@ public class DataExpressionSource extends Source {
         return checkNotNegative(offset, "offset").add(checkNotNegative(length, "length")).compareTo(BigInteger.valueOf(getValue().length)) <= 0;
     }
 
-    private synchronized byte[] getValue() {
-        if (cache == null) {
-            final ImmutableList<Value> results = dataExpression.eval(parseState, encoding);
-            if (results.size <= index) {
-                throw new IllegalStateException(format("ValueExpression dataExpression yields %d result(s) (expected at least %d).", results.size, index+1));
-            }
-            final Value cacheValue = getValueAtIndex(results, index, 0).computeResult();
-            if (cacheValue.equals(NOT_A_VALUE)) {
-                throw new IllegalStateException(format("ValueExpression dataExpression yields NOT_A_VALUE at index %d.", index));
-            }
-            cache = cacheValue.value();
+    @Override
+    protected byte[] getData(final long offset, final int length) {
+        final byte[] outputData = new byte[length];
+        getBuffer(offset, length).get(outputData);
+        return outputData;
+    }
+
+    @Override
+    protected ByteBuffer getBuffer(final long offset, final int length) {
+        checkNotNegative(offset, "offset");
+        checkNotNegative(length, "length");
+        final byte[] data = getValue();
+        if (offset > data.length || length > data.length - offset) {
+            throw new IllegalStateException(format("Data to read is not available ([offset=%d;length=%d;source=%s).", offset, length, this));
+        }
+        return ByteBuffer.wrap(data, (int) offset, length).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    protected boolean isAvailable(final long offset, final long length) {
+        checkNotNegative(offset, "offset");
+        checkNotNegative(length, "length");
+        final int size = getValue().length;
+        return offset <= size && length <= size - offset;
+    }
+
+    /*
+     * The value is evaluated when it is first needed. Evaluation has no side
+     * effects and always yields the same value, so concurrent callers may
+     * each evaluate it and publish their result, without any locking.
+     */
+    private byte[] getValue() {
+        final byte[] cached = cache;
+        if (cached != null) {
+            return cached;
+        }
+        final ImmutableList<Value> results = dataExpression.eval(parseState, encoding);
+        if (results.size <= index) {
+            throw new IllegalStateException(format("ValueExpression dataExpression yields %d result(s) (expected at least %d).", results.size, index+1));
+        }
+        final Value cacheValue = getValueAtIndex(results, index, 0).computeResult();
+        if (cacheValue.equals(NOT_A_VALUE)) {
+            throw new IllegalStateException(format("ValueExpression dataExpression yields NOT_A_VALUE at index %d.", index));
         }
-        return cache;
+        final byte[] value = cacheValue.value();
+        cache = value;
+        return value;
     }
 
     private Trampoline<Value> getValueAtIndex(final ImmutableList<Value> results, final int index, final int current) {
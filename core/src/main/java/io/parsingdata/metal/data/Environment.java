@@ -18,10 +18,15 @@ package io.parsingdata.metal.data;
 
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.token.Token.NO_NAME;
-import static io.parsingdata.metal.token.Token.SEPARATOR;
+
+import java.math.BigInteger;
+import java.util.Optional;
 
 import io.parsingdata.metal.data.callback.Callbacks;
 import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.token.Budget;
+import io.parsingdata.metal.token.CompiledToken;
+import io.parsingdata.metal.token.MemoTable;
 import io.parsingdata.metal.token.Token;
 
 public class Environment {
@@ -30,12 +35,33 @@ public class Environment {
     public final ParseState parseState;
     public final Callbacks callbacks;
     public final Encoding encoding;
+    public final CompiledToken compiled;
+    public final MemoTable memo;
+    public final Budget budget;
 
-    public Environment(final String scope, final ParseState parseState, final Callbacks callbacks, final Encoding encoding) {
+    private final Slice buffer; // Null if no data is buffered.
+
+    private Environment(final String scope, final ParseState parseState, final Callbacks callbacks, final Encoding encoding, final CompiledToken compiled, final MemoTable memo, final Budget budget, final Slice buffer) {
         this.scope = checkNotNull(scope, "scope");
         this.parseState = checkNotNull(parseState, "parseState");
         this.callbacks = checkNotNull(callbacks, "callbacks");
         this.encoding = checkNotNull(encoding, "encoding");
+        this.compiled = checkNotNull(compiled, "compiled");
+        this.memo = checkNotNull(memo, "memo");
+        this.budget = checkNotNull(budget, "budget");
+        this.buffer = buffer;
+    }
+
+    public Environment(final String scope, final ParseState parseState, final Callbacks callbacks, final Encoding encoding, final CompiledToken compiled, final MemoTable memo) {
+        this(scope, parseState, callbacks, encoding, compiled, memo, Budget.NONE, null);
+    }
+
+    public Environment(final String scope, final ParseState parseState, final Callbacks callbacks, final Encoding encoding, final CompiledToken compiled) {
+        this(scope, parseState, callbacks, encoding, compiled, MemoTable.NONE);
+    }
+
+    public Environment(final String scope, final ParseState parseState, final Callbacks callbacks, final Encoding encoding) {
+        this(scope, parseState, callbacks, encoding, CompiledToken.NONE);
     }
 
     public Environment(final String scope, final ParseState parseState, final Encoding encoding) {
@@ -51,11 +77,40 @@ public class Environment {
     }
 
     public Environment withParseState(final ParseState parseState) {
-        return new Environment(scope, parseState, callbacks, encoding);
+        return new Environment(scope, parseState, callbacks, encoding, compiled, memo, budget, buffer);
     }
 
     public Environment withEncoding(final Encoding encoding) {
-        return new Environment(scope, parseState, callbacks, encoding);
+        return new Environment(scope, parseState, callbacks, encoding, compiled, memo, budget, buffer);
+    }
+
+    public Environment withMemo(final MemoTable memo) {
+        return new Environment(scope, parseState, callbacks, encoding, compiled, memo, budget, buffer);
+    }
+
+    public Environment withBudget(final Budget budget) {
+        return new Environment(scope, parseState, callbacks, encoding, compiled, memo, budget, buffer);
+    }
+
+    /**
+     * Returns an Environment that serves {@link #slice(BigInteger)} from the
+     * data held by <code>buffer</code> (see {@link Slice#load()}) where it
+     * covers the requested slice.
+     */
+    public Environment withBuffer(final Slice buffer) {
+        return new Environment(scope, parseState, callbacks, encoding, compiled, memo, budget, checkNotNull(buffer, "buffer"));
+    }
+
+    /**
+     * Returns the slice of <code>length</code> bytes at the current offset of
+     * the <code>parseState</code>, as {@link ParseState#slice(BigInteger)}
+     * does, but as a view on the buffered data if it covers the slice.
+     */
+    public Optional<Slice> slice(final BigInteger length) {
+        if (buffer != null && buffer.source == parseState.source) {
+            return buffer.subSlice(parseState.offset, length);
+        }
+        return parseState.slice(length);
     }
 
     public Environment addBranch(final Token token) {
@@ -63,7 +118,7 @@ public class Environment {
     }
 
     public Environment extendScope(final String name) {
-        return new Environment(scope + (scope.isEmpty() || name.isEmpty() ? NO_NAME : SEPARATOR) + name, parseState, callbacks, encoding);
+        return new Environment(compiled.extendScope(scope, name), parseState, callbacks, encoding, compiled, memo, budget, buffer);
     }
 
 }
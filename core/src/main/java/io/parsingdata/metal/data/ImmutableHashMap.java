@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+/**
+ * A persistent hash map, implemented as a hash array mapped trie.
+ * <p>
+ * Every {@link #put(Object, Object)} returns a new map that shares all
+ * unchanged nodes with the map it was derived from, so that all versions
+ * remain valid and adding a mapping only copies the path to it. Keys are
+ * compared using {@link Object#equals(Object)}, or by identity in a map
+ * created through {@link #emptyIdentity()}. The latter avoids computing the
+ * hash code of keys for which it is expensive.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+final class ImmutableHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Node EMPTY_NODE = new Node(0, new Object[0]);
+    private static final ImmutableHashMap<?, ?> EMPTY = new ImmutableHashMap<>(EMPTY_NODE, false);
+    private static final ImmutableHashMap<?, ?> EMPTY_IDENTITY = new ImmutableHashMap<>(EMPTY_NODE, true);
+
+    private final Node root;
+    private final boolean identity;
+
+    private ImmutableHashMap(final Node root, final boolean identity) {
+        this.root = root;
+        this.identity = identity;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> ImmutableHashMap<K, V> empty() {
+        return (ImmutableHashMap<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> ImmutableHashMap<K, V> emptyIdentity() {
+        return (ImmutableHashMap<K, V>) EMPTY_IDENTITY;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(final K key, final V defaultValue) {
+        final int hash = hash(checkNotNull(key, "key"));
+        Node node = root;
+        for (int shift = 0; shift < Integer.SIZE; shift += BITS) {
+            final int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return defaultValue;
+            }
+            final Object slot = node.slots[index(node.bitmap, bit)];
+            if (slot instanceof Entry) {
+                final Entry entry = (Entry) slot;
+                return entry.hash == hash && same(entry.key, key) ? (V) entry.value : defaultValue;
+            }
+            node = (Node) slot;
+        }
+        for (final Object slot : node.slots) {
+            if (same(((Entry) slot).key, key)) {
+                return (V) ((Entry) slot).value;
+            }
+        }
+        return defaultValue;
+    }
+
+    ImmutableHashMap<K, V> put(final K key, final V value) {
+        return new ImmutableHashMap<>(put(root, 0, new Entry(hash(checkNotNull(key, "key")), key, checkNotNull(value, "value"))), identity);
+    }
+
+    private int hash(final Object key) {
+        return identity ? System.identityHashCode(key) : key.hashCode();
+    }
+
+    private boolean same(final Object left, final Object right) {
+        return identity ? left == right : left.equals(right);
+    }
+
+    private Node put(final Node node, final int shift, final Entry entry) {
+        if (shift >= Integer.SIZE) {
+            // All bits of the hash are used, so this node holds the colliding entries in a plain array.
+            for (int i = 0; i < node.slots.length; i++) {
+                if (same(((Entry) node.slots[i]).key, entry.key)) {
+                    return new Node(node.bitmap, replace(node.slots, i, entry));
+                }
+            }
+            return new Node(node.bitmap, insert(node.slots, node.slots.length, entry));
+        }
+        final int bit = bit(entry.hash, shift);
+        final int index = index(node.bitmap, bit);
+        if ((node.bitmap & bit) == 0) {
+            return new Node(node.bitmap | bit, insert(node.slots, index, entry));
+        }
+        final Object slot = node.slots[index];
+        if (slot instanceof Node) {
+            return new Node(node.bitmap, replace(node.slots, index, put((Node) slot, shift + BITS, entry)));
+        }
+        final Entry existing = (Entry) slot;
+        if (existing.hash == entry.hash && same(existing.key, entry.key)) {
+            return new Node(node.bitmap, replace(node.slots, index, entry));
+        }
+        return new Node(node.bitmap, replace(node.slots, index, put(put(EMPTY_NODE, shift + BITS, existing), shift + BITS, entry)));
+    }
+
+    private static int bit(final int hash, final int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(final int bitmap, final int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static Object[] insert(final Object[] slots, final int index, final Object slot) {
+        final Object[] result = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, result, 0, index);
+        result[index] = slot;
+        System.arraycopy(slots, index, result, index + 1, slots.length - index);
+        return result;
+    }
+
+    private static Object[] replace(final Object[] slots, final int index, final Object slot) {
+        final Object[] result = slots.clone();
+        result[index] = slot;
+        return result;
+    }
+
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots; // Each slot holds either an Entry or a Node.
+
+        Node(final int bitmap, final Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    private static final class Entry {
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Entry(final int hash, final Object key, final Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+}
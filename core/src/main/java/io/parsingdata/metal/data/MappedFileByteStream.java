@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.format;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link ByteStream} that serves its data from a memory-mapped file.
+ * <p>
+ * Since a single {@link MappedByteBuffer} can address at most 2 GB, the file
+ * is mapped as a series of consecutive windows of <code>segmentSize</code>
+ * bytes each. Reads that cross a window boundary are assembled from the
+ * adjacent windows. All windows are mapped read-only when the stream is
+ * created, after which the stream is immutable and may be shared between
+ * threads.
+ */
+public class MappedFileByteStream implements ByteStream {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    public final Path path;
+    public final long size;
+    public final int segmentSize;
+
+    private final MappedByteBuffer[] segments; // Private because array content is mutable.
+
+    public MappedFileByteStream(final Path path, final int segmentSize) throws IOException {
+        this.path = checkNotNull(path, "path");
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Argument segmentSize must be positive.");
+        }
+        this.segmentSize = segmentSize;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            this.segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                final long position = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+        }
+    }
+
+    public MappedFileByteStream(final Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Override
+    public byte[] read(final BigInteger offset, final int length) throws IOException {
+        if (offset.bitLength() >= Long.SIZE) {
+            throw new IOException(format("Data to read is not available (offset=%d;length=%d;size=%d).", offset, length, size));
+        }
+        return read(offset.longValue(), length);
+    }
+
+    @Override
+    public byte[] read(final long offset, final int length) throws IOException {
+        if (!isAvailable(offset, length)) {
+            throw new IOException(format("Data to read is not available (offset=%d;length=%d;size=%d).", offset, length, size));
+        }
+        final byte[] data = new byte[length];
+        long position = offset;
+        int copied = 0;
+        while (copied < length) {
+            final int segmentOffset = (int) (position % segmentSize);
+            final int toCopy = Math.min(length - copied, segmentSize - segmentOffset);
+            // A duplicate is used so that concurrent reads do not share the position of the mapped buffer.
+            final ByteBuffer segment = segments[(int) (position / segmentSize)].duplicate();
+            segment.position(segmentOffset);
+            segment.get(data, copied, toCopy);
+            copied += toCopy;
+            position += toCopy;
+        }
+        return data;
+    }
+
+    @Override
+    public ByteBuffer readBuffer(final long offset, final int length) throws IOException {
+        if (!isAvailable(offset, length)) {
+            throw new IOException(format("Data to read is not available (offset=%d;length=%d;size=%d).", offset, length, size));
+        }
+        final int segmentOffset = (int) (offset % segmentSize);
+        if (length == 0 || segmentOffset + length > segmentSize) {
+            return ByteStream.super.readBuffer(offset, length);
+        }
+        final ByteBuffer segment = segments[(int) (offset / segmentSize)].duplicate();
+        segment.position(segmentOffset).limit(segmentOffset + length);
+        return segment.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean isAvailable(final BigInteger offset, final BigInteger length) {
+        return offset.bitLength() < Long.SIZE
+            && length.bitLength() < Long.SIZE
+            && isAvailable(offset.longValue(), length.longValue());
+    }
+
+    @Override
+    public boolean isAvailable(final long offset, final long length) {
+        return offset >= 0
+            && length >= 0
+            && offset <= size
+            && length <= size - offset;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + path + ";size=" + size + ";segmentSize=" + segmentSize + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(path, ((MappedFileByteStream)obj).path)
+            && Objects.equals(size, ((MappedFileByteStream)obj).size)
+            && Objects.equals(segmentSize, ((MappedFileByteStream)obj).segmentSize);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), path, size, segmentSize);
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * Finds all occurrences of a set of byte patterns in a single pass over the
+ * input, using the Aho-Corasick algorithm.
+ * <p>
+ * The <code>patterns</code> are compiled into a deterministic automaton,
+ * which has a transition for every combination of a state and a byte value.
+ * This way, every byte of the input is processed in constant time,
+ * regardless of the amount of patterns. A state is an <code>int</code>,
+ * starting at {@link #INITIAL_STATE}, so that a search can be continued
+ * across separate blocks of input by passing along the state. Inputs can be
+ * scanned as a {@link Source} or as a {@link ByteStream}, in blocks that are
+ * not copied if the input holds or maps its data.
+ * <p>
+ * A MultiPatternMatcher is immutable and may be shared between threads.
+ */
+public class MultiPatternMatcher {
+
+    public static final int INITIAL_STATE = 0;
+    public static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int BYTE_VALUES = 256;
+
+    public final int patternCount;
+    public final int maxLength;
+
+    private final byte[][] patterns; // Private because array content is mutable.
+    private final int[][] transitions; // Private because array content is mutable.
+    private final int[][] matches; // Private because array content is mutable.
+
+    public MultiPatternMatcher(final byte[]... patterns) {
+        checkNotNull(patterns, "patterns");
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("Argument patterns may not be empty.");
+        }
+        this.patterns = new byte[patterns.length][];
+        int max = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            if (checkNotNull(patterns[i], "pattern").length == 0) {
+                throw new IllegalArgumentException("Argument patterns may not contain an empty pattern.");
+            }
+            this.patterns[i] = patterns[i].clone();
+            max = Math.max(max, patterns[i].length);
+        }
+        this.patternCount = patterns.length;
+        this.maxLength = max;
+        final List<int[]> trie = new ArrayList<>();
+        final List<int[]> outputs = new ArrayList<>();
+        trie.add(newState());
+        outputs.add(new int[0]);
+        for (int i = 0; i < patterns.length; i++) {
+            int state = INITIAL_STATE;
+            for (final byte value : patterns[i]) {
+                if (trie.get(state)[value & 0xff] < 0) {
+                    trie.get(state)[value & 0xff] = trie.size();
+                    trie.add(newState());
+                    outputs.add(new int[0]);
+                }
+                state = trie.get(state)[value & 0xff];
+            }
+            outputs.set(state, append(outputs.get(state), i));
+        }
+        this.transitions = trie.toArray(new int[0][]);
+        this.matches = outputs.toArray(new int[0][]);
+        link();
+    }
+
+    private static int[] newState() {
+        final int[] state = new int[BYTE_VALUES];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] append(final int[] values, final int value) {
+        final int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    /*
+     * Turns the trie into a complete automaton, by replacing each missing
+     * transition with the transition of the longest proper suffix that is
+     * also in the trie (the failure link). States are visited breadth-first,
+     * so the states of all shorter suffixes are already complete.
+     */
+    private void link() {
+        final int[] failures = new int[transitions.length];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int value = 0; value < BYTE_VALUES; value++) {
+            if (transitions[INITIAL_STATE][value] < 0) {
+                transitions[INITIAL_STATE][value] = INITIAL_STATE;
+            } else {
+                queue.add(transitions[INITIAL_STATE][value]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            for (int value = 0; value < BYTE_VALUES; value++) {
+                final int next = transitions[state][value];
+                if (next < 0) {
+                    transitions[state][value] = transitions[failures[state]][value];
+                } else {
+                    failures[next] = transitions[failures[state]][value];
+                    for (final int pattern : matches[failures[next]]) {
+                        matches[next] = append(matches[next], pattern);
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    public int next(final int state, final byte value) {
+        return transitions[state][value & 0xff];
+    }
+
+    public boolean isMatch(final int state) {
+        return matches[state].length > 0;
+    }
+
+    /**
+     * @param state a state of this matcher
+     * @return the indices of the patterns that end at the position that led to <code>state</code>
+     */
+    public int[] getMatches(final int state) {
+        return matches[state].clone();
+    }
+
+    public byte[] getPattern(final int index) {
+        return patterns[index].clone();
+    }
+
+    /**
+     * @param patterns the patterns to compare with
+     * @return whether this matcher searches for exactly <code>patterns</code>, in that order
+     */
+    public boolean hasPatterns(final byte[]... patterns) {
+        return Arrays.deepEquals(this.patterns, patterns);
+    }
+
+    /**
+     * Receives the matches found by {@link #scan(Source, long, long, Handler)}.
+     */
+    public interface Handler {
+
+        void handle(int pattern, long offset);
+
+    }
+
+    /**
+     * Scans <code>input</code> from <code>offset</code> up to the end of the
+     * available data. See {@link #scan(Source, long, long, Handler)}.
+     */
+    public void scan(final ByteStream input, final long offset, final Handler handler) throws IOException {
+        try {
+            scan(new ByteStreamSource(checkNotNull(input, "input")), offset, Long.MAX_VALUE, handler);
+        } catch (final UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Scans at most <code>length</code> bytes of <code>source</code> from
+     * <code>offset</code>, stopping earlier at the end of the available data.
+     * The data is obtained in blocks of {@link #BLOCK_SIZE} bytes through
+     * {@link Source#getBuffer(long, int)}, so that sources that hold or map
+     * their data do not copy it. For each occurrence of a pattern,
+     * <code>handler</code> is called with the index of the pattern and the
+     * offset at which the occurrence starts, in the order in which the
+     * occurrences end.
+     */
+    public void scan(final Source source, final long offset, final long length, final Handler handler) {
+        checkNotNull(source, "source");
+        checkNotNull(handler, "handler");
+        int state = INITIAL_STATE;
+        long position = offset;
+        long remaining = length;
+        while (remaining > 0) {
+            final int blockLength = (int) Math.min(BLOCK_SIZE, remaining);
+            final int available = availableLength(source, position, blockLength);
+            if (available == 0) {
+                return;
+            }
+            final ByteBuffer block = source.getBuffer(position, available);
+            final int start = block.position();
+            for (int i = 0; i < available; i++) {
+                state = transitions[state][block.get(start + i) & 0xff];
+                if (matches[state].length > 0) {
+                    for (final int pattern : matches[state]) {
+                        handler.handle(pattern, position + i + 1 - patterns[pattern].length);
+                    }
+                }
+            }
+            if (available < blockLength) {
+                return;
+            }
+            position += available;
+            remaining -= available;
+        }
+    }
+
+    private static int availableLength(final Source source, final long position, final int maxLength) {
+        if (source.isAvailable(position, maxLength)) {
+            return maxLength;
+        }
+        // Only the end of the input can be reached within a block, so search for the available length.
+        int low = 0;
+        int high = maxLength - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (source.isAvailable(position, middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + patternCount + ";maxLength=" + maxLength + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Arrays.deepEquals(patterns, ((MultiPatternMatcher)obj).patterns);
+        // The transitions and matches are excluded from equals() and hashCode() because they are derived from the patterns.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), Arrays.deepHashCode(patterns));
+    }
+
+}
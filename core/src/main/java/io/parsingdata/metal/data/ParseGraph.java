@@ -19,6 +19,7 @@ package io.parsingdata.metal.data;
 import static io.parsingdata.metal.Trampoline.complete;
 import static io.parsingdata.metal.Trampoline.intermediate;
 import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.Selection.reverse;
 
 import java.util.Objects;
 import java.util.Optional;
@@ -35,52 +36,63 @@ public class ParseGraph implements ParseItem {
     public final Token definition;
     public final long size;
 
+    private final ValueIndex index; // Only maintained on the outermost graph, null for the graphs of branches.
+
     public static final Token NONE = new Token("NONE", null) {
         @Override protected Optional<ParseState> parseImpl(final Environment environment) { throw new IllegalStateException("This placeholder may not be invoked."); }
         @Override public String toString() { return "None"; }
     };
 
-    public static final ParseGraph EMPTY = new ParseGraph(NONE);
+    public static final ParseGraph EMPTY = new ParseGraph(NONE, ValueIndex.EMPTY);
 
-    private ParseGraph(final Token definition) {
+    private ParseGraph(final Token definition, final ValueIndex index) {
         head = null;
         tail = null;
         branched = false;
         this.definition = checkNotNull(definition, "definition");
         size = 0;
+        this.index = index;
     }
 
-    private ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition, final boolean branched) {
+    private ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition, final boolean branched, final ValueIndex index) {
         this.head = checkNotNull(head, "head");
         this.tail = checkNotNull(tail, "tail");
         this.branched = branched;
         this.definition = checkNotNull(definition, "definition");
         size = tail.size + 1;
+        this.index = index;
     }
 
-    private ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition) {
-        this(head, tail, definition, false);
+    private ParseGraph(final ParseItem head, final ParseGraph tail, final Token definition, final ValueIndex index) {
+        this(head, tail, definition, false, index);
     }
 
     protected ParseGraph add(final ParseValue head) {
         if (branched) {
-            return new ParseGraph(this.head.asGraph().add(head), tail, definition, true);
+            return new ParseGraph(this.head.asGraph().add(head), tail, definition, true, index == null ? null : index.add(head));
         }
-        return new ParseGraph(head, this, definition);
+        return new ParseGraph(head, this, definition, index == null ? null : index.add(head));
     }
 
     protected ParseGraph add(final ParseReference parseReference) {
         if (branched) {
-            return new ParseGraph(head.asGraph().add(parseReference), tail, definition, true);
+            return new ParseGraph(head.asGraph().add(parseReference), tail, definition, true, index);
+        }
+        return new ParseGraph(parseReference, this, definition, index);
+    }
+
+    protected ParseGraph add(final ParsePlaceholder placeholder) {
+        if (branched) {
+            return new ParseGraph(head.asGraph().add(placeholder), tail, definition, true, index);
         }
-        return new ParseGraph(parseReference, this, definition);
+        return new ParseGraph(placeholder, this, definition, index);
     }
 
     protected ParseGraph addBranch(final Token definition) {
         if (branched) {
-            return new ParseGraph(head.asGraph().addBranch(definition), tail, this.definition, true);
+            return new ParseGraph(head.asGraph().addBranch(definition), tail, this.definition, true, index);
         }
-        return new ParseGraph(new ParseGraph(definition), this, this.definition, true);
+        return new ParseGraph(new ParseGraph(definition, null), this, this.definition, true, index);
     }
 
     protected ParseGraph closeBranch() {
@@ -88,9 +100,9 @@ public class ParseGraph implements ParseItem {
             throw new IllegalStateException("Cannot close branch that is not open.");
         }
         if (head.asGraph().branched) {
-            return new ParseGraph(head.asGraph().closeBranch(), tail, definition, true);
+            return new ParseGraph(head.asGraph().closeBranch(), tail, definition, true, index);
         }
-        return new ParseGraph(head, tail, definition, false);
+        return new ParseGraph(head, tail, definition, false, index);
     }
 
     public boolean isEmpty() { return size == 0; }
@@ -117,6 +129,28 @@ public class ParseGraph implements ParseItem {
         return intermediate(() -> current(items.tail));
     }
 
+    /**
+     * @return All values (bottom-up) in this graph with a name that matches <code>name</code>, as defined by {@link ParseValue#matches(String)}
+     */
+    public ImmutableList<ParseValue> getValues(final String name) {
+        checkNotNull(name, "name");
+        if (index == null) {
+            return reverse(Selection.getAllValues(this, value -> value.matches(name)));
+        }
+        return index.getByName(name);
+    }
+
+    /**
+     * @return All values (bottom-up) in this graph that have <code>definition</code> as their definition
+     */
+    public ImmutableList<ParseValue> getValues(final Token definition) {
+        checkNotNull(definition, "definition");
+        if (index == null) {
+            return reverse(Selection.getAllValues(this, value -> value.definition.equals(definition)));
+        }
+        return index.getByDefinition(definition);
+    }
+
     @Override public boolean isGraph() { return true; }
     @Override public ParseGraph asGraph() { return this; }
     @Override public Token getDefinition() { return definition; }
@@ -139,7 +173,7 @@ public class ParseGraph implements ParseItem {
             && Objects.equals(tail, ((ParseGraph)obj).tail)
             && Objects.equals(branched, ((ParseGraph)obj).branched)
             && Objects.equals(definition, ((ParseGraph)obj).definition);
-            // The size field is excluded from equals() and hashCode() because it is cached data.
+            // The size and index fields are excluded from equals() and hashCode() because they are cached data.
     }
 
     @Override
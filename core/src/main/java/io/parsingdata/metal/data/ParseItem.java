@@ -26,10 +26,14 @@ public interface ParseItem {
 
     default boolean isReference() { return false; }
 
+    default boolean isPlaceholder() { return false; }
+
     default ParseValue asValue() { throw new UnsupportedOperationException("Cannot convert to ParseValue."); }
 
     default ParseReference asReference() { throw new UnsupportedOperationException("Cannot convert to ParseReference."); }
 
+    default ParsePlaceholder asPlaceholder() { throw new UnsupportedOperationException("Cannot convert to ParsePlaceholder."); }
+
     default ParseGraph asGraph() { throw new UnsupportedOperationException("Cannot convert to ParseGraph."); }
 
     Token getDefinition();
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.token.Token;
+
+/**
+ * A {@link ParseItem} that replaces a closed branch of a {@link ParseGraph}
+ * that has been pruned during parsing, because it can no longer be
+ * referenced (see {@link io.parsingdata.metal.token.CompiledToken#withPruning()}).
+ * <p>
+ * A ParsePlaceholder only retains the <code>definition</code> of the pruned
+ * branch, along with the <code>offset</code> and <code>length</code> (both
+ * {@link BigInteger}) of the part of the input that was consumed by parsing
+ * it. Its contents, including the values and the data they refer to, are no
+ * longer part of the ParseGraph.
+ */
+public class ParsePlaceholder implements ParseItem {
+
+    public final Token definition;
+    public final BigInteger offset;
+    public final BigInteger length;
+
+    public ParsePlaceholder(final Token definition, final BigInteger offset, final BigInteger length) {
+        this.definition = checkNotNull(definition, "definition");
+        this.offset = checkNotNull(offset, "offset");
+        this.length = checkNotNull(length, "length");
+    }
+
+    @Override public boolean isPlaceholder() { return true; }
+    @Override public ParsePlaceholder asPlaceholder() { return this; }
+    @Override public Token getDefinition() { return definition; }
+
+    @Override
+    public String toString() {
+        return "pph(@" + offset + ";" + length + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(definition, ((ParsePlaceholder)obj).definition)
+            && Objects.equals(offset, ((ParsePlaceholder)obj).offset)
+            && Objects.equals(length, ((ParsePlaceholder)obj).length);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), definition, offset, length);
+    }
+
+}
@@ -72,12 +72,16 @@ public class ParseState {
         return new ParseState(order.add(parseReference), source, offset, iterations);
     }
 
+    public ParseState add(final ParsePlaceholder placeholder) {
+        return new ParseState(order.add(placeholder), source, offset, iterations);
+    }
+
     public ParseState iterate() {
         return new ParseState(order, source, offset, iterations.tail.add(new ImmutablePair<>(iterations.head.left, iterations.head.right.add(ONE))));
     }
 
     public Optional<ParseState> seek(final BigInteger newOffset) {
-        return newOffset.compareTo(ZERO) >= 0 ? Optional.of(new ParseState(order, source, newOffset, iterations)) : Optional.empty();
+        return newOffset.signum() >= 0 ? Optional.of(new ParseState(order, source, newOffset, iterations)) : Optional.empty();
     }
 
     public ParseState withOrder(final ParseGraph order) {
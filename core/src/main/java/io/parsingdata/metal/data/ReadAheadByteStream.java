@@ -0,0 +1,242 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.format;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import io.parsingdata.metal.Util;
+
+/**
+ * A {@link ByteStream} that reads the data of an {@link AsyncByteStream} in
+ * blocks and reads ahead.
+ * <p>
+ * The <code>input</code> is read in aligned blocks of <code>blockSize</code>
+ * bytes. Every read requests the blocks it needs as well as the next
+ * <code>readAhead</code> blocks, without waiting for them. It then waits
+ * only for the blocks it needs. When parsing proceeds through the input,
+ * the blocks it needs next are therefore already in flight or received,
+ * which hides the latency of the input. The requested blocks are kept as
+ * futures, of which at most <code>blockCount</code> are retained, evicting
+ * the least recently used one. A block that fails to be read is not
+ * retained, so that a later read requests it again. Reads that span more
+ * blocks than can be retained are requested from the <code>input</code>
+ * directly.
+ * <p>
+ * Waiting for a block blocks the calling thread, so that parsing itself
+ * remains synchronous. When parsing on virtual threads (Java 21 and later),
+ * waiting only parks the virtual thread, so that many concurrent parses can
+ * wait for their input without occupying a platform thread each. The lock
+ * that guards the retained blocks is never held while waiting.
+ */
+public class ReadAheadByteStream implements ByteStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    public static final int DEFAULT_BLOCK_COUNT = 64;
+    public static final int DEFAULT_READ_AHEAD = 4;
+
+    public final AsyncByteStream input;
+    public final int blockSize;
+    public final int blockCount;
+    public final int readAhead;
+
+    private final Map<Long, CompletableFuture<ByteBuffer>> blocks;
+
+    public ReadAheadByteStream(final AsyncByteStream input, final int blockSize, final int blockCount, final int readAhead) {
+        this.input = checkNotNull(input, "input");
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Argument blockSize must be positive.");
+        }
+        if (blockCount <= 0) {
+            throw new IllegalArgumentException("Argument blockCount must be positive.");
+        }
+        if (readAhead < 0 || readAhead >= blockCount) {
+            throw new IllegalArgumentException("Argument readAhead must be at least zero and less than blockCount.");
+        }
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.readAhead = readAhead;
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, CompletableFuture<ByteBuffer>> eldest) {
+                return size() > blockCount;
+            }
+        };
+    }
+
+    public ReadAheadByteStream(final AsyncByteStream input) {
+        this(input, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT, DEFAULT_READ_AHEAD);
+    }
+
+    @Override
+    public byte[] read(final BigInteger offset, final int length) throws IOException {
+        if (offset.bitLength() >= Long.SIZE) {
+            throw new IOException(format("Data to read is not available (offset=%d;length=%d;input=%s).", offset, length, input));
+        }
+        return read(offset.longValue(), length);
+    }
+
+    @Override
+    public byte[] read(final long offset, final int length) throws IOException {
+        final byte[] output = new byte[length];
+        readBuffer(offset, length).get(output);
+        return output;
+    }
+
+    @Override
+    public ByteBuffer readBuffer(final long offset, final int length) throws IOException {
+        if (!input.isAvailable(offset, length)) {
+            throw new IOException(format("Data to read is not available (offset=%d;length=%d;input=%s).", offset, length, input));
+        }
+        if (length == 0) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        final long firstBlock = offset / blockSize;
+        final int count = (int) ((offset + length - 1) / blockSize - firstBlock + 1);
+        if (count > blockCount - readAhead) {
+            return await(input.read(offset, length)).asReadOnlyBuffer();
+        }
+        final List<CompletableFuture<ByteBuffer>> found = request(firstBlock, count);
+        final int blockOffset = (int) (offset - firstBlock * blockSize);
+        if (count == 1) {
+            // The data is a part of a single block, so a view on that block is returned.
+            final ByteBuffer block = await(found.get(0)).duplicate();
+            block.position(block.position() + blockOffset).limit(block.position() + length);
+            return block.slice().asReadOnlyBuffer();
+        }
+        final ByteBuffer output = ByteBuffer.allocate(length);
+        for (int i = 0; i < count; i++) {
+            final ByteBuffer block = await(found.get(i)).duplicate();
+            block.position(block.position() + (i == 0 ? blockOffset : 0));
+            block.limit(Math.min(block.limit(), block.position() + output.remaining()));
+            output.put(block);
+        }
+        return output.flip().asReadOnlyBuffer();
+    }
+
+    private List<CompletableFuture<ByteBuffer>> request(final long firstBlock, final int count) {
+        final List<CompletableFuture<ByteBuffer>> found = new ArrayList<>(count);
+        synchronized (blocks) {
+            // The blocks to read ahead are requested first, so that the blocks that are needed are the most recently used.
+            for (long index = firstBlock + count; index < firstBlock + count + readAhead; index++) {
+                request(index);
+            }
+            for (int i = 0; i < count; i++) {
+                found.add(request(firstBlock + i));
+            }
+        }
+        return found;
+    }
+
+    private CompletableFuture<ByteBuffer> request(final long index) {
+        final CompletableFuture<ByteBuffer> known = blocks.get(index);
+        if (known != null) {
+            return known;
+        }
+        final long position = index * blockSize;
+        final int length = availableLength(position);
+        if (length == 0) {
+            return null;
+        }
+        final CompletableFuture<ByteBuffer> block = input.read(position, length);
+        blocks.put(index, block);
+        block.whenComplete((data, exception) -> {
+            if (exception != null) {
+                synchronized (blocks) {
+                    blocks.remove(index, block);
+                }
+            }
+        });
+        return block;
+    }
+
+    private int availableLength(final long position) {
+        if (input.isAvailable(position, blockSize)) {
+            return blockSize;
+        }
+        // Only the final block of the input can be partial, so search for its actual length.
+        int low = 0;
+        int high = blockSize - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (input.isAvailable(position, middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static ByteBuffer await(final CompletableFuture<ByteBuffer> future) throws IOException {
+        try {
+            return future.join();
+        } catch (final CompletionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException(exception.getCause());
+        } catch (final CancellationException exception) {
+            throw new IOException(exception);
+        }
+    }
+
+    @Override
+    public boolean isAvailable(final BigInteger offset, final BigInteger length) {
+        return offset.bitLength() < Long.SIZE
+            && length.bitLength() < Long.SIZE
+            && input.isAvailable(offset.longValue(), length.longValue());
+    }
+
+    @Override
+    public boolean isAvailable(final long offset, final long length) {
+        return input.isAvailable(offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + input + ";blockSize=" + blockSize + ";blockCount=" + blockCount + ";readAhead=" + readAhead + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(input, ((ReadAheadByteStream)obj).input)
+            && Objects.equals(blockSize, ((ReadAheadByteStream)obj).blockSize)
+            && Objects.equals(blockCount, ((ReadAheadByteStream)obj).blockCount)
+            && Objects.equals(readAhead, ((ReadAheadByteStream)obj).readAhead);
+        // The retained blocks are excluded from equals() and hashCode() because they are cached data.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), input, blockSize, blockCount, readAhead);
+    }
+
+}
@@ -22,6 +22,8 @@ import static io.parsingdata.metal.Util.checkNotNegative;
 import static io.parsingdata.metal.Util.checkNotNull;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -33,34 +35,96 @@ public class Slice {
     public final BigInteger offset;
     public final BigInteger length;
 
-    private Slice(final Source source, final BigInteger offset, final BigInteger length) {
+    private final byte[] data; // Null if the data is read from the source. Private because array content is mutable.
+    private final int dataOffset;
+
+    private Slice(final Source source, final BigInteger offset, final BigInteger length, final byte[] data, final int dataOffset) {
         this.source = checkNotNull(source, "source");
         this.offset = checkNotNull(offset, "offset");
         this.length = checkNotNull(length, "length");
+        this.data = data;
+        this.dataOffset = dataOffset;
+    }
+
+    private Slice(final Source source, final BigInteger offset, final BigInteger length) {
+        this(source, offset, length, null, 0);
     }
 
     public static Optional<Slice> createFromSource(final Source source, final BigInteger offset, final BigInteger length) {
-        if (checkNotNull(offset, "offset").compareTo(ZERO) < 0 ||
-            checkNotNull(length, "length").compareTo(ZERO) < 0 ||
-            !checkNotNull(source, "source").isAvailable(offset, length)) {
+        if (checkNotNull(offset, "offset").signum() < 0 ||
+            checkNotNull(length, "length").signum() < 0 ||
+            !isAvailable(checkNotNull(source, "source"), offset, length)) {
             return Optional.empty();
         }
         return Optional.of(new Slice(source, offset, length));
     }
 
+    private static boolean isAvailable(final Source source, final BigInteger offset, final BigInteger length) {
+        if (fitsInLong(offset) && fitsInLong(length)) {
+            return source.isAvailable(offset.longValue(), length.longValue());
+        }
+        return source.isAvailable(offset, length);
+    }
+
+    private static boolean fitsInLong(final BigInteger value) {
+        return value.bitLength() < Long.SIZE;
+    }
+
     public static Slice createFromBytes(final byte[] data) {
         return new Slice(new ConstantSource(checkNotNull(data, "data")), ZERO, BigInteger.valueOf(data.length));
     }
 
+    /**
+     * Returns a Slice that holds the data of this slice in memory, so that it
+     * is read from the {@link Source} once, in a single read. Slices created
+     * from it using {@link #subSlice(BigInteger, BigInteger)} share this data.
+     */
+    public Slice load() {
+        return data != null ? this : new Slice(source, offset, length, getData(), 0);
+    }
+
+    /**
+     * Returns the slice of the same source at the given <code>offset</code>
+     * and <code>length</code>. If this slice holds its data (see
+     * {@link #load()}) and contains the requested slice, the returned slice
+     * is a view on that data.
+     */
+    public Optional<Slice> subSlice(final BigInteger offset, final BigInteger length) {
+        if (data != null
+            && checkNotNull(offset, "offset").compareTo(this.offset) >= 0
+            && checkNotNull(length, "length").signum() >= 0
+            && offset.add(length).compareTo(this.offset.add(this.length)) <= 0) {
+            return Optional.of(new Slice(source, offset, length, data, dataOffset + offset.subtract(this.offset).intValueExact()));
+        }
+        return createFromSource(source, offset, length);
+    }
+
     public byte[] getData() {
         return getData(length);
     }
 
     public byte[] getData(final BigInteger limit) {
         final BigInteger calculatedLength = checkNotNegative(limit, "limit").compareTo(length) > 0 ? length : limit;
+        if (data != null) {
+            return Arrays.copyOfRange(data, dataOffset, dataOffset + calculatedLength.intValueExact());
+        }
+        if (fitsInLong(offset) && calculatedLength.bitLength() < Integer.SIZE) {
+            return source.getData(offset.longValue(), calculatedLength.intValue());
+        }
         return source.getData(offset, calculatedLength);
     }
 
+    /**
+     * Returns a read-only view of the data of this slice, positioned at its
+     * start. Depending on the {@link Source}, the data is not copied.
+     */
+    public ByteBuffer getBuffer() {
+        if (data != null) {
+            return ByteBuffer.wrap(data, dataOffset, length.intValueExact()).slice().asReadOnlyBuffer();
+        }
+        return source.getBuffer(offset.longValueExact(), length.intValueExact());
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(" + source + "@" + offset + ":" + length.add(offset) + ")";
@@ -72,6 +136,7 @@ public class Slice {
             && Objects.equals(source, ((Slice)obj).source)
             && Objects.equals(offset, ((Slice)obj).offset)
             && Objects.equals(length, ((Slice)obj).length);
+        // The data is excluded from equals() and hashCode() because it is cached data.
     }
 
     @Override
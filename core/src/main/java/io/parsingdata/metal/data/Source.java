@@ -17,6 +17,7 @@
 package io.parsingdata.metal.data;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 public abstract class Source {
 
@@ -24,4 +25,31 @@ public abstract class Source {
 
     protected abstract boolean isAvailable(BigInteger offset, BigInteger length);
 
+    /**
+     * Variant of {@link #getData(BigInteger, BigInteger)} that is used when
+     * the offset and length fit in primitive types. Sources that can serve
+     * their data without BigInteger arithmetic should override it.
+     */
+    protected byte[] getData(final long offset, final int length) {
+        return getData(BigInteger.valueOf(offset), BigInteger.valueOf(length));
+    }
+
+    /**
+     * Variant of {@link #isAvailable(BigInteger, BigInteger)} that is used
+     * when the offset and length fit in primitive types. Sources that can
+     * answer without BigInteger arithmetic should override it.
+     */
+    protected boolean isAvailable(final long offset, final long length) {
+        return isAvailable(BigInteger.valueOf(offset), BigInteger.valueOf(length));
+    }
+
+    /**
+     * Returns a read-only view of the data at <code>offset</code> of
+     * <code>length</code> bytes. Sources that hold their data in memory
+     * should override it to return a view without copying the data.
+     */
+    protected ByteBuffer getBuffer(final long offset, final int length) {
+        return ByteBuffer.wrap(getData(offset, length)).asReadOnlyBuffer();
+    }
+
 }
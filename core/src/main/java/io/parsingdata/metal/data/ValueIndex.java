@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static io.parsingdata.metal.token.Token.SEPARATOR;
+
+import io.parsingdata.metal.token.Token;
+
+/**
+ * An index over the {@link ParseValue}s in a {@link ParseGraph}.
+ * <p>
+ * Values are indexed by every name they match (see
+ * {@link ParseValue#matches(String)}) and by their definition. For each key,
+ * the matching values are kept in a list ordered from the most recently
+ * added value to the least recently added one, which is the same order in
+ * which {@link Selection#getAllValues(ParseGraph, java.util.function.Predicate)}
+ * encounters them. Since the index is persistent, each version of a graph
+ * holds its own index at the cost of only the changed paths.
+ * <p>
+ * Definitions are compared using {@link Token#equals(Object)}, but since the
+ * hash code of a token covers its entire tree, it is computed only once for
+ * each token instance and then looked up by identity.
+ */
+final class ValueIndex {
+
+    static final ValueIndex EMPTY = new ValueIndex(ImmutableHashMap.empty(), ImmutableHashMap.empty(), ImmutableHashMap.emptyIdentity());
+
+    private final ImmutableHashMap<String, ImmutableList<ParseValue>> valuesByName;
+    private final ImmutableHashMap<Definition, ImmutableList<ParseValue>> valuesByDefinition;
+    private final ImmutableHashMap<Token, Integer> definitionHashes;
+
+    private ValueIndex(final ImmutableHashMap<String, ImmutableList<ParseValue>> valuesByName, final ImmutableHashMap<Definition, ImmutableList<ParseValue>> valuesByDefinition, final ImmutableHashMap<Token, Integer> definitionHashes) {
+        this.valuesByName = valuesByName;
+        this.valuesByDefinition = valuesByDefinition;
+        this.definitionHashes = definitionHashes;
+    }
+
+    ValueIndex add(final ParseValue value) {
+        final Integer cachedHash = definitionHashes.get(value.definition, null);
+        final Definition definition = new Definition(value.definition, cachedHash == null ? value.definition.hashCode() : cachedHash);
+        return new ValueIndex(addByName(value),
+                              valuesByDefinition.put(definition, valuesByDefinition.get(definition, new ImmutableList<>()).add(value)),
+                              cachedHash == null ? definitionHashes.put(value.definition, definition.hash) : definitionHashes);
+    }
+
+    private ImmutableHashMap<String, ImmutableList<ParseValue>> addByName(final ParseValue value) {
+        ImmutableHashMap<String, ImmutableList<ParseValue>> result = add(valuesByName, value.name, value);
+        for (int index = value.name.indexOf(SEPARATOR); index >= 0; index = value.name.indexOf(SEPARATOR, index + 1)) {
+            result = add(result, value.name.substring(index + SEPARATOR.length()), value);
+        }
+        return result;
+    }
+
+    private static ImmutableHashMap<String, ImmutableList<ParseValue>> add(final ImmutableHashMap<String, ImmutableList<ParseValue>> map, final String name, final ParseValue value) {
+        return map.put(name, map.get(name, new ImmutableList<>()).add(value));
+    }
+
+    ImmutableList<ParseValue> getByName(final String name) {
+        return valuesByName.get(name, new ImmutableList<>());
+    }
+
+    ImmutableList<ParseValue> getByDefinition(final Token definition) {
+        final Integer cachedHash = definitionHashes.get(definition, null);
+        return valuesByDefinition.get(new Definition(definition, cachedHash == null ? definition.hashCode() : cachedHash), new ImmutableList<>());
+    }
+
+    private static final class Definition {
+        final Token token;
+        final int hash;
+
+        Definition(final Token token, final int hash) {
+            this.token = token;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Definition && (token == ((Definition)obj).token || token.equals(((Definition)obj).token));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -20,24 +20,33 @@ import static io.parsingdata.metal.Trampoline.complete;
 import static io.parsingdata.metal.Trampoline.intermediate;
 import static io.parsingdata.metal.Util.checkNotNull;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import io.parsingdata.metal.Trampoline;
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ImmutablePair;
 import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.token.Reachability;
 import io.parsingdata.metal.token.Token;
 
 public class Callbacks {
 
-    public static final Callbacks NONE = new Callbacks(null, new ImmutableList<>());
+    public static final Callbacks NONE = new Callbacks(null, new ImmutableList<>(), new ImmutableList<>(), Collections.emptySet());
 
     public final Callback genericCallback;
     public final ImmutableList<ImmutablePair<Token, Callback>> tokenCallbacks;
+    public final ImmutableList<ImmutablePair<Token, Callback>> streamCallbacks;
 
-    private Callbacks(final Callback genericCallback, final ImmutableList<ImmutablePair<Token, Callback>> tokenCallbacks) {
+    private final Set<Token> streamed; // Private because set content is mutable.
+
+    private Callbacks(final Callback genericCallback, final ImmutableList<ImmutablePair<Token, Callback>> tokenCallbacks, final ImmutableList<ImmutablePair<Token, Callback>> streamCallbacks, final Set<Token> streamed) {
         this.genericCallback = genericCallback;
         this.tokenCallbacks = checkNotNull(tokenCallbacks, "tokenCallbacks");
+        this.streamCallbacks = checkNotNull(streamCallbacks, "streamCallbacks");
+        this.streamed = streamed;
     }
 
     public static Callbacks create() {
@@ -45,11 +54,55 @@ public class Callbacks {
     }
 
     public Callbacks add(final Callback genericCallback) {
-        return new Callbacks(genericCallback, tokenCallbacks);
+        return new Callbacks(genericCallback, tokenCallbacks, streamCallbacks, streamed);
     }
 
     public Callbacks add(final Token token, final Callback callback) {
-        return new Callbacks(genericCallback, tokenCallbacks.add(new ImmutablePair<>(token, callback)));
+        return new Callbacks(genericCallback, tokenCallbacks.add(new ImmutablePair<>(token, callback)), streamCallbacks, streamed);
+    }
+
+    /**
+     * Streams the results of parsing <code>token</code> to <code>sink</code>.
+     * <p>
+     * After each successful parse of <code>token</code>, its
+     * {@link Callback#handleSuccess(Token, ParseState, ParseState)} is called,
+     * after which the parsed subtree (the head of the innermost open branch
+     * of the <code>after</code> ParseState's <code>order</code>) is dropped
+     * from the ParseGraph, so that the memory it uses can be reclaimed while
+     * parsing continues. Since the sink is called as soon as the token has
+     * been parsed, it may receive results that are part of an alternative
+     * that fails later on.
+     * <p>
+     * This is only allowed if <code>token</code> is droppable within
+     * <code>root</code>, meaning that no part of the parse that follows can
+     * refer to the dropped subtree (see {@link Reachability}). As with
+     * dropping, the sink is only called for exactly this <code>token</code>
+     * instance, not for structurally equal tokens elsewhere in
+     * <code>root</code>.
+     *
+     * @param root the definition that is parsed with these callbacks
+     * @param token the token to stream, which is part of <code>root</code>
+     * @param sink the callback that receives the parsed subtrees
+     * @return a new Callbacks instance that also streams <code>token</code>
+     * @throws IllegalArgumentException if <code>token</code> is not droppable
+     */
+    public Callbacks stream(final Token root, final Token token, final Callback sink) {
+        checkNotNull(sink, "sink");
+        if (!Reachability.isDroppable(root, token)) {
+            throw new IllegalArgumentException("Token " + token.name + " cannot be streamed, because its values can still be referenced.");
+        }
+        final Set<Token> newStreamed = Collections.newSetFromMap(new IdentityHashMap<>());
+        newStreamed.addAll(streamed);
+        newStreamed.add(token);
+        return new Callbacks(genericCallback, tokenCallbacks, streamCallbacks.add(new ImmutablePair<>(token, sink)), newStreamed);
+    }
+
+    /**
+     * @return whether exactly this <code>token</code> instance is streamed,
+     * so that structurally equal tokens elsewhere in the definition are kept
+     */
+    public boolean isStreamed(final Token token) {
+        return !streamed.isEmpty() && streamed.contains(token);
     }
 
     public static Consumer<Callback> success(final Token token, final ParseState before, final ParseState after) {
@@ -64,23 +117,27 @@ public class Callbacks {
         if (genericCallback != null) {
             handler.accept(genericCallback);
         }
-        handleCallbacks(tokenCallbacks, token, handler).computeResult();
+        handleCallbacks(tokenCallbacks, token, false, handler).computeResult();
+        if (isStreamed(token)) {
+            handleCallbacks(streamCallbacks, token, true, handler).computeResult();
+        }
     }
 
-    private Trampoline<Void> handleCallbacks(final ImmutableList<ImmutablePair<Token, Callback>> callbacks, final Token token, final Consumer<Callback> handler) {
+    private Trampoline<Void> handleCallbacks(final ImmutableList<ImmutablePair<Token, Callback>> callbacks, final Token token, final boolean identity, final Consumer<Callback> handler) {
         if (callbacks.isEmpty()) {
             return complete(() -> null);
         }
-        if (callbacks.head.left.equals(token)) {
+        if (identity ? callbacks.head.left == token : callbacks.head.left.equals(token)) {
             handler.accept(callbacks.head.right);
         }
-        return intermediate(() -> handleCallbacks(callbacks.tail, token, handler));
+        return intermediate(() -> handleCallbacks(callbacks.tail, token, identity, handler));
     }
 
     @Override
     public String toString() {
         return (genericCallback == null ? "" : "generic: " + genericCallback + "; ") +
-            (tokenCallbacks.isEmpty() ? "" : "token: " + tokenCallbacks);
+            (tokenCallbacks.isEmpty() ? "" : "token: " + tokenCallbacks) +
+            (streamCallbacks.isEmpty() ? "" : "; streamed: " + streamCallbacks);
     }
 
 }
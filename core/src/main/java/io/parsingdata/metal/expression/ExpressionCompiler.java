@@ -0,0 +1,330 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.expression.value.ConstantFactory.createFromNumeric;
+
+import java.util.Objects;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.encoding.Sign;
+import io.parsingdata.metal.expression.comparison.ComparisonExpression;
+import io.parsingdata.metal.expression.comparison.EqNum;
+import io.parsingdata.metal.expression.comparison.GtEqNum;
+import io.parsingdata.metal.expression.comparison.GtNum;
+import io.parsingdata.metal.expression.comparison.LtEqNum;
+import io.parsingdata.metal.expression.comparison.LtNum;
+import io.parsingdata.metal.expression.logical.And;
+import io.parsingdata.metal.expression.logical.Not;
+import io.parsingdata.metal.expression.logical.Or;
+import io.parsingdata.metal.expression.value.BinaryValueExpression;
+import io.parsingdata.metal.expression.value.Const;
+import io.parsingdata.metal.expression.value.CoreValue;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.arithmetic.Add;
+import io.parsingdata.metal.expression.value.arithmetic.Div;
+import io.parsingdata.metal.expression.value.arithmetic.Mod;
+import io.parsingdata.metal.expression.value.arithmetic.Mul;
+import io.parsingdata.metal.expression.value.arithmetic.Neg;
+import io.parsingdata.metal.expression.value.arithmetic.Sub;
+
+/**
+ * Compiles {@link Expression}s and {@link ValueExpression}s into equivalent
+ * expressions that evaluate arithmetic and numeric comparisons on primitive
+ * longs.
+ * <p>
+ * The arithmetic operators {@link Add}, {@link Sub}, {@link Mul}, {@link
+ * Div}, {@link Mod} and {@link Neg} are composed into a single evaluator,
+ * together with the numeric comparisons {@link EqNum}, {@link GtNum}, {@link
+ * GtEqNum}, {@link LtNum} and {@link LtEqNum}. Constants are converted once
+ * during compilation. All other operands are evaluated as usual and must
+ * result in a single value. The logical expressions {@link And}, {@link Or}
+ * and {@link Not} are reconstructed with compiled operands.
+ * <p>
+ * If during evaluation an operand does not result in a single value that fits
+ * in a long, or an operation overflows or is undefined (e.g. division by
+ * zero), the original expression is evaluated instead. This makes the result
+ * of a compiled expression always equal to that of the original expression.
+ */
+public final class ExpressionCompiler {
+
+    private static final NotRepresentableException NOT_REPRESENTABLE = new NotRepresentableException();
+
+    private ExpressionCompiler() {}
+
+    public static Expression compile(final Expression expression) {
+        checkNotNull(expression, "expression");
+        final Class<?> type = expression.getClass();
+        if (type == And.class) {
+            return new And(compile(((And) expression).left), compile(((And) expression).right));
+        }
+        if (type == Or.class) {
+            return new Or(compile(((Or) expression).left), compile(((Or) expression).right));
+        }
+        if (type == Not.class) {
+            return new Not(compile(((Not) expression).operand));
+        }
+        if (type == EqNum.class) {
+            return compileComparison((ComparisonExpression) expression, (left, right) -> left == right);
+        }
+        if (type == GtNum.class) {
+            return compileComparison((ComparisonExpression) expression, (left, right) -> left > right);
+        }
+        if (type == GtEqNum.class) {
+            return compileComparison((ComparisonExpression) expression, (left, right) -> left >= right);
+        }
+        if (type == LtNum.class) {
+            return compileComparison((ComparisonExpression) expression, (left, right) -> left < right);
+        }
+        if (type == LtEqNum.class) {
+            return compileComparison((ComparisonExpression) expression, (left, right) -> left <= right);
+        }
+        return expression;
+    }
+
+    public static ValueExpression compileValue(final ValueExpression expression) {
+        checkNotNull(expression, "expression");
+        final Class<?> type = expression.getClass();
+        if (type == Add.class || type == Sub.class || type == Mul.class || type == Div.class || type == Mod.class || type == Neg.class) {
+            return new CompiledValueExpression(expression, compileLong(expression));
+        }
+        return expression;
+    }
+
+    private static Expression compileComparison(final ComparisonExpression expression, final LongComparison comparison) {
+        final LongEvaluator left = expression.value == null ? ExpressionCompiler::evalCurrent : compileLong(expression.value);
+        final LongEvaluator right = compileLong(expression.predicate);
+        return new CompiledExpression(expression, (parseState, encoding) -> comparison.compare(left.eval(parseState, encoding), right.eval(parseState, encoding)));
+    }
+
+    private static LongEvaluator compileLong(final ValueExpression expression) {
+        final Class<?> type = expression.getClass();
+        if (type == Const.class && fitsInLong(((Const) expression).value)) {
+            final long value = ((CoreValue) ((Const) expression).value).asLong();
+            return (parseState, encoding) -> value;
+        }
+        if (type == Neg.class) {
+            final LongEvaluator operand = compileLong(((Neg) expression).operand);
+            return (parseState, encoding) -> normalize(negate(operand.eval(parseState, encoding)), encoding);
+        }
+        if (type != Add.class && type != Sub.class && type != Mul.class && type != Div.class && type != Mod.class) {
+            return (parseState, encoding) -> evalSingle(expression, parseState, encoding);
+        }
+        final LongEvaluator left = compileLong(((BinaryValueExpression) expression).left);
+        final LongEvaluator right = compileLong(((BinaryValueExpression) expression).right);
+        if (type == Add.class) {
+            return (parseState, encoding) -> normalize(add(left.eval(parseState, encoding), right.eval(parseState, encoding)), encoding);
+        }
+        if (type == Sub.class) {
+            return (parseState, encoding) -> normalize(subtract(left.eval(parseState, encoding), right.eval(parseState, encoding)), encoding);
+        }
+        if (type == Mul.class) {
+            return (parseState, encoding) -> normalize(multiply(left.eval(parseState, encoding), right.eval(parseState, encoding)), encoding);
+        }
+        if (type == Div.class) {
+            return (parseState, encoding) -> normalize(divide(left.eval(parseState, encoding), right.eval(parseState, encoding)), encoding);
+        }
+        return (parseState, encoding) -> normalize(modulo(left.eval(parseState, encoding), right.eval(parseState, encoding)), encoding);
+    }
+
+    private static long negate(final long value) {
+        if (value == Long.MIN_VALUE) {
+            throw NOT_REPRESENTABLE;
+        }
+        return -value;
+    }
+
+    private static long add(final long left, final long right) {
+        final long result = left + right;
+        if (((left ^ result) & (right ^ result)) < 0) {
+            throw NOT_REPRESENTABLE;
+        }
+        return result;
+    }
+
+    private static long subtract(final long left, final long right) {
+        final long result = left - right;
+        if (((left ^ right) & (left ^ result)) < 0) {
+            throw NOT_REPRESENTABLE;
+        }
+        return result;
+    }
+
+    private static long multiply(final long left, final long right) {
+        final long result = left * right;
+        if (Math.multiplyHigh(left, right) != result >> (Long.SIZE - 1)) {
+            throw NOT_REPRESENTABLE;
+        }
+        return result;
+    }
+
+    private static long divide(final long dividend, final long divisor) {
+        if (divisor == 0 || (dividend == Long.MIN_VALUE && divisor == -1)) {
+            throw NOT_REPRESENTABLE;
+        }
+        return dividend / divisor;
+    }
+
+    private static long modulo(final long dividend, final long divisor) {
+        if (divisor <= 0) {
+            throw NOT_REPRESENTABLE;
+        }
+        return Math.floorMod(dividend, divisor);
+    }
+
+    /*
+     * Arithmetic results are stored as values in the given encoding. With an
+     * unsigned encoding, the two's complement representation of a negative
+     * result is read back as a positive number.
+     */
+    private static long normalize(final long value, final Encoding encoding) {
+        if (encoding.sign == Sign.SIGNED || value >= 0) {
+            return value;
+        }
+        final int byteCount = (Long.SIZE - Long.numberOfLeadingZeros(~value)) / Byte.SIZE + 1;
+        if (byteCount >= Long.BYTES) {
+            throw NOT_REPRESENTABLE;
+        }
+        return value + (1L << (byteCount * Byte.SIZE));
+    }
+
+    private static long evalCurrent(final ParseState parseState, final Encoding encoding) {
+        return toLong(parseState.order.current().orElseThrow(() -> NOT_REPRESENTABLE));
+    }
+
+    private static long evalSingle(final ValueExpression expression, final ParseState parseState, final Encoding encoding) {
+        final ImmutableList<Value> values = expression.eval(parseState, encoding);
+        if (values.size != 1) {
+            throw NOT_REPRESENTABLE;
+        }
+        return toLong(values.head);
+    }
+
+    private static long toLong(final Value value) {
+        if (!fitsInLong(value)) {
+            throw NOT_REPRESENTABLE;
+        }
+        return ((CoreValue) value).asLong();
+    }
+
+    private static boolean fitsInLong(final Value value) {
+        return value instanceof CoreValue && ((CoreValue) value).fitsInLong();
+    }
+
+    @FunctionalInterface
+    private interface LongEvaluator {
+        long eval(ParseState parseState, Encoding encoding);
+    }
+
+    @FunctionalInterface
+    private interface LongComparison {
+        boolean compare(long left, long right);
+    }
+
+    /*
+     * Signals that a compiled evaluator cannot produce the result as a long.
+     * A single instance without stack trace is used, since it is part of the
+     * regular control flow.
+     */
+    private static class NotRepresentableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotRepresentableException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class CompiledExpression implements Expression {
+
+        private final Expression source;
+        private final Expression compiled;
+
+        CompiledExpression(final Expression source, final Expression compiled) {
+            this.source = source;
+            this.compiled = compiled;
+        }
+
+        @Override
+        public boolean eval(final ParseState parseState, final Encoding encoding) {
+            try {
+                return compiled.eval(parseState, encoding);
+            } catch (final NotRepresentableException e) {
+                return source.eval(parseState, encoding);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + source + ")";
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return Util.notNullAndSameClass(this, obj)
+                && Objects.equals(source, ((CompiledExpression)obj).source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getClass(), source);
+        }
+
+    }
+
+    private static class CompiledValueExpression implements ValueExpression {
+
+        private final ValueExpression source;
+        private final LongEvaluator compiled;
+
+        CompiledValueExpression(final ValueExpression source, final LongEvaluator compiled) {
+            this.source = source;
+            this.compiled = compiled;
+        }
+
+        @Override
+        public ImmutableList<Value> eval(final ParseState parseState, final Encoding encoding) {
+            try {
+                return ImmutableList.create(createFromNumeric(compiled.eval(parseState, encoding), encoding));
+            } catch (final NotRepresentableException e) {
+                return source.eval(parseState, encoding);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + source + ")";
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return Util.notNullAndSameClass(this, obj)
+                && Objects.equals(source, ((CompiledValueExpression)obj).source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getClass(), source);
+        }
+
+    }
+
+}
@@ -58,23 +58,18 @@ public class Bytes implements ValueExpression {
     @Override
     public ImmutableList<Value> eval(final ParseState parseState, final Encoding encoding) {
         final ImmutableList<Value> values = operand.eval(parseState, encoding);
-        return values.isEmpty() ? values : toByteValues(new ImmutableList<>(), values.head, values.tail, encoding).computeResult();
+        return values.isEmpty() ? values : toByteValues(new ImmutableList<>(), values, 0, encoding).computeResult();
     }
 
-    private Trampoline<ImmutableList<Value>> toByteValues(final ImmutableList<Value> output, final Value head, final ImmutableList<Value> tail, final Encoding encoding) {
-        final ImmutableList<Value> result = output.add(extractByteValues(new ImmutableList<>(), head, 0, encoding).computeResult());
-        if (tail.isEmpty()) {
-            return complete(() -> result);
-        } else {
-            return intermediate(() -> toByteValues(result, tail.head, tail.tail, encoding));
+    private Trampoline<ImmutableList<Value>> toByteValues(final ImmutableList<Value> output, final ImmutableList<Value> values, final int i, final Encoding encoding) {
+        if (values.isEmpty()) {
+            return complete(() -> output);
         }
-    }
-
-    private Trampoline<ImmutableList<Value>> extractByteValues(final ImmutableList<Value> output, final Value value, final int i, final Encoding encoding) {
+        final Value value = values.head;
         if (value.equals(NOT_A_VALUE) || BigInteger.valueOf(i).compareTo(value.length()) >= 0) {
-            return complete(() -> output);
+            return intermediate(() -> toByteValues(output, values.tail, 0, encoding));
         }
-        return intermediate(() -> extractByteValues(output.add(new CoreValue(createFromSource(value.slice().source, value.slice().offset.add(BigInteger.valueOf(i)), ONE).get(), encoding)), value, i + 1, encoding));
+        return intermediate(() -> toByteValues(output.add(new CoreValue(createFromSource(value.slice().source, value.slice().offset.add(BigInteger.valueOf(i)), ONE).get(), encoding)), values, i + 1, encoding));
     }
 
     @Override
@@ -20,6 +20,7 @@ import static io.parsingdata.metal.Util.bytesToHexString;
 import static io.parsingdata.metal.Util.checkNotNull;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Objects;
 
@@ -32,6 +33,7 @@ import io.parsingdata.metal.encoding.Sign;
 public class CoreValue implements Value {
 
     public static final BigInteger TO_STRING_BYTE_COUNT = BigInteger.valueOf(4);
+    private static final BigInteger LONG_BYTES = BigInteger.valueOf(Long.BYTES);
 
     private final Slice slice;
     private final Encoding encoding;
@@ -56,6 +58,11 @@ public class CoreValue implements Value {
         return slice.getData();
     }
 
+    @Override
+    public ByteBuffer buffer() {
+        return slice.getBuffer();
+    }
+
     @Override
     public BigInteger length() {
         return slice.length;
@@ -63,10 +70,35 @@ public class CoreValue implements Value {
 
     @Override
     public BigInteger asNumeric() {
+        if (fitsInLong()) {
+            return BigInteger.valueOf(asLong());
+        }
         return encoding.sign == Sign.SIGNED ? new BigInteger(encoding.byteOrder.apply(value()))
                                             : new BigInteger(1, encoding.byteOrder.apply(value()));
     }
 
+    public boolean fitsInLong() {
+        // An unsigned value of eight bytes may exceed Long.MAX_VALUE, so only a signed value of that size fits.
+        final int comparison = slice.length.compareTo(LONG_BYTES);
+        return slice.length.signum() > 0 && (comparison < 0 || (comparison == 0 && encoding.sign == Sign.SIGNED));
+    }
+
+    // Only valid if fitsInLong() returns true.
+    public long asLong() {
+        final ByteBuffer data = buffer();
+        final int size = data.remaining();
+        long result = 0;
+        for (int i = 0; i < size; i++) {
+            result = (result << Byte.SIZE) | (data.get(encoding.byteOrder == ByteOrder.BIG_ENDIAN ? i : size - 1 - i) & 0xFF);
+        }
+        if (encoding.sign == Sign.SIGNED) {
+            // Extend the sign bit of the most significant byte into the unused upper bytes.
+            final int unused = Long.SIZE - size * Byte.SIZE;
+            return (result << unused) >> unused;
+        }
+        return result;
+    }
+
     @Override
     public String asString() {
         return new String(value(), encoding.charset);
@@ -74,7 +106,7 @@ public class CoreValue implements Value {
 
     @Override
     public BitSet asBitSet() {
-        return BitSet.valueOf(encoding.byteOrder == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN.apply(value()) : value());
+        return encoding.byteOrder == ByteOrder.BIG_ENDIAN ? BitSet.valueOf(ByteOrder.LITTLE_ENDIAN.apply(value())) : BitSet.valueOf(buffer());
     }
 
     @Override
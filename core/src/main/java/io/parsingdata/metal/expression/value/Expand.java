@@ -19,6 +19,7 @@ package io.parsingdata.metal.expression.value;
 import static io.parsingdata.metal.Trampoline.complete;
 import static io.parsingdata.metal.Trampoline.intermediate;
 import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.Selection.reverse;
 import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
 
 import java.util.Objects;
@@ -59,15 +60,22 @@ public class Expand implements ValueExpression {
         }
         return count.evalSingle(parseState, encoding)
             .filter(countValue -> !countValue.equals(NOT_A_VALUE))
-            .map(countValue -> expand(baseList, countValue.asNumeric().intValueExact(), new ImmutableList<>()).computeResult())
+            .map(countValue -> expand(reverse(baseList), countValue.asNumeric().intValueExact()))
             .orElseThrow(() -> new IllegalArgumentException("Count must evaluate to a non-empty countable value."));
     }
 
-    private Trampoline<ImmutableList<Value>> expand(final ImmutableList<Value> baseList, final int countValue, final ImmutableList<Value> aggregate) {
+    private ImmutableList<Value> expand(final ImmutableList<Value> reversedBaseList, final int countValue) {
+        return expand(reversedBaseList, reversedBaseList, countValue, new ImmutableList<>()).computeResult();
+    }
+
+    private Trampoline<ImmutableList<Value>> expand(final ImmutableList<Value> reversedBaseList, final ImmutableList<Value> remaining, final int countValue, final ImmutableList<Value> aggregate) {
         if (countValue < 1) {
             return complete(() -> aggregate);
         }
-        return intermediate(() -> expand(baseList, countValue - 1, aggregate.add(baseList)));
+        if (remaining.isEmpty()) {
+            return intermediate(() -> expand(reversedBaseList, reversedBaseList, countValue - 1, aggregate));
+        }
+        return intermediate(() -> expand(reversedBaseList, remaining.tail, countValue, aggregate.add(remaining.head)));
     }
 
     @Override
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.encoding.Encoding.DEFAULT_ENCODING;
+import static io.parsingdata.metal.expression.value.ConstantFactory.createFromNumeric;
+import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.MultiPatternMatcher;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.encoding.Encoding;
+
+/**
+ * A {@link ValueExpression} that represents the offsets in the input at
+ * which any of a set of byte sequences occurs.
+ * <p>
+ * A Find expression has two operands: <code>patterns</code> (a
+ * {@link ValueExpression}) and <code>size</code> (a
+ * {@link SingleValueExpression}). Both operands are evaluated. The input is
+ * searched from the current offset for the results of evaluating
+ * <code>patterns</code>, using a {@link MultiPatternMatcher}. If
+ * <code>size</code> is set, only occurrences that end within that many bytes
+ * are found. Otherwise, the input is searched up to its end. Empty results
+ * and <code>NOT_A_VALUE</code> in <code>patterns</code> are ignored.
+ * <p>
+ * The result is a list of the distinct offsets at which an occurrence
+ * starts, the lowest offset first. If no patterns remain or
+ * <code>size</code> evaluates to an empty value or
+ * <code>NOT_A_VALUE</code>, the result is an empty list.
+ * <p>
+ * For example, the addresses of a {@link io.parsingdata.metal.token.Sub}
+ * can be found with <code>find(con(0x50, 0x4b, 0x03, 0x04))</code>, and
+ * <code>first(find(...))</code> evaluates to the nearest occurrence.
+ */
+public class Find implements ValueExpression {
+
+    public final ValueExpression patterns;
+    public final SingleValueExpression size;
+
+    private final AtomicReference<MultiPatternMatcher> matcher = new AtomicReference<>();
+
+    public Find(final ValueExpression patterns, final SingleValueExpression size) {
+        this.patterns = checkNotNull(patterns, "patterns");
+        this.size = size;
+    }
+
+    @Override
+    public ImmutableList<Value> eval(final ParseState parseState, final Encoding encoding) {
+        final byte[][] patternData = toPatterns(patterns.eval(parseState, encoding));
+        if (patternData.length == 0) {
+            return new ImmutableList<>();
+        }
+        final Optional<Long> length = size == null ? Optional.of(Long.MAX_VALUE) : size.evalSingle(parseState, encoding)
+            .filter(sizeValue -> !sizeValue.equals(NOT_A_VALUE))
+            .map(sizeValue -> sizeValue.asNumeric().longValueExact());
+        if (length.isEmpty()) {
+            return new ImmutableList<>();
+        }
+        final TreeSet<Long> offsets = new TreeSet<>();
+        getMatcher(patternData).scan(parseState.source, parseState.offset.longValueExact(), length.get(), (pattern, offset) -> offsets.add(offset));
+        ImmutableList<Value> result = new ImmutableList<>();
+        for (final long offset : offsets) {
+            result = result.add(createFromNumeric(BigInteger.valueOf(offset), DEFAULT_ENCODING));
+        }
+        return result;
+    }
+
+    private static byte[][] toPatterns(final ImmutableList<Value> values) {
+        final List<byte[]> result = new ArrayList<>();
+        for (ImmutableList<Value> remaining = values; !remaining.isEmpty(); remaining = remaining.tail) {
+            if (!remaining.head.equals(NOT_A_VALUE) && remaining.head.length().signum() > 0) {
+                result.add(0, remaining.head.value());
+            }
+        }
+        return result.toArray(new byte[0][]);
+    }
+
+    private MultiPatternMatcher getMatcher(final byte[][] patternData) {
+        // The matcher of the previous evaluation is reused if the patterns are the same, which is the case for constant patterns.
+        final MultiPatternMatcher current = matcher.get();
+        if (current != null && current.hasPatterns(patternData)) {
+            return current;
+        }
+        final MultiPatternMatcher created = new MultiPatternMatcher(patternData);
+        matcher.set(created);
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + patterns + (size == null ? "" : "," + size) + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(patterns, ((Find)obj).patterns)
+            && Objects.equals(size, ((Find)obj).size);
+        // The matcher is excluded from equals() and hashCode() because it is cached data.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), patterns, size);
+    }
+
+}
@@ -17,6 +17,7 @@
 package io.parsingdata.metal.expression.value;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Objects;
 
@@ -36,6 +37,8 @@ public final class NotAValue implements Value {
 
     @Override public byte[] value() { throw unsupported(); }
 
+    @Override public ByteBuffer buffer() { throw unsupported(); }
+
     @Override public BigInteger length() { throw unsupported(); }
 
     @Override public BigInteger asNumeric() { throw unsupported(); }
@@ -17,6 +17,7 @@
 package io.parsingdata.metal.expression.value;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 
 import io.parsingdata.metal.data.Slice;
@@ -30,6 +31,10 @@ public interface Value {
 
     byte[] value();
 
+    default ByteBuffer buffer() {
+        return ByteBuffer.wrap(value()).asReadOnlyBuffer();
+    }
+
     BigInteger length();
 
     BigInteger asNumeric();
@@ -16,9 +16,6 @@
 
 package io.parsingdata.metal.expression.value.reference;
 
-import static java.math.BigInteger.ONE;
-import static java.math.BigInteger.ZERO;
-
 import static io.parsingdata.metal.Trampoline.complete;
 import static io.parsingdata.metal.Trampoline.intermediate;
 import static io.parsingdata.metal.Util.checkNotNull;
@@ -60,26 +57,32 @@ public class Nth implements ValueExpression {
 
     @Override
     public ImmutableList<Value> eval(final ParseState parseState, final Encoding encoding) {
-        return reverse(eval(values.eval(parseState, encoding), indices.eval(parseState, encoding), new ImmutableList<>()).computeResult());
+        final ImmutableList<Value> valueList = values.eval(parseState, encoding);
+        final Value[] valueArray = toArray(valueList, new Value[Math.toIntExact(valueList.size)], (int) valueList.size - 1).computeResult();
+        return reverse(eval(valueArray, indices.eval(parseState, encoding), new ImmutableList<>()).computeResult());
     }
 
-    private Trampoline<ImmutableList<Value>> eval(final ImmutableList<Value> values, final ImmutableList<Value> indices, final ImmutableList<Value> result) {
+    private Trampoline<Value[]> toArray(final ImmutableList<Value> values, final Value[] output, final int index) {
+        if (values.isEmpty()) {
+            return complete(() -> output);
+        }
+        output[index] = values.head;
+        return intermediate(() -> toArray(values.tail, output, index - 1));
+    }
+
+    private Trampoline<ImmutableList<Value>> eval(final Value[] values, final ImmutableList<Value> indices, final ImmutableList<Value> result) {
         if (indices.isEmpty()) {
             return complete(() -> result);
         }
-        final BigInteger valueCount = BigInteger.valueOf(values.size);
         final Value index = indices.head;
-        final Value nextResult = !index.equals(NOT_A_VALUE) && index.asNumeric().compareTo(valueCount) < 0 && index.asNumeric().compareTo(ZERO) >= 0
-            ? nth(values, valueCount.subtract(index.asNumeric()).subtract(ONE)).computeResult()
+        final Value nextResult = !index.equals(NOT_A_VALUE) && isValidIndex(index.asNumeric(), values.length)
+            ? values[index.asNumeric().intValueExact()]
             : NOT_A_VALUE;
         return intermediate(() -> eval(values, indices.tail, result.add(nextResult)));
     }
 
-    private Trampoline<Value> nth(final ImmutableList<Value> values, final BigInteger index) {
-        if (index.equals(ZERO)) {
-            return complete(() -> values.head);
-        }
-        return intermediate(() -> nth(values.tail, index.subtract(ONE)));
+    private static boolean isValidIndex(final BigInteger index, final int valueCount) {
+        return index.signum() >= 0 && index.compareTo(BigInteger.valueOf(valueCount)) < 0;
     }
 
     @Override
@@ -20,15 +20,17 @@ import static io.parsingdata.metal.Trampoline.complete;
 import static io.parsingdata.metal.Trampoline.intermediate;
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.data.Selection.NO_LIMIT;
-import static io.parsingdata.metal.data.Selection.getAllValues;
+import static io.parsingdata.metal.data.Selection.reverse;
 import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
 
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import io.parsingdata.metal.Trampoline;
 import io.parsingdata.metal.Util;
 import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.data.ParseState;
 import io.parsingdata.metal.data.ParseValue;
 import io.parsingdata.metal.encoding.Encoding;
@@ -43,6 +45,11 @@ import io.parsingdata.metal.token.Token;
  * {@link NameRef} (to match on name) and {@link DefinitionRef} (to match on
  * definition). A limit argument may be provided to specify an upper bound to
  * the amount of returned results.
+ * <p>
+ * Matching values are retrieved from the index that the outermost
+ * {@link ParseGraph} maintains, so evaluation does not depend on the size of
+ * the graph. Graphs of branches, as evaluated by a
+ * {@link io.parsingdata.metal.expression.value.Scope}, are searched instead.
  * @param <T> The type of reference to match on.
  */
 public class Ref<T> implements ValueExpression {
@@ -51,20 +58,23 @@ public class Ref<T> implements ValueExpression {
     public final Predicate<ParseValue> predicate;
     public final ValueExpression limit;
 
-    private Ref(final T reference, final Predicate<ParseValue> predicate, final ValueExpression limit) {
+    private final Function<ParseGraph, ImmutableList<ParseValue>> lookup;
+
+    private Ref(final T reference, final Predicate<ParseValue> predicate, final Function<ParseGraph, ImmutableList<ParseValue>> lookup, final ValueExpression limit) {
         this.reference = checkNotNull(reference, "reference");
         this.predicate = checkNotNull(predicate, "predicate");
+        this.lookup = checkNotNull(lookup, "lookup");
         this.limit = limit;
     }
 
     public static class NameRef extends Ref<String> {
         public NameRef(final String reference) { this(reference, null); }
-        public NameRef(final String reference, final ValueExpression limit) { super(reference, value -> value.matches(reference), limit); }
+        public NameRef(final String reference, final ValueExpression limit) { super(reference, value -> value.matches(reference), graph -> graph.getValues(reference), limit); }
     }
 
     public static class DefinitionRef extends Ref<Token> {
         public DefinitionRef(final Token reference) { this(reference, null); }
-        public DefinitionRef(final Token reference, final ValueExpression limit) { super(reference, value -> value.definition.equals(reference), limit); }
+        public DefinitionRef(final Token reference, final ValueExpression limit) { super(reference, value -> value.definition.equals(reference), graph -> graph.getValues(reference), limit); }
     }
 
     @Override
@@ -82,15 +92,21 @@ public class Ref<T> implements ValueExpression {
         return evalImpl(parseState, evaluatedLimit.head.asNumeric().intValueExact());
     }
 
+    @SuppressWarnings("unchecked")
     private ImmutableList<Value> evalImpl(final ParseState parseState, final int limit) {
-        return wrap(getAllValues(parseState.order, predicate, limit), new ImmutableList<Value>()).computeResult();
+        final ImmutableList<ParseValue> values = lookup.apply(parseState.order);
+        if (limit < 0 || values.size <= limit) {
+            // An ImmutableList cannot be modified, so a list of ParseValues can be safely used as a list of Values.
+            return (ImmutableList<Value>) (ImmutableList<? extends Value>) values;
+        }
+        return reverse(take(values, limit, new ImmutableList<>()).computeResult());
     }
 
-    private static <T, U extends T> Trampoline<ImmutableList<T>> wrap(final ImmutableList<U> input, final ImmutableList<T> output) {
-        if (input.isEmpty()) {
+    private static Trampoline<ImmutableList<Value>> take(final ImmutableList<ParseValue> input, final int count, final ImmutableList<Value> output) {
+        if (count == 0) {
             return complete(() -> output);
         }
-        return intermediate(() -> wrap(input.tail, output.add(input.head)));
+        return intermediate(() -> take(input.tail, count - 1, output.add(input.head)));
     }
 
     @Override
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.data.ByteStream;
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.encoding.Encoding;
+
+/**
+ * Parses many inputs with a single definition, concurrently.
+ * <p>
+ * A BatchParser consists of a <code>token</code> (a {@link Token}) that is
+ * parsed with an <code>encoding</code> (an {@link Encoding}), an
+ * <code>executor</code> (an {@link Executor}) that runs the parses and
+ * <code>budgets</code>, which supplies a new {@link Budget} for every input.
+ * The token is compiled once (see {@link TokenCompiler}) and the compiled
+ * token is shared by all parses, since tokens keep no state of a parse.
+ * <p>
+ * Any executor may be used: a fixed thread pool to limit the amount of
+ * concurrent parses, a ForkJoinPool, or (on Java 21 and later) an executor
+ * that starts a virtual thread per task. Parses that fork work themselves
+ * (see {@link Sub} and {@link RepN}) do so in the current ForkJoinPool or the
+ * common one.
+ * <p>
+ * A BatchParser is immutable and may be shared between threads.
+ */
+public final class BatchParser {
+
+    public final Token token;
+    public final Encoding encoding;
+    public final Executor executor;
+    public final Supplier<Budget> budgets;
+
+    private final CompiledToken compiled;
+
+    public BatchParser(final Token token, final Encoding encoding, final Executor executor, final Supplier<Budget> budgets) {
+        this.token = checkNotNull(token, "token");
+        this.encoding = checkNotNull(encoding, "encoding");
+        this.executor = checkNotNull(executor, "executor");
+        this.budgets = checkNotNull(budgets, "budgets");
+        this.compiled = TokenCompiler.compile(token);
+    }
+
+    public BatchParser(final Token token, final Encoding encoding, final Executor executor) {
+        this(token, encoding, executor, () -> Budget.NONE);
+    }
+
+    /**
+     * @param input the input to parse
+     * @return a future that completes with the result of parsing
+     * <code>input</code>, or exceptionally if parsing throws an exception
+     * (such as a {@link BudgetExceededException})
+     */
+    public CompletableFuture<Optional<ParseState>> submit(final ByteStream input) {
+        checkNotNull(input, "input");
+        return CompletableFuture.supplyAsync(() -> compiled.parse(new Environment(createFromByteStream(input), encoding).withBudget(budgets.get())), executor);
+    }
+
+    /**
+     * Submits all <code>inputs</code> (see {@link #submit(ByteStream)}) and
+     * waits for their results.
+     *
+     * @param inputs the inputs to parse
+     * @return the results of parsing <code>inputs</code>, in the same order
+     * @throws CompletionException if parsing any of the inputs throws an
+     * exception, which is its cause
+     */
+    public List<Optional<ParseState>> parseAll(final List<? extends ByteStream> inputs) {
+        final List<CompletableFuture<Optional<ParseState>>> futures = new ArrayList<>();
+        for (final ByteStream input : checkNotNull(inputs, "inputs")) {
+            futures.add(submit(input));
+        }
+        final List<Optional<ParseState>> results = new ArrayList<>();
+        for (final CompletableFuture<Optional<ParseState>> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + token + "," + encoding + "," + executor + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(token, ((BatchParser)obj).token)
+            && Objects.equals(encoding, ((BatchParser)obj).encoding)
+            && Objects.equals(executor, ((BatchParser)obj).executor)
+            && Objects.equals(budgets, ((BatchParser)obj).budgets);
+        // The compiled token is excluded from equals() and hashCode() because it is derived from the token.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), token, encoding, executor, budgets);
+    }
+
+}
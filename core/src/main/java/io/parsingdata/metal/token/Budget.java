@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.parsingdata.metal.data.Environment;
+
+/**
+ * Limits the amount of work that parsing an input may take.
+ * <p>
+ * A Budget is enabled by passing it in the {@link Environment} (see
+ * {@link Environment#withBudget(Budget)}). It limits the amount of tokens
+ * that are parsed (<code>maxTokens</code>), the total size of the values
+ * that are read from the input (<code>maxBytes</code>), the amount of
+ * tokens that fail to parse and cause the parser to backtrack
+ * (<code>maxBacktracks</code>) and the time that parsing may take
+ * (<code>timeout</code>, which starts when the Budget is created). Values
+ * and failures of alternatives that are discarded count as well, so that
+ * inputs that make {@link Cho}, {@link Rep} or {@link Until} attempt many
+ * alternatives run out of budget.
+ * <p>
+ * The budget is checked each time a token is parsed and each time a value
+ * is read. When it is exceeded, parsing is aborted by throwing a
+ * {@link BudgetExceededException}, which distinguishes it from an input
+ * that does not match. Use {@link #UNLIMITED} (or a <code>null</code>
+ * timeout) to leave a limit unset.
+ * <p>
+ * A Budget may be shared between the threads that parse a single input (see
+ * {@link Sub} and {@link RepN}), but since it counts the work done so far,
+ * a new Budget should be created for every input.
+ */
+public class Budget {
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final Budget NONE = new Budget(false, UNLIMITED, UNLIMITED, UNLIMITED, null);
+
+    private static final int TIME_CHECK_INTERVAL = 64;
+
+    public enum Limit { TOKENS, BYTES, BACKTRACKS, TIME }
+
+    public final long maxTokens;
+    public final long maxBytes;
+    public final long maxBacktracks;
+    public final Duration timeout; // Null if parsing is not limited in time.
+
+    private final boolean enabled;
+    private final long deadline;
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong backtracks = new AtomicLong();
+
+    private Budget(final boolean enabled, final long maxTokens, final long maxBytes, final long maxBacktracks, final Duration timeout) {
+        this.enabled = enabled;
+        this.maxTokens = checkNotNegative(maxTokens, "maxTokens");
+        this.maxBytes = checkNotNegative(maxBytes, "maxBytes");
+        this.maxBacktracks = checkNotNegative(maxBacktracks, "maxBacktracks");
+        if (timeout != null && timeout.isNegative()) {
+            throw new IllegalArgumentException("Argument timeout may not be negative.");
+        }
+        this.timeout = timeout;
+        this.deadline = timeout == null ? 0 : System.nanoTime() + saturatedNanos(timeout);
+    }
+
+    public Budget(final long maxTokens, final long maxBytes, final long maxBacktracks, final Duration timeout) {
+        this(true, maxTokens, maxBytes, maxBacktracks, timeout);
+    }
+
+    private static long checkNotNegative(final long value, final String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Argument " + name + " may not be negative.");
+        }
+        return value;
+    }
+
+    private static long saturatedNanos(final Duration timeout) {
+        return timeout.compareTo(Duration.ofNanos(Long.MAX_VALUE / 2)) > 0 ? Long.MAX_VALUE / 2 : timeout.toNanos();
+    }
+
+    void parsed() {
+        if (!enabled) {
+            return;
+        }
+        final long count = tokens.incrementAndGet();
+        if (count > maxTokens) {
+            throw new BudgetExceededException(Limit.TOKENS, maxTokens);
+        }
+        // Reading the clock is relatively expensive, so the deadline is only checked periodically.
+        if (count % TIME_CHECK_INTERVAL == 1) {
+            checkDeadline();
+        }
+    }
+
+    void failed() {
+        if (enabled && backtracks.incrementAndGet() > maxBacktracks) {
+            throw new BudgetExceededException(Limit.BACKTRACKS, maxBacktracks);
+        }
+    }
+
+    void read(final BigInteger length) {
+        if (!enabled) {
+            return;
+        }
+        if (length.bitLength() >= Long.SIZE || bytes.addAndGet(length.longValue()) > maxBytes) {
+            throw new BudgetExceededException(Limit.BYTES, maxBytes);
+        }
+        checkDeadline();
+    }
+
+    private void checkDeadline() {
+        if (timeout != null && System.nanoTime() - deadline > 0) {
+            throw new BudgetExceededException(Limit.TIME, timeout.toMillis());
+        }
+    }
+
+    public long getTokens() {
+        return tokens.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getBacktracks() {
+        return backtracks.get();
+    }
+
+    @Override
+    public String toString() {
+        if (!enabled) {
+            return getClass().getSimpleName() + "(NONE)";
+        }
+        return getClass().getSimpleName() + "(tokens=" + tokens + "/" + maxTokens + ";bytes=" + bytes + "/" + maxBytes + ";backtracks=" + backtracks + "/" + maxBacktracks + (timeout == null ? "" : ";timeout=" + timeout) + ")";
+    }
+
+}
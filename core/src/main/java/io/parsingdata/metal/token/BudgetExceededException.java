@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.format;
+
+/**
+ * Thrown when parsing exceeds the {@link Budget} it was given. The
+ * <code>limit</code> that was exceeded and its <code>maximum</code> (in
+ * milliseconds for {@link Budget.Limit#TIME}) are available as fields.
+ */
+public class BudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public final Budget.Limit limit;
+    public final long maximum;
+
+    public BudgetExceededException(final Budget.Limit limit, final long maximum) {
+        super(format("Parse budget exceeded (limit=%s;maximum=%d).", checkNotNull(limit, "limit"), maximum));
+        this.limit = limit;
+        this.maximum = maximum;
+    }
+
+}
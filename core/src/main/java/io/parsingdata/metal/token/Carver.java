@@ -0,0 +1,229 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.data.ByteStream;
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.MultiPatternMatcher;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.encoding.Encoding;
+
+/**
+ * Locates occurrences of a set of formats in an input of unknown structure.
+ * <p>
+ * A Carver consists of a list of <code>tokens</code> and an
+ * <code>encoding</code> (an {@link Encoding}) to parse them with. For each
+ * token, the byte sequences it must start with (its signatures) are derived
+ * from the predicates of its leading {@link Def}s. To limit the size of the
+ * search, only the longest prefix that results in at most
+ * {@link #MAX_SIGNATURES} signatures is used. A token must start with at
+ * least one restricted byte.
+ * <p>
+ * When carving an input, the signatures of all tokens are searched for in a
+ * single pass over the input, using a {@link MultiPatternMatcher}. Every
+ * occurrence is a candidate, which is validated by parsing the token at its
+ * offset. The validations run concurrently with the search and each other,
+ * as {@link ForkJoinTask}s in the current (or the common) ForkJoinPool. At
+ * most {@link #MAX_TASKS} validations are in flight: when more candidates are
+ * found, the search waits for the oldest one to complete. Successful parses
+ * are handed over ordered by offset (and by the order of the tokens for the
+ * same offset), as soon as no candidate that precedes them can still be
+ * found.
+ * <p>
+ * A Carver is immutable and may be shared between threads.
+ */
+public final class Carver {
+
+    public static final int MAX_SIGNATURES = 256;
+    public static final int MAX_TASKS = 1024;
+
+    public final ImmutableList<Token> tokens;
+    public final Encoding encoding;
+
+    private final Token[] roots; // Private because array content is mutable.
+    private final CompiledToken[] compiled; // Private because array content is mutable.
+    private final int[] signatureTokens; // Private because array content is mutable.
+    private final MultiPatternMatcher matcher;
+
+    public Carver(final Encoding encoding, final Token... tokens) {
+        this.encoding = checkNotNull(encoding, "encoding");
+        this.tokens = ImmutableList.create(checkNotNull(tokens, "tokens"));
+        if (tokens.length == 0) {
+            throw new IllegalArgumentException("Argument tokens may not be empty.");
+        }
+        this.roots = tokens.clone();
+        this.compiled = new CompiledToken[tokens.length];
+        final List<byte[]> signatures = new ArrayList<>();
+        final List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            compiled[i] = TokenCompiler.compile(checkNotNull(tokens[i], "token"));
+            final List<byte[]> tokenSignatures = LeadingBytes.of(tokens[i], encoding).signatures(MAX_SIGNATURES);
+            if (tokenSignatures.isEmpty()) {
+                throw new IllegalArgumentException("Token " + tokens[i].name + " does not start with a signature.");
+            }
+            for (final byte[] signature : tokenSignatures) {
+                signatures.add(signature);
+                indices.add(i);
+            }
+        }
+        this.signatureTokens = indices.stream().mapToInt(Integer::intValue).toArray();
+        this.matcher = new MultiPatternMatcher(signatures.toArray(new byte[0][]));
+    }
+
+    /**
+     * @param input the input to search
+     * @return the successful parses of the tokens at the offsets where their
+     * signatures occur in <code>input</code>, ordered by offset
+     * @throws IOException if reading <code>input</code> fails
+     */
+    public ImmutableList<Match> carve(final ByteStream input) throws IOException {
+        final List<Match> matches = new ArrayList<>();
+        carve(input, matches::add);
+        return ImmutableList.create(matches.toArray(new Match[0]));
+    }
+
+    /**
+     * @param input the input to search
+     * @param handler receives the successful parses of the tokens at the
+     * offsets where their signatures occur in <code>input</code>, ordered by
+     * offset
+     * @throws IOException if reading <code>input</code> fails
+     */
+    public void carve(final ByteStream input, final Consumer<Match> handler) throws IOException {
+        checkNotNull(input, "input");
+        checkNotNull(handler, "handler");
+        final Deque<Candidate> running = new ArrayDeque<>();
+        final PriorityQueue<Candidate> succeeded = new PriorityQueue<>(Comparator.comparing((Candidate candidate) -> candidate.offset).thenComparingInt(candidate -> candidate.index));
+        matcher.scan(input, 0, (signature, offset) -> {
+            final int index = signatureTokens[signature];
+            final BigInteger start = BigInteger.valueOf(offset);
+            running.add(new Candidate(index, start, offset + matcher.getPattern(signature).length, ForkJoinTask.adapt(() -> compiled[index].parse(new Environment(createFromByteStream(input, start), encoding))).fork()));
+            if (running.size() > MAX_TASKS) {
+                final Candidate oldest = complete(running.remove(), succeeded);
+                // Candidates are found in the order in which their signatures end, so all later ones start at most one signature length before the end of the oldest.
+                release(succeeded, BigInteger.valueOf(oldest.end - matcher.maxLength), handler);
+            }
+        });
+        while (!running.isEmpty()) {
+            complete(running.remove(), succeeded);
+        }
+        release(succeeded, null, handler);
+    }
+
+    private static Candidate complete(final Candidate candidate, final PriorityQueue<Candidate> succeeded) {
+        if (candidate.task.join().isPresent()) {
+            succeeded.add(candidate);
+        }
+        return candidate;
+    }
+
+    private void release(final PriorityQueue<Candidate> succeeded, final BigInteger limit, final Consumer<Match> handler) {
+        while (!succeeded.isEmpty() && (limit == null || succeeded.peek().offset.compareTo(limit) < 0)) {
+            final Candidate candidate = succeeded.remove();
+            handler.accept(new Match(roots[candidate.index], candidate.offset, candidate.task.join().get()));
+        }
+    }
+
+    private static final class Candidate {
+
+        final int index;
+        final BigInteger offset;
+        final long end;
+        final ForkJoinTask<Optional<ParseState>> task;
+
+        Candidate(final int index, final BigInteger offset, final long end, final ForkJoinTask<Optional<ParseState>> task) {
+            this.index = index;
+            this.offset = offset;
+            this.end = end;
+            this.task = task;
+        }
+
+    }
+
+    /**
+     * A successful parse of a <code>token</code> at an <code>offset</code> in
+     * the input, resulting in a <code>parseState</code>.
+     */
+    public static final class Match {
+
+        public final Token token;
+        public final BigInteger offset;
+        public final ParseState parseState;
+
+        public Match(final Token token, final BigInteger offset, final ParseState parseState) {
+            this.token = checkNotNull(token, "token");
+            this.offset = checkNotNull(offset, "offset");
+            this.parseState = checkNotNull(parseState, "parseState");
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + token.name + "@" + offset + ";" + parseState.offset.subtract(offset) + ")";
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return Util.notNullAndSameClass(this, obj)
+                && Objects.equals(token, ((Match)obj).token)
+                && Objects.equals(offset, ((Match)obj).offset)
+                && Objects.equals(parseState, ((Match)obj).parseState);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getClass(), token, offset, parseState);
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + tokens + "," + encoding + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(tokens, ((Carver)obj).tokens)
+            && Objects.equals(encoding, ((Carver)obj).encoding);
+        // The roots, compiled tokens, signatures and matcher are excluded from equals() and hashCode() because they are derived from the tokens.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), tokens, encoding);
+    }
+
+}
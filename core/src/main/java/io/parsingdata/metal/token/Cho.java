@@ -23,14 +23,19 @@ import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.success;
 import static io.parsingdata.metal.data.ImmutableList.create;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.parsingdata.metal.Trampoline;
 import io.parsingdata.metal.Util;
 import io.parsingdata.metal.data.Environment;
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callbacks;
 import io.parsingdata.metal.encoding.Encoding;
 
 /**
@@ -39,11 +44,19 @@ import io.parsingdata.metal.encoding.Encoding;
  * A Cho consists of a list of <code>tokens</code>. If none of the tokens
  * succeed, the Cho fails. If any token succeeds, the Cho succeeds. Precedence
  * is from left to right.
+ * <p>
+ * Before trying the tokens, the next bytes of the input are compared to the
+ * bytes each token can start with (as derived from the constant sizes and
+ * predicates of its {@link Def}s), so that tokens that can never succeed are
+ * skipped. Since skipped tokens would otherwise have reported their failure,
+ * this only happens if no {@link Callbacks} are set.
  */
 public class Cho extends Token {
 
     public final ImmutableList<Token> tokens;
 
+    private final Map<Encoding, List<LeadingBytes>> leadingBytes = new ConcurrentHashMap<>();
+
     public Cho(final String name, final Encoding encoding, final Token token1, final Token token2, final Token... additionalTokens) {
         super(name, encoding);
         this.tokens = create(checkContainsNoNulls(additionalTokens, "additionalTokens"))
@@ -53,7 +66,30 @@ public class Cho extends Token {
 
     @Override
     protected Optional<ParseState> parseImpl(final Environment environment) {
-        return iterate(environment.addBranch(this), tokens).computeResult();
+        return iterate(environment.addBranch(this), candidates(environment)).computeResult();
+    }
+
+    private ImmutableList<Token> candidates(final Environment environment) {
+        if (environment.callbacks != Callbacks.NONE) {
+            return tokens;
+        }
+        final List<LeadingBytes> patterns = leadingBytes.computeIfAbsent(environment.encoding, encoding -> LeadingBytes.of(tokens, encoding));
+        final int length = patterns.stream().mapToInt(LeadingBytes::length).max().orElse(0);
+        if (length == 0) {
+            return tokens;
+        }
+        final byte[] data = new byte[length];
+        final int available = LeadingBytes.read(environment.parseState.source, environment.parseState.offset, data);
+        final Token[] candidates = new Token[patterns.size()];
+        int count = 0;
+        ImmutableList<Token> current = tokens;
+        for (final LeadingBytes pattern : patterns) {
+            if (pattern.matches(data, available)) {
+                candidates[count++] = current.head;
+            }
+            current = current.tail;
+        }
+        return count == candidates.length ? tokens : ImmutableList.create(Arrays.copyOf(candidates, count));
     }
 
     private Trampoline<Optional<ParseState>> iterate(final Environment environment, final ImmutableList<Token> list) {
@@ -75,6 +111,7 @@ public class Cho extends Token {
     public boolean equals(final Object obj) {
         return super.equals(obj)
             && Objects.equals(tokens, ((Cho)obj).tokens);
+        // The leadingBytes field is excluded from equals() and hashCode() because it is cached data.
     }
 
     @Override
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.token.Token.NO_NAME;
+import static io.parsingdata.metal.token.Token.SEPARATOR;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callbacks;
+import io.parsingdata.metal.encoding.Encoding;
+
+/**
+ * A {@link Token} that has been prepared for repeated parsing by the {@link
+ * TokenCompiler}.
+ * <p>
+ * A CompiledToken consists of the <code>token</code> (a {@link Token}) it was
+ * compiled from, together with the scopes of all its nested tokens and the
+ * {@link TokenRef}s that can be resolved without searching the {@link
+ * ParseGraph}. It is passed along in the {@link Environment}, so that parsing
+ * uses these precomputed results instead of constructing them again for every
+ * parsed token.
+ * <p>
+ * Parsing a CompiledToken results in the same {@link ParseState} as parsing
+ * its <code>token</code>. A CompiledToken is immutable and may be shared
+ * between threads.
+ */
+public class CompiledToken {
+
+    public static final CompiledToken NONE = new CompiledToken(ParseGraph.NONE, Collections.emptyMap(), Collections.emptyMap());
+
+    public final Token token;
+    public final boolean pruning;
+
+    private final Map<String, Map<String, String>> scopes;
+    private final Map<TokenRef, Token> references;
+    private final Set<String> referenceNames;
+    private final Set<Token> pruned;
+
+    CompiledToken(final Token token, final Map<String, Map<String, String>> scopes, final Map<TokenRef, Token> references) {
+        this(token, scopes, references, false, Collections.emptySet());
+    }
+
+    private CompiledToken(final Token token, final Map<String, Map<String, String>> scopes, final Map<TokenRef, Token> references, final boolean pruning, final Set<Token> pruned) {
+        this.token = checkNotNull(token, "token");
+        this.scopes = checkNotNull(scopes, "scopes");
+        this.references = checkNotNull(references, "references");
+        this.referenceNames = new HashSet<>();
+        references.keySet().forEach(reference -> referenceNames.add(reference.referenceName));
+        this.pruning = pruning;
+        this.pruned = checkNotNull(pruned, "pruned");
+    }
+
+    /**
+     * Returns a CompiledToken that prunes the ParseGraph while parsing.
+     * <p>
+     * Every token nested in <code>token</code> that adds a branch to the
+     * ParseGraph and that is droppable (see {@link Reachability}) is replaced
+     * by a {@link io.parsingdata.metal.data.ParsePlaceholder} as soon as it
+     * has been parsed. Only the outermost of such tokens are pruned, along
+     * with the iterated tokens of pruned repetitions. This keeps the size of
+     * the ParseGraph small when parsing long repetitions, at the cost of not
+     * having their contents available in the result.
+     *
+     * @return a CompiledToken that prunes unreachable branches
+     */
+    public CompiledToken withPruning() {
+        return new CompiledToken(token, scopes, references, true, Reachability.getPrunableTokens(token));
+    }
+
+    public Optional<ParseState> parse(final Environment environment) {
+        // The references are resolved assuming that no branch outside the token refers to the same name.
+        if (hasOpenBranchNamed(environment.parseState.order)) {
+            return pruning ? parse(environment, new CompiledToken(token, scopes, Collections.emptyMap(), true, pruned)) : token.parse(environment);
+        }
+        return parse(environment, this);
+    }
+
+    private Optional<ParseState> parse(final Environment environment, final CompiledToken compiled) {
+        return token.parse(new Environment(environment.scope, environment.parseState, environment.callbacks, environment.encoding, compiled, environment.memo).withBudget(environment.budget));
+    }
+
+    public Optional<ParseState> parse(final ParseState parseState, final Callbacks callbacks, final Encoding encoding) {
+        return parse(new Environment(parseState, callbacks, encoding));
+    }
+
+    public Optional<ParseState> parse(final ParseState parseState, final Encoding encoding) {
+        return parse(parseState, Callbacks.NONE, encoding);
+    }
+
+    private boolean hasOpenBranchNamed(final ParseGraph graph) {
+        if (referenceNames.contains(graph.definition.name)) {
+            return true;
+        }
+        return graph.branched && hasOpenBranchNamed(graph.head.asGraph());
+    }
+
+    public String extendScope(final String scope, final String name) {
+        final Map<String, String> names = scopes.get(scope);
+        final String extended = names == null ? null : names.get(name);
+        return extended != null ? extended : concatenate(scope, name);
+    }
+
+    static String concatenate(final String scope, final String name) {
+        return scope + (scope.isEmpty() || name.isEmpty() ? NO_NAME : SEPARATOR) + name;
+    }
+
+    Optional<Token> resolve(final TokenRef reference) {
+        return Optional.ofNullable(references.get(reference));
+    }
+
+    boolean isPruned(final Token token) {
+        return !pruned.isEmpty() && pruned.contains(token);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + token + (pruning ? ",pruning" : "") + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(token, ((CompiledToken)obj).token)
+            && Objects.equals(pruning, ((CompiledToken)obj).pruning);
+        // The scopes, references and pruned tokens are excluded from equals() and hashCode() because they are derived from the token.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), token, pruning);
+    }
+
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static java.math.BigInteger.ZERO;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.data.Slice.createFromSource;
+import static io.parsingdata.metal.token.CompiledToken.concatenate;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import io.parsingdata.metal.Util;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.expression.True;
+import io.parsingdata.metal.expression.value.Const;
+import io.parsingdata.metal.expression.value.CoreValue;
+import io.parsingdata.metal.expression.value.ValueExpression;
+
+/**
+ * The amount of bytes a {@link Token} consumes from the input, as derived by
+ * static analysis of its definition.
+ * <p>
+ * A Layout consists of a <code>minimumSize</code>, an optional maximum size
+ * and a list of <code>fields</code>. The sizes are bounds on the difference
+ * between the offset after and before a successful parse of the token. The
+ * analysis is conservative: a size that depends on parsed values (e.g., a
+ * {@link Def} with a size that is not a constant) results in a minimum of
+ * zero and no maximum. Constant sizes are added up through {@link Seq},
+ * {@link Pre}, {@link Post} and {@link RepN} with a constant
+ * <code>n</code>, while a {@link Cho} ranges from its smallest to its
+ * largest alternative. {@link Sub} and {@link Tie} consume no bytes at the
+ * current offset. A {@link TokenRef} is resolved if its
+ * <code>referenceName</code> refers to exactly one token in the analyzed
+ * definition; recursive references have a minimum of zero and no maximum.
+ * <p>
+ * The <code>fields</code> are the Defs (with their scoped names) that are
+ * parsed exactly once at a fixed offset from the start of the token, in
+ * order. They are listed up to the first token that has no fixed size, since
+ * the offsets of everything after it depend on the input.
+ * <p>
+ * A token is <code>valueIndependent</code> if its result only depends on the
+ * input at its offset and not on previously parsed values. This holds for
+ * Defs with a constant size, predicates that only use constants and the
+ * value itself (see {@link Post}), and {@link Seq}s, {@link Cho}s,
+ * {@link Rep}s, RepNs with a constant <code>n</code> and {@link Until}s with
+ * constant sizes that consist of such tokens. Such a token can be parsed in
+ * isolation and its result added to the graph afterwards.
+ */
+public final class Layout {
+
+    public final Token token;
+    public final BigInteger minimumSize;
+    public final ImmutableList<Field> fields;
+    public final boolean valueIndependent;
+
+    private final BigInteger maximumSize; // Null if unbounded.
+
+    private Layout(final Token token, final BigInteger minimumSize, final BigInteger maximumSize, final ImmutableList<Field> fields, final boolean valueIndependent) {
+        this.token = token;
+        this.minimumSize = minimumSize;
+        this.maximumSize = maximumSize;
+        this.fields = fields;
+        this.valueIndependent = valueIndependent;
+    }
+
+    public static Layout of(final Token token) {
+        checkNotNull(token, "token");
+        final Analysis analysis = new Analysis(token);
+        final Range range = analysis.size(token);
+        final List<Field> fields = new ArrayList<>();
+        analysis.collectFields(token, Token.NO_NAME, ZERO, fields);
+        return new Layout(token, range.minimum, range.maximum, ImmutableList.create(fields.toArray(new Field[0])), analysis.isValueIndependent(token));
+    }
+
+    public Optional<BigInteger> getMaximumSize() {
+        return Optional.ofNullable(maximumSize);
+    }
+
+    public boolean isFixed() {
+        return minimumSize.equals(maximumSize);
+    }
+
+    public Optional<BigInteger> getFixedSize() {
+        return isFixed() ? Optional.of(minimumSize) : Optional.empty();
+    }
+
+    public Optional<Field> getField(final String name) {
+        checkNotNull(name, "name");
+        for (ImmutableList<Field> current = fields; !current.isEmpty(); current = current.tail) {
+            if (current.head.name.equals(name)) {
+                return Optional.of(current.head);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return whether at least <code>minimumSize</code> bytes are available
+     * at the offset of <code>parseState</code>, which is required for the
+     * token to parse successfully
+     */
+    public boolean isAvailable(final ParseState parseState) {
+        checkNotNull(parseState, "parseState");
+        return createFromSource(parseState.source, parseState.offset, minimumSize).isPresent();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + token + ";minimumSize=" + minimumSize + ";maximumSize=" + (maximumSize == null ? "unbounded" : maximumSize) + ";fields=" + fields + ";valueIndependent=" + valueIndependent + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return Util.notNullAndSameClass(this, obj)
+            && Objects.equals(token, ((Layout)obj).token)
+            && Objects.equals(minimumSize, ((Layout)obj).minimumSize)
+            && Objects.equals(maximumSize, ((Layout)obj).maximumSize)
+            && Objects.equals(fields, ((Layout)obj).fields)
+            && Objects.equals(valueIndependent, ((Layout)obj).valueIndependent);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass(), token, minimumSize, maximumSize, fields, valueIndependent);
+    }
+
+    /**
+     * A {@link Def} that is parsed at a fixed <code>offset</code> from the
+     * start of the analyzed token, with the <code>name</code> its values
+     * get.
+     */
+    public static final class Field {
+
+        public final String name;
+        public final Def definition;
+        public final BigInteger offset;
+        public final BigInteger size;
+
+        Field(final String name, final Def definition, final BigInteger offset, final BigInteger size) {
+            this.name = name;
+            this.definition = definition;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + name + "@" + offset + ":" + size + ")";
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return Util.notNullAndSameClass(this, obj)
+                && Objects.equals(name, ((Field)obj).name)
+                && Objects.equals(definition, ((Field)obj).definition)
+                && Objects.equals(offset, ((Field)obj).offset)
+                && Objects.equals(size, ((Field)obj).size);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getClass(), name, definition, offset, size);
+        }
+
+    }
+
+    private static final class Range {
+
+        static final Range EMPTY = new Range(ZERO, ZERO);
+        static final Range UNKNOWN = new Range(ZERO, null);
+
+        final BigInteger minimum;
+        final BigInteger maximum; // Null if unbounded.
+
+        Range(final BigInteger minimum, final BigInteger maximum) {
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        Range append(final Range next) {
+            return new Range(minimum.add(next.minimum), maximum == null || next.maximum == null ? null : maximum.add(next.maximum));
+        }
+
+        Range union(final Range other) {
+            return new Range(minimum.min(other.minimum), maximum == null || other.maximum == null ? null : maximum.max(other.maximum));
+        }
+
+        Range times(final BigInteger count) {
+            return new Range(minimum.multiply(count), maximum == null ? (count.signum() == 0 ? ZERO : null) : maximum.multiply(count));
+        }
+
+        boolean isFixed() {
+            return minimum.equals(maximum);
+        }
+
+    }
+
+    private static final class Analysis {
+
+        private final Map<String, List<Token>> named = new HashMap<>();
+        private final Map<Token, Range> sizes = new IdentityHashMap<>();
+        private final Set<Token> active = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<Token, Boolean> independent = new IdentityHashMap<>();
+
+        Analysis(final Token root) {
+            final Set<Token> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            index(root, visited);
+        }
+
+        private void index(final Token token, final Set<Token> visited) {
+            if (!visited.add(token)) {
+                return;
+            }
+            named.computeIfAbsent(token.name, name -> new ArrayList<>()).add(token);
+            TokenCompiler.getChildren(token).ifPresent(children -> children.forEach(child -> index(child, visited)));
+        }
+
+        Range size(final Token token) {
+            final Range known = sizes.get(token);
+            if (known != null) {
+                return known;
+            }
+            if (!active.add(token)) {
+                return Range.UNKNOWN; // A recursive definition.
+            }
+            final Range range = analyze(token);
+            active.remove(token);
+            sizes.put(token, range);
+            return range;
+        }
+
+        private Range analyze(final Token token) {
+            final Class<?> type = token.getClass();
+            if (type == Def.class) {
+                return constant(((Def) token).size)
+                    .filter(size -> size.signum() >= 0)
+                    .map(size -> new Range(size, size))
+                    .orElse(Range.UNKNOWN);
+            }
+            if (type == Pre.class) {
+                return size(((Pre) token).token);
+            }
+            if (type == Post.class) {
+                return size(((Post) token).token);
+            }
+            if (type == Seq.class) {
+                Range range = Range.EMPTY;
+                for (ImmutableList<Token> current = ((Seq) token).tokens; !current.isEmpty(); current = current.tail) {
+                    range = range.append(size(current.head));
+                }
+                return range;
+            }
+            if (type == Cho.class) {
+                Range range = null;
+                for (ImmutableList<Token> current = ((Cho) token).tokens; !current.isEmpty(); current = current.tail) {
+                    range = range == null ? size(current.head) : range.union(size(current.head));
+                }
+                return range;
+            }
+            if (type == RepN.class) {
+                final Range element = size(((RepN) token).token);
+                return constant(((RepN) token).n)
+                    .filter(count -> count.signum() >= 0)
+                    .map(element::times)
+                    .orElse(new Range(ZERO, element.maximum != null && element.maximum.signum() == 0 ? ZERO : null));
+            }
+            if (type == Rep.class || type == While.class) {
+                final Range element = size(((IterableToken) token).token);
+                return new Range(ZERO, element.maximum != null && element.maximum.signum() == 0 ? ZERO : null);
+            }
+            if (type == Until.class) {
+                return new Range(size(((Until) token).terminator).minimum, null);
+            }
+            if (type == Sub.class || type == Tie.class) {
+                return Range.EMPTY;
+            }
+            if (type == TokenRef.class) {
+                return resolve((TokenRef) token).map(this::size).orElse(Range.UNKNOWN);
+            }
+            return Range.UNKNOWN;
+        }
+
+        boolean isValueIndependent(final Token token) {
+            final Boolean known = independent.get(token);
+            if (known != null) {
+                return known;
+            }
+            final boolean result = analyzeValueIndependence(token);
+            independent.put(token, result);
+            return result;
+        }
+
+        private boolean analyzeValueIndependence(final Token token) {
+            final Class<?> type = token.getClass();
+            if (type == Def.class) {
+                return constant(((Def) token).size).isPresent();
+            }
+            if (type == Post.class) {
+                final Post post = (Post) token;
+                // The value itself is only available to the predicate if the Def actually parses a value.
+                return isValueIndependent(post.token)
+                    && (post.predicate.getClass() == True.class
+                        || post.token.getClass() == Def.class && size(post.token).minimum.signum() > 0 && LeadingBytes.isValueIndependent(post.predicate));
+            }
+            if (type == Seq.class) {
+                return allValueIndependent(((Seq) token).tokens);
+            }
+            if (type == Cho.class) {
+                return allValueIndependent(((Cho) token).tokens);
+            }
+            if (type == Rep.class) {
+                return isValueIndependent(((Rep) token).token);
+            }
+            if (type == RepN.class) {
+                return constant(((RepN) token).n).isPresent() && isValueIndependent(((RepN) token).token);
+            }
+            if (type == Until.class) {
+                final Until until = (Until) token;
+                return constant(until.initialSize).isPresent()
+                    && constant(until.stepSize).isPresent()
+                    && constant(until.maxSize).isPresent()
+                    && isValueIndependent(until.terminator);
+            }
+            // TokenRefs are resolved by searching the ParseGraph, so they depend on what was parsed before them.
+            return false;
+        }
+
+        private boolean allValueIndependent(final ImmutableList<Token> tokens) {
+            for (ImmutableList<Token> current = tokens; !current.isEmpty(); current = current.tail) {
+                if (!isValueIndependent(current.head)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Optional<Token> resolve(final TokenRef reference) {
+            final List<Token> candidates = named.getOrDefault(reference.referenceName, Collections.emptyList());
+            return candidates.size() == 1 ? Optional.of(candidates.get(0)) : Optional.empty();
+        }
+
+        /*
+         * Adds the fields of token at offset and returns the offset after it,
+         * or empty if the size of token is not fixed.
+         */
+        Optional<BigInteger> collectFields(final Token token, final String outerScope, final BigInteger offset, final List<Field> fields) {
+            final String scope = concatenate(outerScope, token.name);
+            final Class<?> type = token.getClass();
+            if (type == Def.class) {
+                final Range range = size(token);
+                if (!range.isFixed()) {
+                    return Optional.empty();
+                }
+                fields.add(new Field(scope, (Def) token, offset, range.minimum));
+                return Optional.of(offset.add(range.minimum));
+            }
+            if (type == Pre.class) {
+                return collectFields(((Pre) token).token, scope, offset, fields);
+            }
+            if (type == Post.class) {
+                return collectFields(((Post) token).token, scope, offset, fields);
+            }
+            if (type == Seq.class) {
+                BigInteger current = offset;
+                for (ImmutableList<Token> tokens = ((Seq) token).tokens; !tokens.isEmpty(); tokens = tokens.tail) {
+                    final Optional<BigInteger> next = collectFields(tokens.head, scope, current, fields);
+                    if (next.isEmpty()) {
+                        return Optional.empty();
+                    }
+                    current = next.get();
+                }
+                return Optional.of(current);
+            }
+            // The fields of other tokens are either not parsed exactly once or not at a fixed offset.
+            final Range range = size(token);
+            return range.isFixed() ? Optional.of(offset.add(range.minimum)) : Optional.empty();
+        }
+
+        private static Optional<BigInteger> constant(final ValueExpression expression) {
+            return expression.getClass() == Const.class && ((Const) expression).value instanceof CoreValue
+                ? Optional.of(((Const) expression).value.asNumeric())
+                : Optional.empty();
+        }
+
+    }
+
+}
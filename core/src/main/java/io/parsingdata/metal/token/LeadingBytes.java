@@ -0,0 +1,432 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static java.math.BigInteger.ZERO;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import io.parsingdata.metal.data.ConstantSource;
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.Slice;
+import io.parsingdata.metal.data.Source;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.Expression;
+import io.parsingdata.metal.expression.True;
+import io.parsingdata.metal.expression.comparison.ComparisonExpression;
+import io.parsingdata.metal.expression.comparison.Eq;
+import io.parsingdata.metal.expression.comparison.EqNum;
+import io.parsingdata.metal.expression.comparison.EqStr;
+import io.parsingdata.metal.expression.comparison.GtEqNum;
+import io.parsingdata.metal.expression.comparison.GtNum;
+import io.parsingdata.metal.expression.comparison.LtEqNum;
+import io.parsingdata.metal.expression.comparison.LtNum;
+import io.parsingdata.metal.expression.logical.And;
+import io.parsingdata.metal.expression.logical.BinaryLogicalExpression;
+import io.parsingdata.metal.expression.logical.Not;
+import io.parsingdata.metal.expression.logical.Or;
+import io.parsingdata.metal.expression.value.BinaryValueExpression;
+import io.parsingdata.metal.expression.value.Const;
+import io.parsingdata.metal.expression.value.CoreValue;
+import io.parsingdata.metal.expression.value.UnaryValueExpression;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.arithmetic.Add;
+import io.parsingdata.metal.expression.value.arithmetic.Div;
+import io.parsingdata.metal.expression.value.arithmetic.Mod;
+import io.parsingdata.metal.expression.value.arithmetic.Mul;
+import io.parsingdata.metal.expression.value.arithmetic.Neg;
+import io.parsingdata.metal.expression.value.reference.Self;
+
+/**
+ * The bytes a {@link Token} can start with, as derived by static analysis.
+ * <p>
+ * For each of the first bytes that a token reads, a set of allowed values is
+ * kept, or <code>null</code> if any value is allowed. The allowed values are
+ * derived from {@link Def}s with a constant size, wrapped in a {@link Post}
+ * with a predicate that only depends on the value itself. If the token always
+ * reads exactly the analyzed bytes, it is <code>complete</code>, so that the
+ * bytes of a next token in a {@link Seq} can be appended.
+ * <p>
+ * The analysis is conservative: if the input does not match, parsing the
+ * token is guaranteed to fail, but a match does not imply success.
+ */
+final class LeadingBytes {
+
+    static final int MAX_LENGTH = 16;
+
+    static final LeadingBytes EMPTY = new LeadingBytes(new BitSet[0], true);
+    static final LeadingBytes UNKNOWN = new LeadingBytes(new BitSet[0], false);
+
+    private static final int BYTE_VALUES = 256;
+    private static final Set<Class<?>> VALUE_INDEPENDENT_COMPARISONS = Set.of(Eq.class, EqNum.class, EqStr.class, GtEqNum.class, GtNum.class, LtEqNum.class, LtNum.class);
+    private static final Set<Class<?>> VALUE_INDEPENDENT_OPERATORS = Set.of(Add.class, Div.class, Mod.class, Mul.class, Neg.class, io.parsingdata.metal.expression.value.arithmetic.Sub.class,
+        io.parsingdata.metal.expression.value.bitwise.And.class, io.parsingdata.metal.expression.value.bitwise.Or.class, io.parsingdata.metal.expression.value.bitwise.Not.class);
+
+    private final BitSet[] positions; // Private because array content is mutable.
+    final boolean complete;
+
+    private LeadingBytes(final BitSet[] positions, final boolean complete) {
+        this.positions = positions;
+        this.complete = complete;
+    }
+
+    static LeadingBytes of(final Token token, final Encoding encoding) {
+        final Encoding activeEncoding = token.encoding != null ? token.encoding : encoding;
+        final Class<?> type = token.getClass();
+        if (type == Def.class) {
+            return ofDef((Def) token);
+        }
+        if (type == Post.class) {
+            return ofPost((Post) token, activeEncoding);
+        }
+        if (type == Seq.class) {
+            return ofSeq(((Seq) token).tokens, activeEncoding);
+        }
+        if (type == Cho.class) {
+            return ofCho(((Cho) token).tokens, activeEncoding);
+        }
+        if (type == Sub.class || type == Tie.class) {
+            // Both parse elsewhere and return to the offset they started at.
+            return EMPTY;
+        }
+        return UNKNOWN;
+    }
+
+    private static LeadingBytes ofDef(final Def def) {
+        return constantSize(def)
+            .map(size -> size <= MAX_LENGTH ? new LeadingBytes(new BitSet[size.intValue()], true) : new LeadingBytes(new BitSet[MAX_LENGTH], false))
+            .orElse(UNKNOWN);
+    }
+
+    private static Optional<Long> constantSize(final Def def) {
+        if (def.size.getClass() != Const.class || !(((Const) def.size).value instanceof CoreValue)) {
+            return Optional.empty();
+        }
+        final CoreValue size = (CoreValue) ((Const) def.size).value;
+        return size.fitsInLong() && size.asLong() >= 0 ? Optional.of(size.asLong()) : Optional.empty();
+    }
+
+    private static LeadingBytes ofPost(final Post post, final Encoding encoding) {
+        final LeadingBytes inner = of(post.token, encoding);
+        if (post.token.getClass() != Def.class || inner.positions.length == 0 || !inner.complete) {
+            return inner;
+        }
+        if (inner.positions.length == 1 && isValueIndependent(post.predicate)) {
+            return new LeadingBytes(new BitSet[] { evaluateAll(post, encoding) }, true);
+        }
+        return inner.restrict(post.predicate);
+    }
+
+    /*
+     * A token that reads a single byte with a predicate that only depends on
+     * the value itself is parsed for all possible values of the byte.
+     */
+    static BitSet evaluateAll(final Token token, final Encoding encoding) {
+        final BitSet allowed = new BitSet(BYTE_VALUES);
+        for (int value = 0; value < BYTE_VALUES; value++) {
+            final ParseState parseState = new ParseState(ParseGraph.EMPTY, new ConstantSource(new byte[] { (byte) value }), ZERO, new ImmutableList<>());
+            if (token.parse(new Environment(parseState, encoding)).isPresent()) {
+                allowed.set(value);
+            }
+        }
+        return allowed;
+    }
+
+    private LeadingBytes restrict(final Expression predicate) {
+        final Class<?> type = predicate.getClass();
+        if (type == Eq.class && isCurrentValue(((Eq) predicate).value) && ((Eq) predicate).predicate.getClass() == Const.class) {
+            final byte[] expected = ((Const) ((Eq) predicate).predicate).value.value();
+            final BitSet[] restricted = Arrays.copyOf(positions, positions.length);
+            for (int i = 0; i < restricted.length; i++) {
+                // If the sizes differ, the predicate never holds, so no value is allowed.
+                restricted[i] = new BitSet(BYTE_VALUES);
+                if (expected.length == restricted.length) {
+                    restricted[i].set(expected[i] & 0xff);
+                }
+            }
+            return new LeadingBytes(restricted, complete);
+        }
+        if (type == And.class) {
+            return restrict(((BinaryLogicalExpression) predicate).left).intersect(restrict(((BinaryLogicalExpression) predicate).right));
+        }
+        if (type == Or.class) {
+            return restrict(((BinaryLogicalExpression) predicate).left).union(restrict(((BinaryLogicalExpression) predicate).right));
+        }
+        return this;
+    }
+
+    private static boolean isCurrentValue(final ValueExpression value) {
+        return value == null || value.getClass() == Self.class;
+    }
+
+    static boolean isValueIndependent(final Expression predicate) {
+        final Class<?> type = predicate.getClass();
+        if (type == True.class) {
+            return true;
+        }
+        if (type == And.class || type == Or.class) {
+            return isValueIndependent(((BinaryLogicalExpression) predicate).left) && isValueIndependent(((BinaryLogicalExpression) predicate).right);
+        }
+        if (type == Not.class) {
+            return isValueIndependent(((Not) predicate).operand);
+        }
+        return VALUE_INDEPENDENT_COMPARISONS.contains(type)
+            && isCurrentValue(((ComparisonExpression) predicate).value)
+            && isValueIndependentOperand(((ComparisonExpression) predicate).predicate);
+    }
+
+    private static boolean isValueIndependentOperand(final ValueExpression value) {
+        final Class<?> type = value.getClass();
+        if (type == Const.class || type == Self.class) {
+            return true;
+        }
+        if (VALUE_INDEPENDENT_OPERATORS.contains(type)) {
+            return value instanceof UnaryValueExpression
+                ? isValueIndependentOperand(((UnaryValueExpression) value).operand)
+                : isValueIndependentOperand(((BinaryValueExpression) value).left) && isValueIndependentOperand(((BinaryValueExpression) value).right);
+        }
+        return false;
+    }
+
+    private static LeadingBytes ofSeq(final ImmutableList<Token> tokens, final Encoding encoding) {
+        LeadingBytes result = EMPTY;
+        for (ImmutableList<Token> current = tokens; !current.isEmpty() && result.complete && result.positions.length < MAX_LENGTH; current = current.tail) {
+            result = result.append(of(current.head, encoding));
+        }
+        return result;
+    }
+
+    private static LeadingBytes ofCho(final ImmutableList<Token> tokens, final Encoding encoding) {
+        LeadingBytes result = of(tokens.head, encoding);
+        for (ImmutableList<Token> current = tokens.tail; !current.isEmpty(); current = current.tail) {
+            result = result.union(of(current.head, encoding));
+        }
+        return result;
+    }
+
+    private LeadingBytes append(final LeadingBytes next) {
+        final int length = Math.min(positions.length + next.positions.length, MAX_LENGTH);
+        final BitSet[] appended = Arrays.copyOf(positions, length);
+        System.arraycopy(next.positions, 0, appended, positions.length, length - positions.length);
+        return new LeadingBytes(appended, next.complete && length == positions.length + next.positions.length);
+    }
+
+    private LeadingBytes union(final LeadingBytes other) {
+        final BitSet[] united = new BitSet[Math.min(positions.length, other.positions.length)];
+        for (int i = 0; i < united.length; i++) {
+            united[i] = positions[i] == null || other.positions[i] == null ? null : or(positions[i], other.positions[i]);
+        }
+        return new LeadingBytes(united, complete && other.complete && positions.length == other.positions.length);
+    }
+
+    private LeadingBytes intersect(final LeadingBytes other) {
+        final BitSet[] intersected = new BitSet[positions.length];
+        for (int i = 0; i < intersected.length; i++) {
+            intersected[i] = positions[i] == null ? other.positions[i] : other.positions[i] == null ? positions[i] : and(positions[i], other.positions[i]);
+        }
+        return new LeadingBytes(intersected, complete);
+    }
+
+    private static BitSet or(final BitSet left, final BitSet right) {
+        final BitSet result = (BitSet) left.clone();
+        result.or(right);
+        return result;
+    }
+
+    private static BitSet and(final BitSet left, final BitSet right) {
+        final BitSet result = (BitSet) left.clone();
+        result.and(right);
+        return result;
+    }
+
+    /**
+     * @return the amount of leading bytes that restrict the input
+     */
+    int length() {
+        int length = positions.length;
+        while (length > 0 && positions[length - 1] == null) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * @param maxCount the maximum amount of byte sequences to return
+     * @return the byte sequences of the longest prefix of restricted
+     * positions that has at most <code>maxCount</code> combinations of
+     * allowed values, or an empty list if the first position is not
+     * restricted
+     */
+    List<byte[]> signatures(final int maxCount) {
+        List<byte[]> result = List.of(new byte[0]);
+        for (final BitSet position : positions) {
+            if (position == null || (long) result.size() * position.cardinality() > maxCount) {
+                break;
+            }
+            final List<byte[]> next = new ArrayList<>();
+            for (final byte[] prefix : result) {
+                for (int value = position.nextSetBit(0); value >= 0; value = position.nextSetBit(value + 1)) {
+                    final byte[] signature = Arrays.copyOf(prefix, prefix.length + 1);
+                    signature[prefix.length] = (byte) value;
+                    next.add(signature);
+                }
+            }
+            result = next;
+        }
+        return result.isEmpty() || result.get(0).length == 0 ? List.of() : result;
+    }
+
+    /**
+     * @param data the next bytes of the input
+     * @param available the amount of bytes in <code>data</code> that are available in the input
+     * @return whether the input may start with <code>data</code> according to these leading bytes
+     */
+    boolean matches(final byte[] data, final int available) {
+        return matches(data, 0, available);
+    }
+
+    private boolean matches(final byte[] data, final int offset, final int available) {
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] != null && (offset + i >= available || !positions[i].get(data[offset + i] & 0xff))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the bytes at <code>offset</code> in <code>source</code> into
+     * <code>data</code>, as far as they are available.
+     *
+     * @return the amount of bytes read
+     */
+    static int read(final Source source, final BigInteger offset, final byte[] data) {
+        if (isAvailable(source, offset, data.length)) {
+            return copy(source, offset, data, data.length);
+        }
+        int low = 0;
+        int high = data.length - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (isAvailable(source, offset, middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return copy(source, offset, data, low);
+    }
+
+    private static boolean isAvailable(final Source source, final BigInteger offset, final int length) {
+        return Slice.createFromSource(source, offset, BigInteger.valueOf(length)).isPresent();
+    }
+
+    private static int copy(final Source source, final BigInteger offset, final byte[] data, final int length) {
+        if (length > 0) {
+            System.arraycopy(Slice.createFromSource(source, offset, BigInteger.valueOf(length)).get().getData(), 0, data, 0, length);
+        }
+        return length;
+    }
+
+    Search search() {
+        return new Search(this);
+    }
+
+    /**
+     * Searches data for positions where it matches a pattern of {@link
+     * LeadingBytes}. If the pattern starts with at least two constant bytes,
+     * the Boyer-Moore-Horspool algorithm is used to skip ahead.
+     */
+    static final class Search {
+
+        final LeadingBytes pattern;
+        final int length;
+
+        private final byte[] prefix; // Private because array content is mutable.
+        private final int[] shifts; // Private because array content is mutable.
+
+        private Search(final LeadingBytes pattern) {
+            this.pattern = pattern;
+            this.length = pattern.length();
+            int prefixLength = 0;
+            while (prefixLength < length && pattern.positions[prefixLength] != null && pattern.positions[prefixLength].cardinality() == 1) {
+                prefixLength++;
+            }
+            prefix = new byte[prefixLength];
+            for (int i = 0; i < prefixLength; i++) {
+                prefix[i] = (byte) pattern.positions[i].nextSetBit(0);
+            }
+            shifts = new int[BYTE_VALUES];
+            Arrays.fill(shifts, prefixLength);
+            for (int i = 0; i < prefixLength - 1; i++) {
+                shifts[prefix[i] & 0xff] = prefixLength - 1 - i;
+            }
+        }
+
+        /**
+         * @param data the bytes to search
+         * @param to the first position in <code>data</code> not to consider
+         * @param available the amount of bytes in <code>data</code> that are available in the input
+         * @param step the distance between the positions to consider, starting at zero
+         * @return the first position that matches, or <code>-1</code> if there is none
+         */
+        int find(final byte[] data, final int to, final int available, final int step) {
+            if (step == 1 && prefix.length > 1) {
+                return findWithShifts(data, to, available);
+            }
+            for (int i = 0; i < to && i + length <= available; i += step) {
+                if (pattern.matches(data, i, available)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int findWithShifts(final byte[] data, final int to, final int available) {
+            final int last = prefix.length - 1;
+            for (int i = 0; i < to && i + length <= available; i += shifts[data[i + last] & 0xff]) {
+                int j = last;
+                while (j >= 0 && data[i + j] == prefix[j]) {
+                    j--;
+                }
+                if (j < 0 && pattern.matches(data, i, available)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+    }
+
+    static List<LeadingBytes> of(final ImmutableList<Token> tokens, final Encoding encoding) {
+        final List<LeadingBytes> result = new ArrayList<>();
+        for (ImmutableList<Token> current = tokens; !current.isEmpty(); current = current.tail) {
+            result.add(of(current.head, encoding));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.Source;
+import io.parsingdata.metal.data.callback.Callbacks;
+import io.parsingdata.metal.encoding.Encoding;
+
+/**
+ * A table that stores the results of parsing {@link Token}s, so that
+ * backtracking does not parse the same token at the same offset again.
+ * <p>
+ * A MemoTable is enabled by passing it in the {@link Environment}. Only
+ * tokens whose result does not depend on previously parsed values are
+ * memoized: {@link Seq}, {@link Cho}, {@link Rep}, {@link RepN} and {@link
+ * Until} tokens that are value-independent, as determined by their
+ * {@link Layout}. The
+ * first time such a token is parsed at some offset, it is parsed in
+ * isolation. The resulting items are then added to the {@link ParseGraph}
+ * whenever the token is parsed at that offset, with the same scope and
+ * {@link Encoding}. As a result, parsing yields the same {@link ParseState}
+ * with or without a MemoTable.
+ * <p>
+ * Since replaying a stored result does not invoke {@link Callbacks}, the
+ * table is only used if none are set. A MemoTable may be shared between
+ * threads, but its entries are never evicted, so it should not outlive the
+ * input it was used to parse.
+ */
+public class MemoTable {
+
+    public static final MemoTable NONE = new MemoTable(false);
+
+    private final boolean enabled;
+    private final Map<Key, Optional<ParseState>> results = new ConcurrentHashMap<>();
+    private final Map<Key, Boolean> memoizable = new ConcurrentHashMap<>();
+
+    private MemoTable(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public MemoTable() {
+        this(true);
+    }
+
+    boolean isMemoized(final Token token, final Environment environment) {
+        return enabled
+            && environment.callbacks == Callbacks.NONE
+            && (token.getClass() == Seq.class || token.getClass() == Cho.class || token instanceof IterableToken || token.getClass() == Until.class)
+            && isMemoizable(token);
+    }
+
+    Optional<ParseState> parse(final Token token, final Environment environment) {
+        final ParseState parseState = environment.parseState;
+        final Key key = new Key(token, parseState.offset, parseState.source, environment.scope, environment.encoding);
+        Optional<ParseState> result = results.get(key);
+        if (result == null) {
+            // Not computeIfAbsent(), since parsing the token updates this table recursively.
+            final ParseState isolated = new ParseState(ParseGraph.EMPTY, parseState.source, parseState.offset, new ImmutableList<>());
+            result = token.parseInScope(environment.withParseState(isolated));
+            results.putIfAbsent(key, result);
+        }
+        return result.map(after -> Replay.replay(after.order, parseState).seek(after.offset).get());
+    }
+
+    private boolean isMemoizable(final Token token) {
+        final Key key = new Key(token, null, null, null, null);
+        final Boolean known = memoizable.get(key);
+        if (known != null) {
+            return known;
+        }
+        final boolean result = Layout.of(token).valueIndependent;
+        memoizable.put(key, result);
+        return result;
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + (enabled ? results.size() : "NONE") + ")";
+    }
+
+    /*
+     * Tokens and Sources are compared by identity: values in the ParseGraph
+     * refer to the exact Token instance that defined them, and comparing
+     * Sources by content would be as expensive as parsing.
+     */
+    private static final class Key {
+
+        private final Token token;
+        private final BigInteger offset;
+        private final Source source;
+        private final String scope;
+        private final Encoding encoding;
+
+        private Key(final Token token, final BigInteger offset, final Source source, final String scope, final Encoding encoding) {
+            this.token = token;
+            this.offset = offset;
+            this.source = source;
+            this.scope = scope;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Key
+                && token == ((Key)obj).token
+                && source == ((Key)obj).source
+                && Objects.equals(offset, ((Key)obj).offset)
+                && Objects.equals(scope, ((Key)obj).scope)
+                && Objects.equals(encoding, ((Key)obj).encoding);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(token), offset, System.identityHashCode(source), scope, encoding);
+        }
+
+    }
+
+}
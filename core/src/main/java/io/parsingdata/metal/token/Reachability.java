@@ -0,0 +1,554 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.token.CompiledToken.concatenate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.expression.Expression;
+import io.parsingdata.metal.expression.True;
+import io.parsingdata.metal.expression.comparison.ComparisonExpression;
+import io.parsingdata.metal.expression.logical.BinaryLogicalExpression;
+import io.parsingdata.metal.expression.logical.UnaryLogicalExpression;
+import io.parsingdata.metal.expression.value.BinaryValueExpression;
+import io.parsingdata.metal.expression.value.Bytes;
+import io.parsingdata.metal.expression.value.Const;
+import io.parsingdata.metal.expression.value.CoreValue;
+import io.parsingdata.metal.expression.value.Elvis;
+import io.parsingdata.metal.expression.value.Expand;
+import io.parsingdata.metal.expression.value.Find;
+import io.parsingdata.metal.expression.value.Fold;
+import io.parsingdata.metal.expression.value.FoldCat;
+import io.parsingdata.metal.expression.value.Reverse;
+import io.parsingdata.metal.expression.value.Scope;
+import io.parsingdata.metal.expression.value.UnaryValueExpression;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.reference.Count;
+import io.parsingdata.metal.expression.value.reference.CurrentIteration;
+import io.parsingdata.metal.expression.value.reference.CurrentOffset;
+import io.parsingdata.metal.expression.value.reference.First;
+import io.parsingdata.metal.expression.value.reference.Last;
+import io.parsingdata.metal.expression.value.reference.Nth;
+import io.parsingdata.metal.expression.value.reference.Ref;
+import io.parsingdata.metal.expression.value.reference.Ref.DefinitionRef;
+import io.parsingdata.metal.expression.value.reference.Ref.NameRef;
+import io.parsingdata.metal.expression.value.reference.Self;
+
+/**
+ * Static analysis of which parsed values of a definition can still be
+ * referenced later in a parse.
+ * <p>
+ * A {@link Token} is <i>droppable</i> within a <code>root</code> definition
+ * if the result of parsing it can be removed from the
+ * {@link io.parsingdata.metal.data.ParseGraph} directly after it has been
+ * parsed, without changing the outcome of the rest of the parse. This is the
+ * case if:
+ * <ul>
+ * <li>no expression outside the token refers to a value defined inside it,
+ * either by name (see {@link NameRef}) or by definition (see
+ * {@link DefinitionRef});</li>
+ * <li>expressions inside the token only refer to values defined inside it
+ * through {@link Last}, if a matching value is always parsed earlier within
+ * the same instance of the token (so that previous instances can never be
+ * the most recent match);</li>
+ * <li>the token contains no {@link Sub} and no {@link TokenRef}, and no
+ * {@link Sub} outside the token is defined in terms of a token inside it,
+ * since cycle detection and TokenRef lookups search the ParseGraph;</li>
+ * <li>no {@link TokenRef} outside the token refers to a token inside it;</li>
+ * <li>the current value (see {@link Self}) is only used where it is known
+ * to be parsed outside the token, e.g., in the predicate of a
+ * {@link Post} of a {@link Def}.</li>
+ * </ul>
+ * The analysis is conservative: names are compared on their last segment,
+ * and tokens or expressions of unknown types make the token not droppable.
+ * The token is identified by identity, so a token that is equal to it
+ * elsewhere in <code>root</code> is analyzed as any other token outside it.
+ */
+public final class Reachability {
+
+    private Reachability() {}
+
+    public static boolean isDroppable(final Token root, final Token token) {
+        checkNotNull(root, "root");
+        checkNotNull(token, "token");
+        return new Analysis(token).isDroppableIn(root);
+    }
+
+    /*
+     * Returns whether token may be parsed at several locations concurrently,
+     * each starting from the same ParseState, with the same result as
+     * parsing these locations one after the other. This requires that token
+     * only refers to its own values through Last, if they are always parsed
+     * earlier within the same instance, and that it contains no Sub, Tie or
+     * TokenRef, since these search or extend the ParseGraph beyond the
+     * token.
+     */
+    static boolean isSelfContained(final Token token) {
+        return new Analysis(checkNotNull(token, "token")).isSelfContained();
+    }
+
+    /*
+     * Returns the outermost tokens in root (excluding root itself) that add
+     * a branch and are droppable. Within a repetition that is droppable, its
+     * iterated token is included as well, so that the repetition does not
+     * keep all iterations until it is done.
+     */
+    static Set<Token> getPrunableTokens(final Token root) {
+        final Set<Token> prunable = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectPrunable(root, root, Collections.newSetFromMap(new IdentityHashMap<>()), prunable);
+        return prunable;
+    }
+
+    private static void collectPrunable(final Token root, final Token token, final Set<Token> visited, final Set<Token> prunable) {
+        if (!visited.add(token)) {
+            return;
+        }
+        if (token != root && TokenCompiler.addsBranch(token) && isDroppable(root, token)) {
+            prunable.add(token);
+            if (token instanceof IterableToken) {
+                collectPrunable(root, ((IterableToken) token).token, visited, prunable);
+            }
+            return;
+        }
+        TokenCompiler.getChildren(token).ifPresent(children -> children.forEach(child -> collectPrunable(root, child, visited, prunable)));
+    }
+
+    /**
+     * @param predicate the predicate to analyze
+     * @return the references (see {@link Ref}) that the operands of the
+     * comparisons in <code>predicate</code> can use to access parsed values,
+     * across the logical expressions that combine them, or empty if
+     * <code>predicate</code> contains an expression of an unknown type. The
+     * current value that a comparison without an explicit value compares is
+     * not included.
+     */
+    public static Optional<ImmutableList<Ref<?>>> getPredicateReferences(final Expression predicate) {
+        checkNotNull(predicate, "predicate");
+        final List<Reference> references = new ArrayList<>();
+        return collect(predicate, references) ? Optional.of(toRefs(references)) : Optional.empty();
+    }
+
+    /**
+     * @param expression the value expression to analyze
+     * @return the references (see {@link Ref}) through which evaluating
+     * <code>expression</code> can access parsed values, including those in
+     * the size of a {@link Scope}, or empty if <code>expression</code>
+     * contains a value expression of an unknown type. The current value
+     * accessed through {@link Self} is not included.
+     */
+    public static Optional<ImmutableList<Ref<?>>> getValueReferences(final ValueExpression expression) {
+        checkNotNull(expression, "expression");
+        final List<Reference> references = new ArrayList<>();
+        return collect(expression, false, references) ? Optional.of(toRefs(references)) : Optional.empty();
+    }
+
+    private static ImmutableList<Ref<?>> toRefs(final List<Reference> references) {
+        ImmutableList<Ref<?>> refs = new ImmutableList<>();
+        for (int i = references.size() - 1; i >= 0; i--) {
+            if (references.get(i).ref != null) {
+                refs = refs.add(references.get(i).ref);
+            }
+        }
+        return refs;
+    }
+
+    /*
+     * Adds the references in expression to references, with a null Ref for
+     * the current value. Returns false if expression has an unknown type.
+     */
+    private static boolean collect(final Expression expression, final List<Reference> references) {
+        if (expression.getClass() == True.class) {
+            return true;
+        }
+        if (expression instanceof ComparisonExpression) {
+            final ComparisonExpression comparison = (ComparisonExpression) expression;
+            if (comparison.value == null) {
+                references.add(Reference.CURRENT);
+            }
+            return (comparison.value == null || collect(comparison.value, false, references)) && collect(comparison.predicate, false, references);
+        }
+        if (expression instanceof BinaryLogicalExpression) {
+            return collect(((BinaryLogicalExpression) expression).left, references) && collect(((BinaryLogicalExpression) expression).right, references);
+        }
+        if (expression instanceof UnaryLogicalExpression) {
+            return collect(((UnaryLogicalExpression) expression).operand, references);
+        }
+        return false;
+    }
+
+    private static boolean collect(final ValueExpression expression, final boolean isLast, final List<Reference> references) {
+        final Class<?> type = expression.getClass();
+        if (type == Const.class || type == CurrentOffset.class) {
+            return true;
+        }
+        if (type == CurrentIteration.class) {
+            return true; // Its level is not accessible, but is in practice a constant.
+        }
+        if (type == Self.class) {
+            references.add(Reference.CURRENT);
+            return true;
+        }
+        if (expression instanceof Ref) {
+            final Ref<?> ref = (Ref<?>) expression;
+            references.add(new Reference(ref, isLast));
+            return ref.limit == null || collect(ref.limit, false, references);
+        }
+        if (expression instanceof BinaryValueExpression) {
+            return collect(((BinaryValueExpression) expression).left, false, references) && collect(((BinaryValueExpression) expression).right, false, references);
+        }
+        if (expression instanceof UnaryValueExpression) {
+            return collect(((UnaryValueExpression) expression).operand, false, references);
+        }
+        if (type == Last.class) {
+            return collect(((Last) expression).operand, true, references);
+        }
+        if (type == First.class) {
+            return collect(((First) expression).operand, false, references);
+        }
+        if (type == Count.class) {
+            return collect(((Count) expression).operand, false, references);
+        }
+        if (type == Bytes.class) {
+            return collect(((Bytes) expression).operand, false, references);
+        }
+        if (type == FoldCat.class) {
+            return collect(((FoldCat) expression).operand, false, references);
+        }
+        if (type == Reverse.class) {
+            return collect(((Reverse) expression).values, false, references);
+        }
+        if (type == Elvis.class) {
+            return collect(((Elvis) expression).left, false, references) && collect(((Elvis) expression).right, false, references);
+        }
+        if (type == Expand.class) {
+            return collect(((Expand) expression).bases, false, references) && collect(((Expand) expression).count, false, references);
+        }
+        if (type == Find.class) {
+            return collect(((Find) expression).patterns, false, references) && (((Find) expression).size == null || collect(((Find) expression).size, false, references));
+        }
+        if (type == Nth.class) {
+            return collect(((Nth) expression).values, false, references) && collect(((Nth) expression).indices, false, references);
+        }
+        if (type == Scope.class) {
+            return collect(((Scope) expression).scopedValueExpression, false, references) && collect(((Scope) expression).scopeSize, false, references);
+        }
+        if (expression instanceof Fold) {
+            // The reducer combines the values it is given, so only the values and initial can refer to parsed values.
+            return collect(((Fold) expression).values, false, references) && (((Fold) expression).initial == null || collect(((Fold) expression).initial, false, references));
+        }
+        return false;
+    }
+
+    private static final class Reference {
+
+        static final Reference CURRENT = new Reference(null, false);
+
+        final Ref<?> ref; // Null for the current value.
+        final boolean isLast; // Whether the reference is the direct operand of Last.
+
+        Reference(final Ref<?> ref, final boolean isLast) {
+            this.ref = ref;
+            this.isLast = isLast;
+        }
+
+    }
+
+    private static final class Analysis {
+
+        private final Token target;
+        private final Set<Token> tokens = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<String> names = new HashSet<>();
+        private final Set<Token> values = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Analysis(final Token target) {
+            this.target = target;
+            index(target);
+        }
+
+        private void index(final Token token) {
+            if (!tokens.add(token)) {
+                return;
+            }
+            names.add(token.name);
+            if (token.getClass() == Def.class || token.getClass() == Until.class || token.getClass() == Scan.class) {
+                values.add(token);
+            }
+            TokenCompiler.getChildren(token).ifPresent(children -> children.forEach(this::index));
+        }
+
+        boolean isSelfContained() {
+            return tokens.stream().noneMatch(token -> token.getClass() == Tie.class) && isSafeInside(target, Token.NO_NAME, Defined.NONE) != null;
+        }
+
+        boolean isDroppableIn(final Token root) {
+            return isSafeOutside(root) && isSafeInside(target, Token.NO_NAME, Defined.NONE) != null;
+        }
+
+        private boolean isSafeOutside(final Token token) {
+            if (token == target) {
+                return true;
+            }
+            final Class<?> type = token.getClass();
+            // Cycle detection compares definitions with equals(), so a Sub of a token equal to one inside the target searches it as well.
+            if (type == Sub.class && tokens.stream().anyMatch(((Sub) token).token::equals)) {
+                return false;
+            }
+            if (type == TokenRef.class && names.contains(((TokenRef) token).referenceName)) {
+                return false;
+            }
+            if (!hasSafeExpressions(token)) {
+                return false;
+            }
+            final List<Token> children = TokenCompiler.getChildren(token).orElse(null);
+            if (children == null) {
+                return false;
+            }
+            for (final Token child : children) {
+                if (!isSafeOutside(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /*
+         * Returns the values that are definitely defined after parsing token
+         * within the current instance of the target, or null if token makes
+         * the target not droppable.
+         */
+        private Defined isSafeInside(final Token token, final String outerScope, final Defined defined) {
+            final String scope = concatenate(outerScope, token.name);
+            final Class<?> type = token.getClass();
+            if (type == Def.class) {
+                if (!isSafe(((Def) token).size, defined)) {
+                    return null;
+                }
+                return isPositiveConstant(((Def) token).size) ? defined.add(token, scope) : defined;
+            }
+            if (type == Seq.class) {
+                Defined current = defined;
+                for (ImmutableList<Token> children = ((Seq) token).tokens; !children.isEmpty() && current != null; children = children.tail) {
+                    current = isSafeInside(children.head, scope, current);
+                }
+                return current;
+            }
+            if (type == Cho.class) {
+                Defined result = null;
+                for (ImmutableList<Token> children = ((Cho) token).tokens; !children.isEmpty(); children = children.tail) {
+                    final Defined alternative = isSafeInside(children.head, scope, defined);
+                    if (alternative == null) {
+                        return null;
+                    }
+                    result = result == null ? alternative : result.intersect(alternative);
+                }
+                return result;
+            }
+            if (type == Pre.class) {
+                return isSafe(((Pre) token).predicate, defined, false) ? isSafeInside(((Pre) token).token, scope, defined) : null;
+            }
+            if (type == Post.class) {
+                final Defined after = isSafeInside(((Post) token).token, scope, defined);
+                return after != null && isSafe(((Post) token).predicate, after, isCurrentSafe((Post) token)) ? after : null;
+            }
+            if (type == Rep.class) {
+                return isSafeInside(((Rep) token).token, scope, defined) != null ? defined : null;
+            }
+            if (type == While.class) {
+                return isSafe(((While) token).predicate, defined, false) && isSafeInside(((While) token).token, scope, defined) != null ? defined : null;
+            }
+            if (type == RepN.class) {
+                final RepN repN = (RepN) token;
+                if (!isSafe(repN.n, defined)) {
+                    return null;
+                }
+                final Defined after = isSafeInside(repN.token, scope, defined);
+                return after == null ? null : isPositiveConstant(repN.n) ? after : defined;
+            }
+            if (type == Tie.class) {
+                return isSafe(((Tie) token).dataExpression, defined) && isSafeInside(((Tie) token).token, scope, defined) != null ? defined : null;
+            }
+            if (type == Until.class) {
+                final Until until = (Until) token;
+                if (!isSafe(until.initialSize, defined) || !isSafe(until.stepSize, defined) || !isSafe(until.maxSize, defined)) {
+                    return null;
+                }
+                return isSafeInside(until.terminator, scope, defined);
+            }
+            if (type == Scan.class) {
+                final Scan scan = (Scan) token;
+                // The predicate and escape are evaluated on the scanned bytes, which are the current value.
+                return isSafe(scan.predicate, defined, true) && isSafe(scan.escapeSize, defined) && isSafe(scan.escape, defined, true) ? defined : null;
+            }
+            // Sub and TokenRef search the ParseGraph, other types are unknown.
+            return null;
+        }
+
+        private boolean hasSafeExpressions(final Token token) {
+            final Class<?> type = token.getClass();
+            if (type == Def.class) {
+                return isSafe(((Def) token).size, null);
+            }
+            if (type == Pre.class) {
+                return isSafe(((Pre) token).predicate, null, false);
+            }
+            if (type == Post.class) {
+                return isSafe(((Post) token).predicate, null, isCurrentSafe((Post) token));
+            }
+            if (type == While.class) {
+                return isSafe(((While) token).predicate, null, false);
+            }
+            if (type == RepN.class) {
+                return isSafe(((RepN) token).n, null);
+            }
+            if (type == Sub.class) {
+                return isSafe(((Sub) token).offsets, null);
+            }
+            if (type == Tie.class) {
+                return isSafe(((Tie) token).dataExpression, null);
+            }
+            if (type == Until.class) {
+                final Until until = (Until) token;
+                return isSafe(until.initialSize, null) && isSafe(until.stepSize, null) && isSafe(until.maxSize, null);
+            }
+            if (type == Scan.class) {
+                final Scan scan = (Scan) token;
+                return isSafe(scan.predicate, null, true) && isSafe(scan.escapeSize, null) && isSafe(scan.escape, null, true);
+            }
+            return true;
+        }
+
+        /*
+         * The defined argument is null for expressions outside the target.
+         * The current argument specifies whether the current value (see
+         * Self) is known to be parsed outside the target.
+         */
+        private boolean isSafe(final Expression expression, final Defined defined, final boolean current) {
+            final List<Reference> references = new ArrayList<>();
+            return collect(expression, references) && areSafe(references, defined, current);
+        }
+
+        private boolean isSafe(final ValueExpression expression, final Defined defined) {
+            final List<Reference> references = new ArrayList<>();
+            return collect(expression, false, references) && areSafe(references, defined, false);
+        }
+
+        private boolean areSafe(final List<Reference> references, final Defined defined, final boolean current) {
+            for (final Reference reference : references) {
+                if (reference.ref == null ? !current : !isSafeReference(reference, defined)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isSafeReference(final Reference reference, final Defined defined) {
+            boolean matches = false;
+            for (final Token value : values) {
+                matches |= mayMatch(reference.ref, value);
+            }
+            if (!matches) {
+                return true;
+            }
+            return defined != null && reference.isLast && defined.contains(reference.ref);
+        }
+
+        /*
+         * The predicate of a Post is evaluated directly after its token is
+         * parsed, so if that is a Def outside the target, it is the current
+         * value.
+         */
+        private boolean isCurrentSafe(final Post post) {
+            return post.token.getClass() == Def.class && post.token != target;
+        }
+
+        private static boolean mayMatch(final Ref<?> reference, final Token value) {
+            if (reference.getClass() == DefinitionRef.class) {
+                return reference.reference.equals(value);
+            }
+            if (reference.getClass() == NameRef.class) {
+                return value.name.isEmpty() || lastSegment((String) reference.reference).equals(lastSegment(value.name));
+            }
+            return true;
+        }
+
+        private static String lastSegment(final String name) {
+            return name.substring(name.lastIndexOf(Token.SEPARATOR) + 1);
+        }
+
+        private static boolean isPositiveConstant(final ValueExpression expression) {
+            return expression.getClass() == Const.class
+                && ((Const) expression).value instanceof CoreValue
+                && ((Const) expression).value.asNumeric().signum() > 0;
+        }
+
+    }
+
+    /*
+     * The values that are parsed in every successful parse of (a part of)
+     * the target, along with their names relative to the target.
+     */
+    private static final class Defined {
+
+        static final Defined NONE = new Defined(Set.of(), Set.of());
+
+        private final Set<String> names;
+        private final Set<Token> definitions;
+
+        private Defined(final Set<String> names, final Set<Token> definitions) {
+            this.names = names;
+            this.definitions = definitions;
+        }
+
+        Defined add(final Token definition, final String name) {
+            final Set<String> addedNames = new HashSet<>(names);
+            addedNames.add(name);
+            final Set<Token> addedDefinitions = new HashSet<>(definitions);
+            addedDefinitions.add(definition);
+            return new Defined(addedNames, addedDefinitions);
+        }
+
+        Defined intersect(final Defined other) {
+            final Set<String> sharedNames = new HashSet<>(names);
+            sharedNames.retainAll(other.names);
+            final Set<Token> sharedDefinitions = new HashSet<>(definitions);
+            sharedDefinitions.retainAll(other.definitions);
+            return new Defined(sharedNames, sharedDefinitions);
+        }
+
+        boolean contains(final Ref<?> reference) {
+            if (reference.getClass() == DefinitionRef.class) {
+                return definitions.contains(reference.reference);
+            }
+            if (reference.getClass() == NameRef.class) {
+                final String name = (String) reference.reference;
+                return names.stream().anyMatch(defined -> defined.equals(name) || defined.endsWith(Token.SEPARATOR + name));
+            }
+            return false;
+        }
+
+    }
+
+}
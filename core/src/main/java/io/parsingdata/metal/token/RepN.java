@@ -18,13 +18,22 @@ package io.parsingdata.metal.token;
 
 import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.failure;
+import static io.parsingdata.metal.Util.success;
+import static io.parsingdata.metal.data.Slice.createFromSource;
 import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinTask;
 
 import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
 import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callbacks;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.SingleValueExpression;
 import io.parsingdata.metal.expression.value.ValueExpression;
@@ -36,40 +45,114 @@ import io.parsingdata.metal.expression.value.ValueExpression;
  * <code>n</code> (a {@link SingleValueExpression}). First <code>n</code> is
  * evaluated. The token is then parsed for an amount of times equal to the
  * evaluated value of <code>n</code>. RepN succeeds if this succeeds.
+ * <p>
+ * If <code>parallel</code> is set and the <code>token</code> is a fixed-size
+ * record that does not depend on previously parsed values (see
+ * {@link Layout}), the iterations are split into
+ * chunks of consecutive records that are parsed concurrently, as
+ * {@link ForkJoinTask}s in the current (or the common) ForkJoinPool. The
+ * results are added in order, so the resulting <code>ParseGraph</code> is the
+ * same as when parsing sequentially. RepN only parses in parallel if no
+ * {@link Callbacks} are set, since these are not thread-safe.
  *
  * @see Rep
  * @see ValueExpression
  */
 public class RepN extends IterableToken {
 
+    static final int RECORDS_PER_TASK = 1024;
+
     public final SingleValueExpression n;
+    public final boolean parallel;
 
-    public RepN(final String name, final Token token, final SingleValueExpression n, final Encoding encoding) {
+    private volatile Optional<BigInteger> stride;
+
+    public RepN(final String name, final Token token, final SingleValueExpression n, final Encoding encoding, final boolean parallel) {
         super(name, token, encoding);
         this.n = checkNotNull(n, "n");
+        this.parallel = parallel;
+    }
+
+    public RepN(final String name, final Token token, final SingleValueExpression n, final Encoding encoding) {
+        this(name, token, n, encoding, false);
     }
 
     @Override
     protected Optional<ParseState> parseImpl(final Environment environment) {
         return n.evalSingle(environment.parseState, environment.encoding)
             .filter(count -> !count.equals(NOT_A_VALUE))
-            .flatMap(count -> parse(environment, env -> env.parseState.iterations.head.right.compareTo(count.asNumeric()) >= 0, env -> failure()));
+            .flatMap(count -> isParallel(environment, count.asNumeric())
+                ? parseParallel(environment.addBranch(this), count.asNumeric().intValueExact(), getStride().get())
+                : parse(environment, env -> env.parseState.iterations.head.right.compareTo(count.asNumeric()) >= 0, env -> failure()));
+    }
+
+    private boolean isParallel(final Environment environment, final BigInteger count) {
+        if (!parallel || environment.callbacks != Callbacks.NONE || count.compareTo(BigInteger.valueOf(RECORDS_PER_TASK)) <= 0 || count.bitLength() >= Integer.SIZE - 1) {
+            return false;
+        }
+        // Only split the records if they are all available, so that a failing parse does not create a task for every possible chunk.
+        return getStride()
+            .filter(size -> size.signum() > 0)
+            .flatMap(size -> createFromSource(environment.parseState.source, environment.parseState.offset, size.multiply(count)))
+            .isPresent();
+    }
+
+    private Optional<BigInteger> getStride() {
+        if (stride == null) {
+            final Layout layout = Layout.of(token);
+            stride = layout.valueIndependent ? layout.getFixedSize() : Optional.empty();
+        }
+        return stride;
+    }
+
+    private Optional<ParseState> parseParallel(final Environment environment, final int count, final BigInteger size) {
+        final List<ForkJoinTask<Optional<ParseState>>> tasks = new ArrayList<>();
+        for (int first = RECORDS_PER_TASK; first < count; first += RECORDS_PER_TASK) {
+            final ParseState isolated = new ParseState(ParseGraph.EMPTY, environment.parseState.source, environment.parseState.offset.add(size.multiply(BigInteger.valueOf(first))), new ImmutableList<>());
+            final int records = Math.min(RECORDS_PER_TASK, count - first);
+            tasks.add(ForkJoinTask.adapt(() -> parseRecords(environment.withParseState(isolated), records)).fork());
+        }
+        // The first chunk is parsed by the current thread, directly into the ParseGraph.
+        Optional<ParseState> result = parseRecords(environment, RECORDS_PER_TASK);
+        for (final ForkJoinTask<Optional<ParseState>> task : tasks) {
+            if (result.isEmpty()) {
+                tasks.forEach(remaining -> remaining.cancel(false));
+                return failure();
+            }
+            final ParseState parseState = result.get();
+            result = task.join().map(parsed -> Replay.replay(parsed.order, parseState).seek(parsed.offset).get());
+        }
+        return result.map(parseState -> parseState.closeBranch(this));
+    }
+
+    private Optional<ParseState> parseRecords(final Environment environment, final int records) {
+        ParseState parseState = environment.parseState;
+        for (int i = 0; i < records; i++) {
+            final Optional<ParseState> result = token.parse(environment.withParseState(parseState));
+            if (result.isEmpty()) {
+                return failure();
+            }
+            parseState = result.get();
+        }
+        return success(parseState);
     }
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + "(" + makeNameFragment() + token + "," + n + ")";
+        return getClass().getSimpleName() + "(" + makeNameFragment() + token + "," + n + (parallel ? ",parallel" : "") + ")";
     }
 
     @Override
     public boolean equals(final Object obj) {
         return super.equals(obj)
-            && Objects.equals(n, ((RepN)obj).n);
+            && Objects.equals(n, ((RepN)obj).n)
+            && Objects.equals(parallel, ((RepN)obj).parallel);
+        // The stride is excluded from equals() and hashCode() because it is cached data.
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), n);
+        return Objects.hash(super.hashCode(), n, parallel);
     }
 
 }
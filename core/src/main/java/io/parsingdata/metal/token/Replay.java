@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseItem;
+import io.parsingdata.metal.data.ParseState;
+
+/**
+ * Utility methods to copy the items of a {@link ParseGraph} that was parsed
+ * separately into a {@link ParseState}.
+ */
+final class Replay {
+
+    private Replay() {}
+
+    /**
+     * Adds all items of <code>graph</code> to the innermost open branch of
+     * <code>parseState</code>, in the order in which they were parsed.
+     */
+    static ParseState replay(final ParseGraph graph, final ParseState parseState) {
+        final ParseItem[] items = new ParseItem[(int) graph.size];
+        ParseGraph current = graph;
+        for (int i = items.length - 1; i >= 0; i--) {
+            items[i] = current.head;
+            current = current.tail;
+        }
+        ParseState result = parseState;
+        for (final ParseItem item : items) {
+            if (item.isValue()) {
+                result = result.add(item.asValue());
+            } else if (item.isReference()) {
+                result = result.add(item.asReference());
+            } else if (item.isPlaceholder()) {
+                result = result.add(item.asPlaceholder());
+            } else {
+                result = replay(item.asGraph(), result.addBranch(item.getDefinition())).closeBranch(item.getDefinition());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the innermost open branch of <code>graph</code>, which is the
+     * graph itself if it has no open branch
+     */
+    static ParseGraph openBranch(final ParseGraph graph) {
+        ParseGraph current = graph;
+        while (current.branched) {
+            current = current.head.asGraph();
+        }
+        return current;
+    }
+
+}
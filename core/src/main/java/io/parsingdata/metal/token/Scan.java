@@ -0,0 +1,213 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static java.math.BigInteger.ZERO;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Util.checkNotEmpty;
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.Util.success;
+import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.parsingdata.metal.data.ConstantSource;
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.ParseValue;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.Expression;
+import io.parsingdata.metal.expression.True;
+import io.parsingdata.metal.expression.value.SingleValueExpression;
+import io.parsingdata.metal.expression.value.Value;
+
+/**
+ * A {@link Token} that specifies a run of bytes to parse in the input as a
+ * single value.
+ * <p>
+ * A Scan consists of a <code>predicate</code> (an {@link Expression}), an
+ * <code>escapeSize</code> (a {@link SingleValueExpression}) and an
+ * <code>escape</code> (an {@link Expression}). Starting at the current
+ * offset, bytes are added to the run as long as either the next byte
+ * satisfies <code>predicate</code>, or the next <code>escapeSize</code> bytes
+ * satisfy <code>escape</code>. Both predicates are evaluated as if the byte or
+ * escape sequence was parsed by a {@link Def} with the predicate, but without
+ * the bytes of the run before it. The run is then added to the
+ * <code>ParseState</code> as a single value.
+ * <p>
+ * Parsing always succeeds, unless <code>escapeSize</code> does not evaluate
+ * to a value. If the run is empty, no value is produced. An
+ * <code>escapeSize</code> of zero means that there are no escape sequences.
+ * <p>
+ * A Scan is equivalent to a {@link Rep} of a {@link Cho} between two
+ * {@link Def}s, but parses the input in a single pass, without creating
+ * intermediate values. If <code>predicate</code> only depends on the value
+ * itself, it is evaluated only once for all possible values of a byte. The
+ * same holds for <code>escape</code> and each distinct escape sequence of at
+ * most two bytes.
+ *
+ * @see Expression
+ */
+public class Scan extends Token {
+
+    public static final SingleValueExpression DEFAULT_ESCAPE_SIZE = con(0);
+    public static final Expression DEFAULT_ESCAPE = new True();
+
+    private static final int MIN_WINDOW = 256;
+    private static final int MAX_WINDOW = 1 << 16;
+    private static final int MAX_CACHED_ESCAPE_SIZE = 2;
+
+    public final Expression predicate;
+    public final SingleValueExpression escapeSize;
+    public final Expression escape;
+
+    private final Map<Encoding, BitSet> allowedBytes = new ConcurrentHashMap<>();
+    private final Map<Encoding, EscapeTable> allowedEscapes = new ConcurrentHashMap<>();
+
+    public Scan(final String name, final Expression predicate, final SingleValueExpression escapeSize, final Expression escape, final Encoding encoding) {
+        super(checkNotEmpty(name, "name"), encoding);
+        this.predicate = checkNotNull(predicate, "predicate");
+        this.escapeSize = escapeSize == null ? DEFAULT_ESCAPE_SIZE : escapeSize;
+        this.escape = escape == null ? DEFAULT_ESCAPE : escape;
+    }
+
+    @Override
+    protected Optional<ParseState> parseImpl(final Environment environment) {
+        return escapeSize.evalSingle(environment.parseState, environment.encoding)
+            .filter(sizeValue -> !sizeValue.equals(NOT_A_VALUE))
+            .map(Value::asNumeric)
+            .filter(size -> size.signum() >= 0 && size.bitLength() < Integer.SIZE)
+            .flatMap(size -> addRun(environment, scan(environment, size.intValueExact())));
+    }
+
+    private long scan(final Environment environment, final int escapeSize) {
+        final BitSet allowed = LeadingBytes.isValueIndependent(predicate)
+            ? allowedBytes.computeIfAbsent(environment.encoding, encoding -> LeadingBytes.evaluateAll(new Post(NO_NAME, new Def(name, con(1), null), predicate, null), encoding))
+            : null;
+        final EscapeTable escapes = escapeSize <= MAX_CACHED_ESCAPE_SIZE && LeadingBytes.isValueIndependent(escape)
+            ? allowedEscapes.computeIfAbsent(environment.encoding, encoding -> new EscapeTable(new Post(NO_NAME, new Def(name, con(1), null), escape, null), new Post(NO_NAME, new Def(name, con(2), null), escape, null)))
+            : null;
+        long length = 0;
+        int window = MIN_WINDOW;
+        while (true) {
+            final byte[] data = new byte[Math.max(window, escapeSize)];
+            final int available = LeadingBytes.read(environment.parseState.source, position(environment, length), data);
+            environment.budget.read(BigInteger.valueOf(available));
+            int index = 0;
+            while (index < available) {
+                if (allowed != null ? allowed.get(data[index] & 0xff) : matches(environment, predicate, length + index, 1)) {
+                    index++;
+                } else if (escapeSize > 0 && index + escapeSize <= available && (escapes != null ? escapes.isEscape(environment.encoding, data, index, escapeSize) : matches(environment, escape, length + index, escapeSize))) {
+                    index += escapeSize;
+                } else {
+                    break;
+                }
+            }
+            length += index;
+            // Continue with the next window if all bytes were consumed, or if an escape sequence may cross the end of this one.
+            if (available < data.length || index < available && (escapeSize == 0 || index + escapeSize <= available)) {
+                return length;
+            }
+            window = Math.min(window << 1, MAX_WINDOW);
+        }
+    }
+
+    private boolean matches(final Environment environment, final Expression expression, final long offset, final int size) {
+        return environment.parseState
+            .seek(position(environment, offset)).get()
+            .slice(BigInteger.valueOf(size))
+            .flatMap(slice -> environment.parseState.add(new ParseValue(environment.scope, this, slice, environment.encoding)).seek(slice.offset.add(slice.length)))
+            .map(parseState -> expression.eval(parseState, environment.encoding))
+            .orElse(false);
+    }
+
+    private Optional<ParseState> addRun(final Environment environment, final long length) {
+        if (length == 0) {
+            return success(environment.parseState);
+        }
+        return environment.parseState
+            .slice(BigInteger.valueOf(length))
+            .flatMap(slice -> environment.parseState.add(new ParseValue(environment.scope, this, slice, environment.encoding)).seek(position(environment, length)));
+    }
+
+    private static BigInteger position(final Environment environment, final long offset) {
+        return environment.parseState.offset.add(BigInteger.valueOf(offset));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + makeNameFragment() + predicate + "," + escapeSize + "," + escape + ")";
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return super.equals(obj)
+            && Objects.equals(predicate, ((Scan)obj).predicate)
+            && Objects.equals(escapeSize, ((Scan)obj).escapeSize)
+            && Objects.equals(escape, ((Scan)obj).escape);
+        // The allowedBytes and allowedEscapes fields are excluded from equals() and hashCode() because they are cached data.
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), predicate, escapeSize, escape);
+    }
+
+    /*
+     * The results of an escape predicate that only depends on the value
+     * itself, for all escape sequences of one and two bytes. Each sequence is
+     * evaluated on first use and has two bits in the table: whether it has
+     * been evaluated and whether it is allowed. Evaluating a sequence more
+     * than once is harmless, so concurrent parses only share the atomic table.
+     */
+    private static final class EscapeTable {
+
+        private static final int SEQUENCES = (1 << Byte.SIZE) + (1 << 2 * Byte.SIZE);
+
+        private final Token[] escapes;
+        private final AtomicLongArray table = new AtomicLongArray(SEQUENCES * 2 / Long.SIZE);
+
+        EscapeTable(final Token... escapes) {
+            this.escapes = escapes;
+        }
+
+        boolean isEscape(final Encoding encoding, final byte[] data, final int index, final int escapeSize) {
+            final int key = escapeSize == 1 ? data[index] & 0xff : (1 << Byte.SIZE) + ((data[index] & 0xff) << Byte.SIZE | data[index + 1] & 0xff);
+            final int shift = key % (Long.SIZE / 2) * 2;
+            final long bits = table.get(key / (Long.SIZE / 2)) >>> shift;
+            if ((bits & 1) != 0) {
+                return (bits & 2) != 0;
+            }
+            final ParseState parseState = new ParseState(ParseGraph.EMPTY, new ConstantSource(Arrays.copyOfRange(data, index, index + escapeSize)), ZERO, new ImmutableList<>());
+            final boolean allowed = escapes[escapeSize - 1].parse(new Environment(parseState, encoding)).isPresent();
+            table.accumulateAndGet(key / (Long.SIZE / 2), (allowed ? 3L : 1L) << shift, (left, right) -> left | right);
+            return allowed;
+        }
+
+    }
+
+}
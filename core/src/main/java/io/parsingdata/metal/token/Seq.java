@@ -23,6 +23,7 @@ import static io.parsingdata.metal.Util.checkNotNull;
 import static io.parsingdata.metal.Util.success;
 import static io.parsingdata.metal.data.ImmutableList.create;
 
+import java.math.BigInteger;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -39,11 +40,24 @@ import io.parsingdata.metal.encoding.Encoding;
  * A Seq consists of a list of <code>tokens</code>. If one of the tokens
  * doesn't succeed, the Seq fails. If all of the tokens succeed, the Seq will
  * succeed. Order is from left to right.
+ * <p>
+ * If the tokens always consume the same amount of bytes (see
+ * {@link Layout}) and contain multiple fields at fixed offsets, these bytes
+ * are read in a single read once the first token has been parsed. The values
+ * the other tokens parse within these bytes are then views on that data (see
+ * {@link Environment#withBuffer(io.parsingdata.metal.data.Slice)}) instead
+ * of each reading from the input when their data is requested. Parsing the
+ * first token before reading prevents a Seq that does not match (e.g., an
+ * alternative of a {@link Cho}) from reading all of its bytes.
  */
 public class Seq extends Token {
 
+    static final BigInteger BULK_READ_LIMIT = BigInteger.valueOf(4096);
+
     public final ImmutableList<Token> tokens;
 
+    private volatile Layout layout;
+
     public Seq(final String name, final Encoding encoding, final Token token1, final Token token2, final Token... additionalTokens) {
         super(name, encoding);
         this.tokens = create(checkContainsNoNulls(additionalTokens, "additionalTokens"))
@@ -53,7 +67,27 @@ public class Seq extends Token {
 
     @Override
     protected Optional<ParseState> parseImpl(final Environment environment) {
-        return iterate(environment.addBranch(this), tokens).computeResult();
+        final Environment branch = environment.addBranch(this);
+        if (!isBuffered()) {
+            return iterate(branch, tokens).computeResult();
+        }
+        return tokens.head
+            .parse(branch)
+            .flatMap(nextParseState -> iterate(buffer(branch).withParseState(nextParseState), tokens.tail).computeResult());
+    }
+
+    private boolean isBuffered() {
+        if (layout == null) {
+            layout = Layout.of(this);
+        }
+        return layout.isFixed() && layout.fields.size >= 2 && layout.minimumSize.compareTo(BULK_READ_LIMIT) <= 0;
+    }
+
+    private Environment buffer(final Environment environment) {
+        return environment
+            .slice(layout.minimumSize)
+            .map(slice -> environment.withBuffer(slice.load()))
+            .orElse(environment);
     }
 
     private Trampoline<Optional<ParseState>> iterate(final Environment environment, final ImmutableList<Token> list) {
@@ -80,6 +114,7 @@ public class Seq extends Token {
     public boolean equals(final Object obj) {
         return super.equals(obj)
             && Objects.equals(tokens, ((Seq)obj).tokens);
+        // The layout is excluded from equals() and hashCode() because it is cached data.
     }
 
     @Override
@@ -24,8 +24,13 @@ import static io.parsingdata.metal.data.Selection.hasRootAtOffset;
 import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinTask;
 
 import io.parsingdata.metal.Trampoline;
 import io.parsingdata.metal.Util;
@@ -33,6 +38,7 @@ import io.parsingdata.metal.data.Environment;
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseReference;
 import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callbacks;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
@@ -48,6 +54,20 @@ import io.parsingdata.metal.expression.value.ValueExpression;
  * parses of <code>token</code> at all locations succeed. Sub fails if
  * <code>offsets</code> evaluates to a list of locations that is either empty
  * or contains an invalid value.
+ * <p>
+ * If <code>parallel</code> is set, the <code>token</code> is parsed at all
+ * locations concurrently, as {@link ForkJoinTask}s in the current (or the
+ * common) ForkJoinPool. Each parse starts from the same
+ * <code>ParseState</code>, so this is only done if the <code>token</code>
+ * cannot depend on values parsed at the other locations: it may only refer
+ * to its own values that were parsed earlier at the same location, and it
+ * may not contain a Sub, {@link Tie} or {@link TokenRef} (see
+ * {@link Reachability}). Otherwise, the locations are parsed sequentially.
+ * The results are added in the order of the locations. A location where the <code>token</code> has already been
+ * parsed, either before the Sub or at an earlier location, is added as a
+ * {@link ParseReference}, as it is when parsing sequentially. Sub only parses
+ * in parallel if no {@link Callbacks} are set, since these are not
+ * thread-safe.
  *
  * @see ValueExpression
  */
@@ -55,17 +75,29 @@ public class Sub extends Token {
 
     public final Token token;
     public final ValueExpression offsets;
+    public final boolean parallel;
 
-    public Sub(final String name, final Token token, final ValueExpression offsets, final Encoding encoding) {
+    private final boolean selfContained;
+
+    public Sub(final String name, final Token token, final ValueExpression offsets, final Encoding encoding, final boolean parallel) {
         super(name, encoding);
         this.token = checkNotNull(token, "token");
         this.offsets = checkNotNull(offsets, "offsets");
+        this.parallel = parallel;
+        this.selfContained = parallel && Reachability.isSelfContained(token);
+    }
+
+    public Sub(final String name, final Token token, final ValueExpression offsets, final Encoding encoding) {
+        this(name, token, offsets, encoding, false);
     }
 
     @Override
     protected Optional<ParseState> parseImpl(final Environment environment) {
-        return iterate(environment.addBranch(this), offsets.eval(environment.parseState, environment.encoding)).computeResult()
-            .flatMap(nextParseState -> nextParseState.seek(environment.parseState.offset));
+        final ImmutableList<Value> offsetList = offsets.eval(environment.parseState, environment.encoding);
+        final Optional<ParseState> result = selfContained && environment.callbacks == Callbacks.NONE
+            ? parseParallel(environment.addBranch(this), offsetList)
+            : iterate(environment.addBranch(this), offsetList).computeResult();
+        return result.flatMap(nextParseState -> nextParseState.seek(environment.parseState.offset));
     }
 
     private Trampoline<Optional<ParseState>> iterate(final Environment environment, final ImmutableList<Value> offsetList) {
@@ -90,6 +122,39 @@ public class Sub extends Token {
             .orElseGet(Util::failure);
     }
 
+    private Optional<ParseState> parseParallel(final Environment environment, final ImmutableList<Value> offsetList) {
+        final List<BigInteger> offsetValues = new ArrayList<>();
+        for (ImmutableList<Value> current = offsetList; !current.isEmpty(); current = current.tail) {
+            if (current.head.equals(NOT_A_VALUE)) {
+                return Util.failure();
+            }
+            offsetValues.add(current.head.asNumeric());
+        }
+        final ParseState parseState = environment.parseState;
+        final Token canonical = token.getCanonical(parseState);
+        final Map<BigInteger, ForkJoinTask<Optional<ParseState>>> tasks = new HashMap<>();
+        for (final BigInteger offsetValue : offsetValues) {
+            if (!tasks.containsKey(offsetValue) && !hasRootAtOffset(parseState.order, canonical, offsetValue, parseState.source)) {
+                tasks.put(offsetValue, ForkJoinTask.adapt(() -> parse(environment, offsetValue)).fork());
+            }
+        }
+        ParseState result = parseState;
+        for (final BigInteger offsetValue : offsetValues) {
+            if (hasRootAtOffset(result.order, canonical, offsetValue, result.source)) {
+                result = result.add(new ParseReference(offsetValue, result.source, canonical));
+                continue;
+            }
+            final Optional<ParseState> parsed = tasks.get(offsetValue).join();
+            if (parsed.isEmpty()) {
+                tasks.values().forEach(task -> task.cancel(false));
+                return Util.failure();
+            }
+            // The parse started with an empty branch for this Sub, which now contains exactly the items parsed at this location.
+            result = Replay.replay(Replay.openBranch(parsed.get().order), result);
+        }
+        return success(result.closeBranch(this));
+    }
+
     @Override
     public boolean isLocal() {
         return false;
@@ -97,19 +162,21 @@ public class Sub extends Token {
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + "(" + makeNameFragment() + token + "," + offsets + ")";
+        return getClass().getSimpleName() + "(" + makeNameFragment() + token + "," + offsets + (parallel ? ",parallel" : "") + ")";
     }
 
     @Override
     public boolean equals(final Object obj) {
         return super.equals(obj)
             && Objects.equals(token, ((Sub)obj).token)
-            && Objects.equals(offsets, ((Sub)obj).offsets);
+            && Objects.equals(offsets, ((Sub)obj).offsets)
+            && Objects.equals(parallel, ((Sub)obj).parallel);
+        // The selfContained field is excluded from equals() and hashCode() because it is derived from the token.
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), token, offsets);
+        return Objects.hash(super.hashCode(), token, offsets, parallel);
     }
 
 }
@@ -26,7 +26,9 @@ import java.util.Optional;
 import io.parsingdata.metal.Util;
 import io.parsingdata.metal.data.Environment;
 import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParsePlaceholder;
 import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callbacks;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Scope;
 import io.parsingdata.metal.expression.value.reference.CurrentIteration;
@@ -52,6 +54,13 @@ import io.parsingdata.metal.expression.value.reference.CurrentIteration;
  * overrides outer encoding specifications and is passed to nested tokens
  * instead. As such it can itself be overridden by explicit specifications in
  * nested tokens.
+ * <p>
+ * Tokens are immutable and may be shared between threads, so that a single
+ * definition can parse many inputs concurrently (see {@link BatchParser}).
+ * Tokens that cache data derived from their definition (such as the leading
+ * bytes of {@link Cho} and {@link Until}) keep it in structures that are
+ * safe for concurrent use. All state of a single parse is kept in the
+ * {@link Environment} and the {@link ParseState}.
  */
 public abstract class Token {
 
@@ -68,14 +77,33 @@ public abstract class Token {
     }
 
     public Optional<ParseState> parse(final Environment environment) {
-        final Environment activeEnvironment = this.encoding != null ? environment.withEncoding(this.encoding) : environment;
-        final Optional<ParseState> result = parseImpl(activeEnvironment.extendScope(name));
-        environment.callbacks.handle(this, result
-            .map(after -> success(this, environment.parseState, after))
-            .orElseGet(() -> failure(this, environment.parseState)));
+        environment.budget.parsed();
+        final Optional<ParseState> result = environment.memo.isMemoized(this, environment) ? environment.memo.parse(this, environment) : parseInScope(environment);
+        if (result.isEmpty()) {
+            environment.budget.failed();
+        }
+        if (environment.callbacks != Callbacks.NONE) {
+            environment.callbacks.handle(this, result
+                .map(after -> success(this, environment.parseState, after))
+                .orElseGet(() -> failure(this, environment.parseState)));
+            if (result.isPresent() && environment.callbacks.isStreamed(this)) {
+                // The streamed token has added a single item to the innermost open branch, which is dropped.
+                return Optional.of(new ParseState(environment.parseState.order, result.get().source, result.get().offset, result.get().iterations));
+            }
+        }
+        if (result.isPresent() && environment.compiled.isPruned(this)) {
+            final ParseState after = result.get();
+            return Optional.of(new ParseState(environment.parseState.order, after.source, after.offset, after.iterations)
+                .add(new ParsePlaceholder(this, environment.parseState.offset, after.offset.subtract(environment.parseState.offset))));
+        }
         return result;
     }
 
+    Optional<ParseState> parseInScope(final Environment environment) {
+        final Environment activeEnvironment = this.encoding != null ? environment.withEncoding(this.encoding) : environment;
+        return parseImpl(activeEnvironment.extendScope(name));
+    }
+
     protected abstract Optional<ParseState> parseImpl(final Environment environment);
 
     /**
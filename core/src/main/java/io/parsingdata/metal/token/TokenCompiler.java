@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static io.parsingdata.metal.Util.checkNotNull;
+import static io.parsingdata.metal.token.CompiledToken.concatenate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import io.parsingdata.metal.data.ImmutableList;
+
+/**
+ * Compiles a {@link Token} into a {@link CompiledToken}, to pay the cost of
+ * analyzing a token once when it is used to parse many inputs.
+ * <p>
+ * Compilation precomputes the scope of every nested token, so that the scope
+ * strings are shared between parses instead of being concatenated for every
+ * parsed token. Additionally, a {@link TokenRef} is resolved during
+ * compilation if its <code>referenceName</code> refers to exactly one token,
+ * which encloses the TokenRef wherever it occurs. Such a TokenRef then no
+ * longer has to search the {@link io.parsingdata.metal.data.ParseGraph} for
+ * the token it refers to.
+ * <p>
+ * Only the tokens in this package are analyzed. If a token of another type is
+ * encountered, no TokenRefs are resolved, since its nested tokens are unknown.
+ */
+public final class TokenCompiler {
+
+    private TokenCompiler() {}
+
+    public static CompiledToken compile(final Token token) {
+        checkNotNull(token, "token");
+        final Map<String, Map<String, String>> scopes = new HashMap<>();
+        final Set<Token> tokens = Collections.newSetFromMap(new IdentityHashMap<>());
+        final boolean complete = collect(token, Token.NO_NAME, scopes, tokens);
+        return new CompiledToken(token, scopes, complete ? resolve(token, tokens) : Collections.emptyMap());
+    }
+
+    private static boolean collect(final Token token, final String outerScope, final Map<String, Map<String, String>> scopes, final Set<Token> tokens) {
+        tokens.add(token);
+        final String scope = scopes.computeIfAbsent(outerScope, key -> new HashMap<>()).computeIfAbsent(token.name, name -> concatenate(outerScope, name));
+        final Optional<List<Token>> children = getChildren(token);
+        if (children.isEmpty()) {
+            return false;
+        }
+        boolean complete = true;
+        for (final Token child : children.get()) {
+            complete &= collect(child, scope, scopes, tokens);
+        }
+        return complete;
+    }
+
+    private static Map<TokenRef, Token> resolve(final Token root, final Set<Token> tokens) {
+        final Map<String, List<Token>> named = new HashMap<>();
+        tokens.forEach(token -> named.computeIfAbsent(token.name, name -> new ArrayList<>()).add(token));
+        final Map<TokenRef, Token> references = new IdentityHashMap<>();
+        for (final Token token : tokens) {
+            if (token.getClass() != TokenRef.class) {
+                continue;
+            }
+            final TokenRef reference = (TokenRef) token;
+            final List<Token> candidates = named.getOrDefault(reference.referenceName, Collections.emptyList());
+            if (candidates.size() == 1 && addsBranch(candidates.get(0)) && !isReachable(root, reference, candidates.get(0), Collections.newSetFromMap(new IdentityHashMap<>()))) {
+                references.put(reference, candidates.get(0));
+            }
+        }
+        return references;
+    }
+
+    /*
+     * When a TokenRef is parsed, all enclosing tokens that add a branch are
+     * open branches in the ParseGraph, which are searched first. So if the
+     * referenced token adds a branch and encloses the TokenRef on every path
+     * from the root, it is always the token that is found.
+     */
+    static boolean addsBranch(final Token token) {
+        final Class<?> type = token.getClass();
+        return type == Seq.class || type == Cho.class || type == Pre.class || type == Post.class
+            || type == Sub.class || type == Tie.class || type == Rep.class || type == RepN.class || type == While.class;
+    }
+
+    private static boolean isReachable(final Token from, final Token target, final Token excluded, final Set<Token> visited) {
+        if (from == target) {
+            return true;
+        }
+        if (from == excluded || !visited.add(from)) {
+            return false;
+        }
+        for (final Token child : getChildren(from).orElse(Collections.emptyList())) {
+            if (isReachable(child, target, excluded, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Optional<List<Token>> getChildren(final Token token) {
+        final Class<?> type = token.getClass();
+        if (type == Def.class || type == TokenRef.class || type == Scan.class) {
+            return Optional.of(Collections.emptyList());
+        }
+        if (type == Seq.class) {
+            return Optional.of(toList(((Seq) token).tokens));
+        }
+        if (type == Cho.class) {
+            return Optional.of(toList(((Cho) token).tokens));
+        }
+        if (type == Rep.class || type == RepN.class || type == While.class) {
+            return Optional.of(List.of(((IterableToken) token).token));
+        }
+        if (type == Pre.class) {
+            return Optional.of(List.of(((Pre) token).token));
+        }
+        if (type == Post.class) {
+            return Optional.of(List.of(((Post) token).token));
+        }
+        if (type == Sub.class) {
+            return Optional.of(List.of(((Sub) token).token));
+        }
+        if (type == Tie.class) {
+            return Optional.of(List.of(((Tie) token).token));
+        }
+        if (type == Until.class) {
+            return Optional.of(List.of(((Until) token).terminator));
+        }
+        return Optional.empty();
+    }
+
+    private static List<Token> toList(final ImmutableList<Token> tokens) {
+        final List<Token> list = new ArrayList<>();
+        for (ImmutableList<Token> current = tokens; !current.isEmpty(); current = current.tail) {
+            list.add(current.head);
+        }
+        return list;
+    }
+
+}
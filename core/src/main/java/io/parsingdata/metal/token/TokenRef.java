@@ -40,7 +40,9 @@ import io.parsingdata.metal.encoding.Encoding;
  * for use of this token is to recursively define a linked list.
  * <p>
  * The referenced token is located in the current parse state by traversing it
- * backwards until it is located. Parsing will fail if it is not found.
+ * backwards until it is located. Parsing will fail if it is not found. If
+ * the TokenRef has been resolved by the {@link TokenCompiler}, the referenced
+ * token is used without searching the parse state.
  */
 public class TokenRef extends Token {
 
@@ -63,7 +65,9 @@ public class TokenRef extends Token {
 
     @Override
     protected Optional<ParseState> parseImpl(final Environment environment) {
-        return lookup(ImmutableList.create(environment.parseState.order), referenceName).computeResult().parse(environment);
+        return environment.compiled.resolve(this)
+            .orElseGet(() -> lookup(ImmutableList.create(environment.parseState.order), referenceName).computeResult())
+            .parse(environment);
     }
 
     private Trampoline<Token> lookup(final ImmutableList<ParseItem> items, final String referenceName) {
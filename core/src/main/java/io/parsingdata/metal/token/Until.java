@@ -27,8 +27,10 @@ import static io.parsingdata.metal.Util.success;
 import static io.parsingdata.metal.expression.value.NotAValue.NOT_A_VALUE;
 
 import java.math.BigInteger;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.parsingdata.metal.Trampoline;
 import io.parsingdata.metal.Util;
@@ -37,6 +39,7 @@ import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseState;
 import io.parsingdata.metal.data.ParseValue;
 import io.parsingdata.metal.data.Slice;
+import io.parsingdata.metal.data.callback.Callbacks;
 import io.parsingdata.metal.encoding.Encoding;
 import io.parsingdata.metal.expression.value.Value;
 import io.parsingdata.metal.expression.value.ValueExpression;
@@ -63,6 +66,12 @@ import io.parsingdata.metal.expression.value.ValueExpression;
  * as sets of values to attempt. If <code>stepSize</code> is negative,
  * <code>maxSize</code> must be smaller than <code>initialSize</code>.
  * Parsing fails if <code>stepSize</code> is zero.
+ * <p>
+ * If <code>stepSize</code> is positive, the input is first searched for the
+ * next size at which the input matches the bytes the <code>terminator</code>
+ * can start with (see {@link Cho}), so that the <code>terminator</code> is
+ * only parsed at sizes where it may succeed. As with Cho, this only happens
+ * if no {@link Callbacks} are set.
  *
  * @see ValueExpression
  */
@@ -77,6 +86,11 @@ public class Until extends Token {
     public final ValueExpression maxSize;
     public final Token terminator;
 
+    private static final int MIN_WINDOW = 256;
+    private static final int MAX_WINDOW = 1 << 16;
+
+    private final Map<Encoding, LeadingBytes.Search> terminatorSearch = new ConcurrentHashMap<>();
+
     public Until(final String name, final ValueExpression initialSize, final ValueExpression stepSize, final ValueExpression maxSize, final Token terminator, final Encoding encoding) {
         super(checkNotEmpty(name, "name"), encoding);
         this.initialSize = initialSize == null ? DEFAULT_INITIAL : initialSize;
@@ -94,30 +108,79 @@ public class Until extends Token {
         if (checkNotValidList(initialSizes) || checkNotValidList(stepSizes) || checkNotValidList(maxSizes)) {
             return complete(Util::failure);
         }
-        return iterate(environment, getNumeric(initialSizes), getNumeric(stepSizes), getNumeric(maxSizes))
+        return iterate(environment, getNumeric(initialSizes), ZERO, getNumeric(stepSizes), getNumeric(maxSizes))
             .computeResult()
             .map(nextParseState -> complete(() -> success(nextParseState)))
             .orElseGet(() -> intermediate(() -> handleInterval(environment, initialSizes.tail, stepSizes.tail, maxSizes.tail)));
     }
 
-    private Trampoline<Optional<ParseState>> iterate(final Environment environment, final BigInteger currentSize, final BigInteger stepSize, final BigInteger maxSize) {
+    private Trampoline<Optional<ParseState>> iterate(final Environment environment, final BigInteger currentSize, final BigInteger readSize, final BigInteger stepSize, final BigInteger maxSize) {
         if (stepSize.compareTo(ZERO) == 0 ||
             (stepSize.compareTo(ZERO) > 0 && currentSize.compareTo(maxSize) > 0) ||
             (stepSize.compareTo(ZERO) < 0 && currentSize.compareTo(maxSize) < 0)) {
             return complete(Util::failure);
         }
+        if (environment.callbacks == Callbacks.NONE && stepSize.signum() > 0 && currentSize.signum() >= 0) {
+            final LeadingBytes.Search search = terminatorSearch.computeIfAbsent(environment.encoding, encoding -> LeadingBytes.of(terminator, encoding).search());
+            if (search.length > 0) {
+                return findTerminator(environment.parseState, search, currentSize, stepSize, maxSize)
+                    .map(candidateSize -> parseSize(environment, candidateSize, readSize, stepSize, maxSize))
+                    .orElseGet(() -> complete(Util::failure));
+            }
+        }
+        return parseSize(environment, currentSize, readSize, stepSize, maxSize);
+    }
+
+    /*
+     * The attempted values all start at the same offset, so only the bytes
+     * beyond the largest size attempted so far (readSize) are charged.
+     */
+    private Trampoline<Optional<ParseState>> parseSize(final Environment environment, final BigInteger currentSize, final BigInteger readSize, final BigInteger stepSize, final BigInteger maxSize) {
         return environment.parseState
             .slice(currentSize)
-            .map(slice -> parseSlice(environment, currentSize, stepSize, maxSize, slice))
+            .map(slice -> {
+                environment.budget.read(currentSize.subtract(readSize).max(ZERO));
+                return parseSlice(environment, currentSize, readSize.max(currentSize), stepSize, maxSize, slice);
+            })
             .orElseGet(() -> complete(Util::failure));
     }
 
-    private Trampoline<Optional<ParseState>> parseSlice(final Environment environment, final BigInteger currentSize, final BigInteger stepSize, final BigInteger maxSize, final Slice slice) {
+    private Trampoline<Optional<ParseState>> parseSlice(final Environment environment, final BigInteger currentSize, final BigInteger readSize, final BigInteger stepSize, final BigInteger maxSize, final Slice slice) {
         return (currentSize.compareTo(ZERO) == 0 ? Optional.of(environment.parseState) : environment.parseState.add(new ParseValue(name, this, slice, environment.encoding)).seek(environment.parseState.offset.add(currentSize)))
             .map(preparedParseState -> terminator.parse(environment.withParseState(preparedParseState)))
             .orElseGet(Util::failure)
             .map(parsedParseState -> complete(() -> success(parsedParseState)))
-            .orElseGet(() -> intermediate(() -> iterate(environment, currentSize.add(stepSize), stepSize, maxSize)));
+            .orElseGet(() -> intermediate(() -> iterate(environment, currentSize.add(stepSize), readSize, stepSize, maxSize)));
+    }
+
+    /*
+     * Returns the first size from currentSize onwards (in steps of stepSize and
+     * at most maxSize) at which the terminator may succeed. The input is read
+     * in windows that grow while no candidate is found.
+     */
+    private Optional<BigInteger> findTerminator(final ParseState parseState, final LeadingBytes.Search search, final BigInteger currentSize, final BigInteger stepSize, final BigInteger maxSize) {
+        if (parseState.offset.bitLength() >= Long.SIZE - 2 || currentSize.bitLength() >= Long.SIZE - 2 || stepSize.bitLength() >= Integer.SIZE) {
+            return Optional.of(currentSize);
+        }
+        final int step = stepSize.intValueExact();
+        final long max = maxSize.min(BigInteger.valueOf(Long.MAX_VALUE >> 1)).longValueExact();
+        long size = currentSize.longValueExact();
+        int window = MIN_WINDOW;
+        while (size <= max) {
+            final byte[] data = new byte[window + search.length - 1];
+            final int available = LeadingBytes.read(parseState.source, parseState.offset.add(BigInteger.valueOf(size)), data);
+            final int to = (int) Math.min(window, max - size + 1);
+            final int found = search.find(data, to, available, step);
+            if (found >= 0) {
+                return Optional.of(BigInteger.valueOf(size + found));
+            }
+            if (available < data.length) {
+                return Optional.empty();
+            }
+            size += ((to + (long) step - 1) / step) * step;
+            window = Math.min(window << 1, MAX_WINDOW);
+        }
+        return Optional.empty();
     }
 
     private boolean checkNotValidList(final ImmutableList<Value> list) {
@@ -140,6 +203,7 @@ public class Until extends Token {
             && Objects.equals(stepSize, ((Until)obj).stepSize)
             && Objects.equals(maxSize, ((Until)obj).maxSize)
             && Objects.equals(terminator, ((Until)obj).terminator);
+        // The terminatorSearch field is excluded from equals() and hashCode() because it is cached data.
     }
 
     @Override
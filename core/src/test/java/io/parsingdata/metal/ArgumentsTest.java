@@ -48,6 +48,7 @@ import io.parsingdata.metal.expression.logical.And;
 import io.parsingdata.metal.expression.logical.Not;
 import io.parsingdata.metal.expression.value.Bytes;
 import io.parsingdata.metal.expression.value.Cat;
+import io.parsingdata.metal.expression.value.Find;
 import io.parsingdata.metal.expression.value.FoldLeft;
 import io.parsingdata.metal.expression.value.FoldRight;
 import io.parsingdata.metal.expression.value.Scope;
@@ -63,9 +64,7 @@ import io.parsingdata.metal.token.Cho;
 import io.parsingdata.metal.token.Def;
 import io.parsingdata.metal.token.Pre;
 import io.parsingdata.metal.token.Rep;
-import io.parsingdata.metal.token.RepN;
 import io.parsingdata.metal.token.Seq;
-import io.parsingdata.metal.token.Sub;
 import io.parsingdata.metal.token.Token;
 import io.parsingdata.metal.token.TokenRef;
 import io.parsingdata.metal.token.Until;
@@ -103,6 +102,7 @@ public class ArgumentsTest {
             { Offset.class, new Object[] { null } },
             { Count.class, new Object[] { null } },
             { Bytes.class, new Object[] { null } },
+            { Find.class, new Object[] { null, null } },
             { Scope.class, new Object[] { VALID_VE, null } },
             { Scope.class, new Object[] { null, VALID_VE } },
             // Derived from BinaryValueExpression
@@ -136,17 +136,12 @@ public class ArgumentsTest {
             { Pre.class, new Object[] { VALID_NAME, null, null, null } },
             { Rep.class, new Object[] { null, VALID_T, null } },
             { Rep.class, new Object[] { VALID_NAME, null, null } },
-            { RepN.class, new Object[] { null, VALID_T, VALID_VE, null } },
-            { RepN.class, new Object[] { VALID_NAME, null, VALID_VE, null } },
-            { RepN.class, new Object[] { VALID_NAME, VALID_T, null, null } },
             { Seq.class, new Object[] { null, null, VALID_T, VALID_T, new Token[] { VALID_T } } },
             { Seq.class, new Object[] { VALID_NAME, null, null, VALID_T, new Token[] { VALID_T } } },
             { Seq.class, new Object[] { VALID_NAME, null, VALID_T, null, new Token[] { VALID_T } } },
             { Seq.class, new Object[] { VALID_NAME, null, VALID_T, VALID_T, new Token[] { null } } },
             { Seq.class, new Object[] { VALID_NAME, null, VALID_T, VALID_T, null } },
-            { Sub.class, new Object[] { null, VALID_T, VALID_VE, null } },
-            { Sub.class, new Object[] { VALID_NAME, VALID_T, null, null } },
-            { Sub.class, new Object[] { VALID_NAME, null, VALID_VE, null } },
+            // RepN and Sub have two constructors, so their arguments are checked in RepNTest and SubTest.
             { While.class, new Object[] { null, VALID_T, null, null } },
             { While.class, new Object[] { VALID_NAME, null, null, null } },
             { TokenRef.class, new Object[] { VALID_NAME, null, null } },
@@ -28,7 +28,10 @@ import io.parsingdata.metal.data.selection.ByToken;
 import io.parsingdata.metal.data.selection.ByType;
 import io.parsingdata.metal.encoding.ByteOrder;
 import io.parsingdata.metal.encoding.Sign;
+import io.parsingdata.metal.expression.ExpressionCompiler;
 import io.parsingdata.metal.expression.value.ConstantFactory;
+import io.parsingdata.metal.token.Reachability;
+import io.parsingdata.metal.token.TokenCompiler;
 
 public class UtilityClassTest {
 
@@ -42,6 +45,9 @@ public class UtilityClassTest {
         checkUtilityClass(ByType.class);
         checkUtilityClass(ConstantFactory.class);
         checkUtilityClass(Selection.class);
+        checkUtilityClass(TokenCompiler.class);
+        checkUtilityClass(ExpressionCompiler.class);
+        checkUtilityClass(Reachability.class);
     }
 
     // Metal uses enums to prevent the use of difficult to understand boolean arguments.
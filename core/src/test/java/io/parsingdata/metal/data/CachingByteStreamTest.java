@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.ZERO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class CachingByteStreamTest {
+
+    private static final byte[] DATA = toByteArray(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private static class CountingByteStream extends InMemoryByteStream {
+
+        final List<String> reads = new ArrayList<>();
+
+        CountingByteStream(final byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public byte[] read(final BigInteger offset, final int length) throws IOException {
+            reads.add(offset + ":" + length);
+            return super.read(offset, length);
+        }
+
+    }
+
+    @Test
+    public void readsAlignedBlocks() throws IOException {
+        final CountingByteStream input = new CountingByteStream(DATA);
+        final CachingByteStream stream = new CachingByteStream(input, 4, 2);
+        assertArrayEquals(toByteArray(1, 2), stream.read(ONE, 2));
+        assertArrayEquals(toByteArray(3), stream.read(BigInteger.valueOf(3), 1));
+        assertEquals(List.of("0:4"), input.reads);
+        assertEquals(1, stream.getHits());
+        assertEquals(1, stream.getMisses());
+    }
+
+    @Test
+    public void coalescesAdjacentMisses() throws IOException {
+        final CountingByteStream input = new CountingByteStream(DATA);
+        final CachingByteStream stream = new CachingByteStream(input, 2, 5);
+        assertArrayEquals(toByteArray(4, 5), stream.read(BigInteger.valueOf(4), 2));
+        assertArrayEquals(toByteArray(1, 2, 3, 4, 5, 6, 7, 8), stream.read(ONE, 8));
+        assertEquals(List.of("4:2", "0:4", "6:4"), input.reads);
+        assertEquals(1, stream.getHits());
+        assertEquals(5, stream.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        final CountingByteStream input = new CountingByteStream(DATA);
+        final CachingByteStream stream = new CachingByteStream(input, 2, 2);
+        stream.read(ZERO, 1);
+        stream.read(BigInteger.valueOf(2), 1);
+        stream.read(ZERO, 1);
+        stream.read(BigInteger.valueOf(4), 1);
+        stream.read(ZERO, 1);
+        stream.read(BigInteger.valueOf(2), 1);
+        assertEquals(List.of("0:2", "2:2", "4:2", "2:2"), input.reads);
+        assertEquals(2, stream.getHits());
+        assertEquals(4, stream.getMisses());
+    }
+
+    @Test
+    public void partialFinalBlock() throws IOException {
+        final CountingByteStream input = new CountingByteStream(DATA);
+        final CachingByteStream stream = new CachingByteStream(input, 4, 4);
+        assertArrayEquals(toByteArray(9), stream.read(BigInteger.valueOf(9), 1));
+        assertArrayEquals(toByteArray(6, 7, 8, 9), stream.read(BigInteger.valueOf(6), 4));
+        assertEquals(List.of("8:2", "4:4"), input.reads);
+    }
+
+    @Test
+    public void bypassLargeReads() throws IOException {
+        final CountingByteStream input = new CountingByteStream(DATA);
+        final CachingByteStream stream = new CachingByteStream(input, 2, 2);
+        assertArrayEquals(DATA, stream.read(ZERO, DATA.length));
+        assertArrayEquals(DATA, stream.read(ZERO, DATA.length));
+        assertEquals(List.of("0:10", "0:10"), input.reads);
+        assertEquals(0, stream.getHits());
+        assertEquals(10, stream.getMisses());
+    }
+
+    @Test
+    public void readUnavailable() throws IOException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Data to read is not available (offset=8;length=4;input=");
+        new CachingByteStream(new InMemoryByteStream(DATA), 4, 4).read(BigInteger.valueOf(8), 4);
+    }
+
+    @Test
+    public void isAvailable() {
+        final CachingByteStream stream = new CachingByteStream(new InMemoryByteStream(DATA));
+        assertTrue(stream.isAvailable(ZERO, BigInteger.TEN));
+        assertFalse(stream.isAvailable(ONE, BigInteger.TEN));
+    }
+
+    @Test
+    public void parseThroughCache() {
+        final CachingByteStream stream = new CachingByteStream(new InMemoryByteStream(DATA), 4, 1);
+        final Optional<ParseState> result =
+            seq(def("a", con(1), eq(con(0))),
+                rep(def("b", con(1), ltNum(con(10))))).parse(env(createFromByteStream(stream), enc()));
+        assertTrue(result.isPresent());
+        assertEquals(BigInteger.TEN, result.get().offset);
+        assertEquals(7, stream.getHits());
+        assertEquals(3, stream.getMisses());
+    }
+
+    @Test
+    public void invalidBlockSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument blockSize must be positive.");
+        new CachingByteStream(new InMemoryByteStream(DATA), 0, 1);
+    }
+
+    @Test
+    public void invalidBlockCount() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument blockCount must be positive.");
+        new CachingByteStream(new InMemoryByteStream(DATA), 1, 0);
+    }
+
+    @Test
+    public void equality() throws IOException {
+        final CachingByteStream stream = new CachingByteStream(new InMemoryByteStream(DATA), 4, 4);
+        final CachingByteStream other = new CachingByteStream(new InMemoryByteStream(DATA), 4, 4);
+        stream.read(ZERO, 1);
+        assertEquals(stream, other);
+        assertEquals(stream.hashCode(), other.hashCode());
+        assertNotEquals(stream, new CachingByteStream(new InMemoryByteStream(DATA), 4, 5));
+        assertNotEquals(stream, new CachingByteStream(new InMemoryByteStream(DATA), 5, 4));
+        assertEquals("CachingByteStream(InMemoryByteStream(10);blockSize=4;blockCount=4)", stream.toString());
+    }
+
+}
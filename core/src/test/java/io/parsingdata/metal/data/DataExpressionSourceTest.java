@@ -18,6 +18,7 @@ package io.parsingdata.metal.data;
 
 import static java.math.BigInteger.ZERO;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -27,6 +28,7 @@ import static io.parsingdata.metal.Shorthand.div;
 import static io.parsingdata.metal.Shorthand.ref;
 import static io.parsingdata.metal.Shorthand.seq;
 import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Shorthand.toByteArray;
 import static io.parsingdata.metal.data.selection.ByName.getValue;
 import static io.parsingdata.metal.expression.value.BytesTest.EMPTY_PARSE_STATE;
 import static io.parsingdata.metal.util.EncodingFactory.enc;
@@ -34,7 +36,14 @@ import static io.parsingdata.metal.util.EnvironmentFactory.env;
 import static io.parsingdata.metal.util.ParseStateFactory.stream;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -83,4 +92,31 @@ public class DataExpressionSourceTest {
         new DataExpressionSource(div(con(1), con(0)), 0, EMPTY_PARSE_STATE, enc()).isAvailable(ZERO, ZERO);
     }
 
+    @Test
+    public void concurrentFirstAccess() throws Exception {
+        final Optional<ParseState> result = setupResult();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int run = 0; run < 100; run++) {
+                final DataExpressionSource source = new DataExpressionSource(ref("a"), 0, result.get(), enc());
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<byte[]>> reads = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    final int offset = i % 4;
+                    reads.add(executor.submit(() -> {
+                        start.await();
+                        return source.getData(offset, 4 - offset);
+                    }));
+                }
+                start.countDown();
+                for (int i = 0; i < reads.size(); i++) {
+                    final int offset = i % 4;
+                    assertArrayEquals(Arrays.copyOfRange(toByteArray(1, 2, 3, 4), offset, 4), reads.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ImmutableHashMapTest {
+
+    private static class Colliding {
+        final int id;
+
+        Colliding(final int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Colliding && ((Colliding)obj).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    public void putAndGet() {
+        ImmutableHashMap<Integer, String> map = ImmutableHashMap.empty();
+        for (int i = 0; i < 5000; i++) {
+            map = map.put(i * 7919, "v" + i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("v" + i, map.get(i * 7919, null));
+        }
+        assertNull(map.get(1, null));
+        assertEquals("default", map.get(-1, "default"));
+    }
+
+    @Test
+    public void persistent() {
+        final ImmutableHashMap<String, Integer> first = ImmutableHashMap.<String, Integer>empty().put("a", 1);
+        final ImmutableHashMap<String, Integer> second = first.put("a", 2).put("b", 3);
+        assertEquals(1, (int) first.get("a", 0));
+        assertEquals(0, (int) first.get("b", 0));
+        assertEquals(2, (int) second.get("a", 0));
+        assertEquals(3, (int) second.get("b", 0));
+        assertEquals(0, (int) ImmutableHashMap.<String, Integer>empty().get("a", 0));
+    }
+
+    @Test
+    public void collisions() {
+        ImmutableHashMap<Colliding, Integer> map = ImmutableHashMap.empty();
+        for (int i = 0; i < 10; i++) {
+            map = map.put(new Colliding(i), i);
+        }
+        final ImmutableHashMap<Colliding, Integer> replaced = map.put(new Colliding(3), 30);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) map.get(new Colliding(i), -1));
+        }
+        assertEquals(30, (int) replaced.get(new Colliding(3), -1));
+        assertEquals(-1, (int) replaced.get(new Colliding(10), -1));
+    }
+
+    @Test
+    public void identity() {
+        final Colliding key = new Colliding(1);
+        final ImmutableHashMap<Colliding, Integer> map = ImmutableHashMap.<Colliding, Integer>emptyIdentity().put(key, 1).put(new Colliding(1), 2);
+        assertEquals(1, (int) map.get(key, -1));
+        assertEquals(-1, (int) map.get(new Colliding(1), -1));
+        assertEquals(2, (int) ImmutableHashMap.<Colliding, Integer>empty().put(key, 1).put(new Colliding(1), 2).get(key, -1));
+    }
+
+}
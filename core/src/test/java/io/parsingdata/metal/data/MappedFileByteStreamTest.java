@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.TEN;
+import static java.math.BigInteger.ZERO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.data.selection.ByName.getValue;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class MappedFileByteStreamTest {
+
+    private static final byte[] DATA = toByteArray(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("metal", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, DATA);
+    }
+
+    @Test
+    public void readWithinSingleSegment() throws IOException {
+        final MappedFileByteStream stream = new MappedFileByteStream(file);
+        assertEquals(DATA.length, stream.size);
+        assertArrayEquals(toByteArray(2, 3, 4), stream.read(BigInteger.valueOf(2), 3));
+        assertArrayEquals(DATA, stream.read(ZERO, DATA.length));
+    }
+
+    @Test
+    public void readAcrossSegments() throws IOException {
+        final MappedFileByteStream stream = new MappedFileByteStream(file, 3);
+        assertArrayEquals(toByteArray(2, 3, 4, 5, 6, 7), stream.read(BigInteger.valueOf(2), 6));
+        assertArrayEquals(toByteArray(9), stream.read(BigInteger.valueOf(9), 1));
+        assertArrayEquals(DATA, stream.read(ZERO, DATA.length));
+        assertArrayEquals(new byte[0], stream.read(TEN, 0));
+    }
+
+    @Test
+    public void readBuffer() throws IOException {
+        final MappedFileByteStream stream = new MappedFileByteStream(file, 4);
+        final ByteBuffer withinSegment = stream.readBuffer(5, 3);
+        assertTrue(withinSegment.isReadOnly());
+        assertEquals(ByteBuffer.wrap(toByteArray(5, 6, 7)), withinSegment);
+        assertEquals(ByteBuffer.wrap(toByteArray(2, 3, 4, 5)), stream.readBuffer(2, 4));
+        assertEquals(0, stream.readBuffer(10, 0).remaining());
+    }
+
+    @Test
+    public void isAvailable() throws IOException {
+        final MappedFileByteStream stream = new MappedFileByteStream(file, 4);
+        assertTrue(stream.isAvailable(ZERO, TEN));
+        assertTrue(stream.isAvailable(TEN, ZERO));
+        assertFalse(stream.isAvailable(ONE, TEN));
+        assertFalse(stream.isAvailable(BigInteger.valueOf(-1), ONE));
+    }
+
+    @Test
+    public void readUnavailable() throws IOException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Data to read is not available (offset=8;length=3;size=10).");
+        new MappedFileByteStream(file).read(BigInteger.valueOf(8), 3);
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        Files.write(file, new byte[0]);
+        final MappedFileByteStream stream = new MappedFileByteStream(file);
+        assertTrue(stream.isAvailable(ZERO, ZERO));
+        assertFalse(stream.isAvailable(ZERO, ONE));
+        assertArrayEquals(new byte[0], stream.read(ZERO, 0));
+    }
+
+    @Test
+    public void invalidSegmentSize() throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument segmentSize must be positive.");
+        new MappedFileByteStream(file, 0);
+    }
+
+    @Test
+    public void parseFromMappedFile() throws IOException {
+        final Optional<ParseState> result =
+            seq(def("a", con(3), eq(con(0, 1, 2))),
+                def("size", con(1)),
+                def("b", last(ref("size")))).parse(env(createFromByteStream(new MappedFileByteStream(file, 4)), enc()));
+        assertTrue(result.isPresent());
+        assertArrayEquals(toByteArray(4, 5, 6), getValue(result.get().order, "b").value());
+        assertEquals(BigInteger.valueOf(7), result.get().offset);
+    }
+
+    @Test
+    public void equality() throws IOException {
+        final MappedFileByteStream stream = new MappedFileByteStream(file, 4);
+        assertEquals(stream, new MappedFileByteStream(file, 4));
+        assertEquals(stream.hashCode(), new MappedFileByteStream(file, 4).hashCode());
+        assertNotEquals(stream, new MappedFileByteStream(file, 5));
+        assertEquals("MappedFileByteStream(" + file + ";size=10;segmentSize=4)", stream.toString());
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.toByteArray;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class MultiPatternMatcherTest {
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static List<String> scan(final MultiPatternMatcher matcher, final byte[] data, final long offset) throws IOException {
+        final List<String> found = new ArrayList<>();
+        matcher.scan(new InMemoryByteStream(data), offset, (pattern, position) -> found.add(pattern + "@" + position));
+        return found;
+    }
+
+    @Test
+    public void overlappingPatterns() throws IOException {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(ascii("he"), ascii("she"), ascii("his"), ascii("hers"));
+        assertEquals(4, matcher.patternCount);
+        assertEquals(4, matcher.maxLength);
+        assertEquals(List.of("1@1", "0@2", "3@2"), scan(matcher, ascii("ushers"), 0));
+        assertEquals(List.of("2@1", "1@3", "0@4"), scan(matcher, ascii("ahishe"), 0));
+        assertEquals(List.of("1@3", "0@4"), scan(matcher, ascii("ahishe"), 3));
+        assertEquals(List.of(), scan(matcher, ascii("hxsxe"), 0));
+    }
+
+    @Test
+    public void stepByState() {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(toByteArray(1, 2), toByteArray(2));
+        final int first = matcher.next(MultiPatternMatcher.INITIAL_STATE, (byte) 1);
+        assertFalse(matcher.isMatch(first));
+        final int second = matcher.next(first, (byte) 2);
+        assertTrue(matcher.isMatch(second));
+        assertEquals(2, matcher.getMatches(second).length);
+        assertEquals(MultiPatternMatcher.INITIAL_STATE, matcher.next(second, (byte) 3));
+        assertArrayEquals(toByteArray(1, 2), matcher.getPattern(0));
+    }
+
+    @Test
+    public void matchAcrossBlocks() throws IOException {
+        final byte[] data = new byte[MultiPatternMatcher.BLOCK_SIZE * 2 + 10];
+        data[MultiPatternMatcher.BLOCK_SIZE - 1] = 'a';
+        data[MultiPatternMatcher.BLOCK_SIZE] = 'b';
+        data[data.length - 2] = 'a';
+        data[data.length - 1] = 'b';
+        assertEquals(List.of("0@" + (MultiPatternMatcher.BLOCK_SIZE - 1), "0@" + (data.length - 2)), scan(new MultiPatternMatcher(ascii("ab")), data, 0));
+    }
+
+    @Test
+    public void scanSource() {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(ascii("ab"), ascii("b"));
+        final Source source = new ConstantSource(ascii("abcab"));
+        final List<String> found = new ArrayList<>();
+        matcher.scan(source, 0, Long.MAX_VALUE, (pattern, position) -> found.add(pattern + "@" + position));
+        assertEquals(List.of("0@0", "1@1", "0@3", "1@4"), found);
+        found.clear();
+        matcher.scan(source, 1, 3, (pattern, position) -> found.add(pattern + "@" + position));
+        assertEquals(List.of("1@1"), found);
+        found.clear();
+        matcher.scan(source, 6, Long.MAX_VALUE, (pattern, position) -> found.add(pattern + "@" + position));
+        assertEquals(List.of(), found);
+    }
+
+    @Test
+    public void hasPatterns() {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(ascii("ab"), ascii("c"));
+        assertTrue(matcher.hasPatterns(ascii("ab"), ascii("c")));
+        assertFalse(matcher.hasPatterns(ascii("ab")));
+    }
+
+    @Test
+    public void emptyInput() throws IOException {
+        assertEquals(List.of(), scan(new MultiPatternMatcher(ascii("a")), new byte[0], 0));
+    }
+
+    @Test
+    public void noPatterns() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument patterns may not be empty.");
+        new MultiPatternMatcher();
+    }
+
+    @Test
+    public void emptyPattern() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument patterns may not contain an empty pattern.");
+        new MultiPatternMatcher(ascii("a"), new byte[0]);
+    }
+
+    @Test
+    public void equality() {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(ascii("ab"), ascii("c"));
+        assertEquals(matcher, new MultiPatternMatcher(ascii("ab"), ascii("c")));
+        assertEquals(matcher.hashCode(), new MultiPatternMatcher(ascii("ab"), ascii("c")).hashCode());
+        assertNotEquals(matcher, new MultiPatternMatcher(ascii("c"), ascii("ab")));
+        assertEquals("MultiPatternMatcher(2;maxLength=2)", matcher.toString());
+    }
+
+}
@@ -24,11 +24,14 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import static io.parsingdata.metal.Shorthand.def;
 import static io.parsingdata.metal.Shorthand.seq;
 import static io.parsingdata.metal.data.ParseGraph.EMPTY;
 import static io.parsingdata.metal.data.ParseGraph.NONE;
+import static io.parsingdata.metal.data.Selection.reverse;
 import static io.parsingdata.metal.data.selection.ByName.getValue;
 import static io.parsingdata.metal.data.selection.ByTypeTest.EMPTY_SOURCE;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
 import static io.parsingdata.metal.util.EnvironmentFactory.env;
 import static io.parsingdata.metal.util.ParseStateFactory.stream;
 import static io.parsingdata.metal.util.TokenDefinitions.any;
@@ -243,4 +246,40 @@ public class ParseGraphTest {
         assertFalse(EMPTY.addBranch(NONE).current().isPresent());
     }
 
+    @Test
+    public void indexMatchesSelection() {
+        for (final ParseGraph graph : new ParseGraph[] { pg, pg.tail.tail.head.asGraph(), pg.tail.tail.head.asGraph().tail.head.asGraph(), pgl, EMPTY }) {
+            for (final String name : new String[] { "a", "b", "c", "d", "e", "f", "g", "h", "empty", "missing" }) {
+                assertEquals(reverse(Selection.getAllValues(graph, value -> value.matches(name))), graph.getValues(name));
+            }
+            assertEquals(reverse(Selection.getAllValues(graph, value -> value.definition.equals(aDef))), graph.getValues(aDef));
+        }
+    }
+
+    @Test
+    public void indexByScopedName() {
+        final Slice slice = Slice.createFromBytes(new byte[] { 1 });
+        final ParseValue outer = new ParseValue("x.y.z", t, slice, enc());
+        final ParseValue inner = new ParseValue("y.z", t, slice, enc());
+        final ParseValue other = new ParseValue("xy.z", t, slice, enc());
+        final ParseGraph graph = EMPTY.add(outer).addBranch(t).add(inner).closeBranch().add(other);
+        assertEquals(ImmutableList.create(outer), graph.getValues("x.y.z"));
+        assertEquals(ImmutableList.create(outer).add(inner), graph.getValues("y.z"));
+        assertEquals(ImmutableList.create(outer).add(inner).add(other), graph.getValues("z"));
+        assertEquals(ImmutableList.create(other), graph.getValues("xy.z"));
+        assertTrue(graph.getValues("y").isEmpty());
+        assertEquals(ImmutableList.create(outer).add(inner).add(other), graph.getValues(t));
+    }
+
+    @Test
+    public void indexByEqualDefinition() {
+        final Slice slice = Slice.createFromBytes(new byte[] { 1 });
+        final ParseValue first = new ParseValue("a", def("a", 1), slice, enc());
+        final ParseValue second = new ParseValue("a", def("a", 1), slice, enc());
+        final ParseGraph graph = EMPTY.add(first).addBranch(t).add(second);
+        assertEquals(ImmutableList.create(first).add(second), graph.getValues(def("a", 1)));
+        assertEquals(ImmutableList.create(second), graph.head.asGraph().getValues(def("a", 1)));
+        assertTrue(graph.getValues(def("b", 1)).isEmpty());
+    }
+
 }
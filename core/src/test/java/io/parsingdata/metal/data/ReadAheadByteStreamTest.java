@@ -0,0 +1,269 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.ZERO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class ReadAheadByteStreamTest {
+
+    private static final byte[] DATA = toByteArray(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private static class RecordingAsyncByteStream implements AsyncByteStream {
+
+        final byte[] data;
+        final List<String> reads = new ArrayList<>();
+        int failures;
+
+        RecordingAsyncByteStream(final byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public synchronized CompletableFuture<ByteBuffer> read(final long offset, final int length) {
+            reads.add(offset + ":" + length);
+            if (failures > 0) {
+                failures--;
+                return CompletableFuture.failedFuture(new IOException("Read failed."));
+            }
+            return complete(ByteBuffer.wrap(data, (int) offset, length).slice());
+        }
+
+        CompletableFuture<ByteBuffer> complete(final ByteBuffer buffer) {
+            return CompletableFuture.completedFuture(buffer);
+        }
+
+        @Override
+        public boolean isAvailable(final long offset, final long length) {
+            return offset >= 0 && length >= 0 && offset <= data.length && length <= data.length - offset;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + data.length + ")";
+        }
+
+    }
+
+    @Test
+    public void readsAhead() throws IOException {
+        final RecordingAsyncByteStream input = new RecordingAsyncByteStream(DATA);
+        final ReadAheadByteStream stream = new ReadAheadByteStream(input, 2, 4, 2);
+        assertArrayEquals(toByteArray(1), stream.read(ONE, 1));
+        assertEquals(List.of("2:2", "4:2", "0:2"), input.reads);
+        assertArrayEquals(toByteArray(2, 3), stream.read(BigInteger.valueOf(2), 2));
+        assertEquals(List.of("2:2", "4:2", "0:2", "6:2"), input.reads);
+        assertArrayEquals(toByteArray(7, 8, 9), stream.read(BigInteger.valueOf(7), 3));
+        assertEquals(List.of("2:2", "4:2", "0:2", "6:2", "8:2"), input.reads);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        final RecordingAsyncByteStream input = new RecordingAsyncByteStream(DATA);
+        final ReadAheadByteStream stream = new ReadAheadByteStream(input, 2, 2, 0);
+        stream.read(ZERO, 1);
+        stream.read(BigInteger.valueOf(2), 1);
+        stream.read(BigInteger.valueOf(4), 1);
+        stream.read(BigInteger.valueOf(2), 1);
+        stream.read(ZERO, 1);
+        assertEquals(List.of("0:2", "2:2", "4:2", "0:2"), input.reads);
+    }
+
+    @Test
+    public void partialFinalBlock() throws IOException {
+        final RecordingAsyncByteStream input = new RecordingAsyncByteStream(DATA);
+        final ReadAheadByteStream stream = new ReadAheadByteStream(input, 4, 4, 1);
+        assertArrayEquals(toByteArray(6, 7, 8, 9), stream.read(BigInteger.valueOf(6), 4));
+        assertEquals(List.of("4:4", "8:2"), input.reads);
+        assertArrayEquals(new byte[0], stream.read(BigInteger.TEN, 0));
+    }
+
+    @Test
+    public void readBufferWithinBlock() throws IOException {
+        final ReadAheadByteStream stream = new ReadAheadByteStream(new RecordingAsyncByteStream(DATA), 4, 4, 1);
+        final ByteBuffer buffer = stream.readBuffer(5, 2);
+        assertTrue(buffer.isReadOnly());
+        assertEquals(ByteBuffer.wrap(toByteArray(5, 6)), buffer);
+    }
+
+    @Test
+    public void bypassLargeReads() throws IOException {
+        final RecordingAsyncByteStream input = new RecordingAsyncByteStream(DATA);
+        final ReadAheadByteStream stream = new ReadAheadByteStream(input, 2, 3, 1);
+        assertArrayEquals(DATA, stream.read(ZERO, DATA.length));
+        assertEquals(List.of("0:10"), input.reads);
+    }
+
+    @Test
+    public void failedReadIsRetried() throws IOException {
+        final RecordingAsyncByteStream input = new RecordingAsyncByteStream(DATA);
+        input.failures = 1;
+        final ReadAheadByteStream stream = new ReadAheadByteStream(input, 4, 4, 0);
+        try {
+            stream.read(ZERO, 2);
+            fail("Expected an IOException.");
+        } catch (final IOException exception) {
+            assertEquals("Read failed.", exception.getMessage());
+        }
+        assertArrayEquals(toByteArray(0, 1), stream.read(ZERO, 2));
+        assertEquals(List.of("0:4", "0:4"), input.reads);
+    }
+
+    @Test
+    public void cancelledReadIsRetried() throws IOException {
+        final RecordingAsyncByteStream input = new RecordingAsyncByteStream(DATA) {
+            @Override
+            CompletableFuture<ByteBuffer> complete(final ByteBuffer buffer) {
+                if (reads.size() == 1) {
+                    final CompletableFuture<ByteBuffer> cancelled = new CompletableFuture<>();
+                    cancelled.cancel(false);
+                    return cancelled;
+                }
+                return super.complete(buffer);
+            }
+        };
+        final ReadAheadByteStream stream = new ReadAheadByteStream(input, 4, 4, 0);
+        try {
+            stream.read(ZERO, 2);
+            fail("Expected an IOException.");
+        } catch (final IOException exception) {
+            assertTrue(exception.getCause() instanceof CancellationException);
+        }
+        assertArrayEquals(toByteArray(0, 1), stream.read(ZERO, 2));
+        assertEquals(List.of("0:4", "0:4"), input.reads);
+    }
+
+    @Test
+    public void readUnavailable() throws IOException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Data to read is not available (offset=8;length=3;input=RecordingAsyncByteStream(10)).");
+        new ReadAheadByteStream(new RecordingAsyncByteStream(DATA)).read(BigInteger.valueOf(8), 3);
+    }
+
+    @Test
+    public void isAvailable() {
+        final ReadAheadByteStream stream = new ReadAheadByteStream(new RecordingAsyncByteStream(DATA));
+        assertTrue(stream.isAvailable(ZERO, BigInteger.TEN));
+        assertFalse(stream.isAvailable(ONE, BigInteger.TEN));
+        assertFalse(stream.isAvailable(BigInteger.ONE.shiftLeft(64), ZERO));
+    }
+
+    @Test
+    public void parseWithDelayedReads() throws IOException {
+        final byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; i += 5) {
+            data[i] = 4;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final RecordingAsyncByteStream input = new RecordingAsyncByteStream(data) {
+                @Override
+                CompletableFuture<ByteBuffer> complete(final ByteBuffer buffer) {
+                    return CompletableFuture.supplyAsync(() -> {
+                        try {
+                            Thread.sleep(1);
+                        } catch (final InterruptedException exception) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return buffer;
+                    }, executor);
+                }
+            };
+            final Token token = rep(seq(def("size", con(1), eq(con(4))), def("data", last(ref("size")))));
+            final Optional<ParseState> expected = token.parse(env(createFromByteStream(new InMemoryByteStream(data)), enc()));
+            final Optional<ParseState> result = token.parse(env(createFromByteStream(new ReadAheadByteStream(input, 256, 8, 4)), enc()));
+            assertTrue(result.isPresent());
+            assertEquals(expected.get().offset, result.get().offset);
+            assertEquals(20, input.reads.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void invalidBlockSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument blockSize must be positive.");
+        new ReadAheadByteStream(new RecordingAsyncByteStream(DATA), 0, 2, 1);
+    }
+
+    @Test
+    public void invalidBlockCount() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument blockCount must be positive.");
+        new ReadAheadByteStream(new RecordingAsyncByteStream(DATA), 1, 0, 0);
+    }
+
+    @Test
+    public void invalidReadAhead() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument readAhead must be at least zero and less than blockCount.");
+        new ReadAheadByteStream(new RecordingAsyncByteStream(DATA), 1, 2, 2);
+    }
+
+    @Test
+    public void equality() throws IOException {
+        final RecordingAsyncByteStream input = new RecordingAsyncByteStream(DATA);
+        final ReadAheadByteStream stream = new ReadAheadByteStream(input, 4, 4, 1);
+        stream.read(ZERO, 1);
+        assertEquals(stream, new ReadAheadByteStream(input, 4, 4, 1));
+        assertEquals(stream.hashCode(), new ReadAheadByteStream(input, 4, 4, 1).hashCode());
+        assertNotEquals(stream, new ReadAheadByteStream(input, 4, 4, 2));
+        assertNotEquals(stream, new ReadAheadByteStream(new RecordingAsyncByteStream(DATA), 4, 4, 1));
+        assertEquals("ReadAheadByteStream(RecordingAsyncByteStream(10);blockSize=4;blockCount=4;readAhead=1)", stream.toString());
+    }
+
+}
@@ -22,8 +22,10 @@ import static java.math.BigInteger.ZERO;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import static io.parsingdata.metal.Shorthand.cho;
 import static io.parsingdata.metal.Shorthand.con;
 import static io.parsingdata.metal.Shorthand.def;
 import static io.parsingdata.metal.Shorthand.eq;
@@ -41,7 +43,9 @@ import static io.parsingdata.metal.util.EncodingFactory.enc;
 import static io.parsingdata.metal.util.EnvironmentFactory.env;
 import static io.parsingdata.metal.util.ParseStateFactory.stream;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 import org.junit.Rule;
@@ -55,17 +59,99 @@ public class SliceTest {
 
     @Rule public final ExpectedException thrown = ExpectedException.none();
 
+    private static class CountingByteStream extends InMemoryByteStream {
+
+        int reads;
+        int bytes;
+
+        CountingByteStream(final byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public byte[] read(final BigInteger offset, final int length) throws IOException {
+            reads++;
+            bytes += length;
+            return super.read(offset, length);
+        }
+
+    }
+
     @Test
     public void lazyRead() {
-        final ReadTrackingByteStream stream = new ReadTrackingByteStream(new InMemoryByteStream(toByteArray(1, 2, 3, 0, 0, 4, 1)));
+        // The leading Def makes the Seq too large to be read in a single read.
+        final byte[] data = new byte[5004];
+        data[5002] = 4;
+        data[5003] = 1;
+        final ReadTrackingByteStream stream = new ReadTrackingByteStream(new InMemoryByteStream(data));
+        final Optional<ParseState> result =
+            seq(def("a", con(5000)),
+                post(def("b", con(2)), eq(con(0, 0))),
+                def("c", con(1)),
+                post(def("d", con(1)), eq(con(1)))).parse(env(createFromByteStream(stream), enc()));
+        assertTrue(result.isPresent());
+        assertTrue(stream.containsAll(5000, 5001, 5003));
+        assertTrue(stream.containsNone(0, 1, 4999, 5002));
+    }
+
+    @Test
+    public void bulkRead() {
+        final CountingByteStream stream = new CountingByteStream(toByteArray(1, 2, 3, 0, 0, 4, 1, 9));
         final Optional<ParseState> result =
             seq(def("a", con(3)),
                 post(def("b", con(2)), eq(con(0, 0))),
                 def("c", con(1)),
                 post(def("d", con(1)), eq(con(1)))).parse(env(createFromByteStream(stream), enc()));
         assertTrue(result.isPresent());
-        assertTrue(stream.containsAll(3, 4, 6));
-        assertTrue(stream.containsNone(0, 1, 2, 5));
+        assertEquals(1, stream.reads);
+        assertEquals(4, getValue(result.get().order, "c").asNumeric().intValueExact());
+        assertEquals(1, stream.reads);
+        // The first value is parsed before the data is loaded, so it is read separately.
+        assertArrayEquals(toByteArray(1, 2, 3), getValue(result.get().order, "a").value());
+        assertEquals(2, stream.reads);
+        assertEquals(Slice.createFromSource(result.get().source, BigInteger.valueOf(5), ONE).get(), getValue(result.get().order, "c").slice());
+    }
+
+    @Test
+    public void noBulkReadOnMismatch() {
+        final CountingByteStream stream = new CountingByteStream(toByteArray(2, 5, 6, 7));
+        final Optional<ParseState> result =
+            cho(seq(def("x", con(1), eq(con(1))), def("y", con(1)), def("z", con(1))),
+                seq(def("p", con(1)), def("q", con(1)), def("r", con(1)))).parse(env(createFromByteStream(stream), enc()));
+        assertTrue(result.isPresent());
+        assertEquals(2, stream.reads);
+        assertEquals(4, stream.bytes);
+    }
+
+    @Test
+    public void noBulkReadOfVariableLayout() {
+        final CountingByteStream stream = new CountingByteStream(toByteArray(2, 2, 3, 4));
+        final Optional<ParseState> result =
+            seq(def("a", con(1)),
+                def("b", con(1)),
+                def("c", last(ref("a")))).parse(env(createFromByteStream(stream), enc()));
+        assertTrue(result.isPresent());
+        assertEquals(1, stream.reads);
+        assertEquals(1, stream.bytes);
+    }
+
+    @Test
+    public void subSliceOfLoadedSlice() {
+        final CountingByteStream stream = new CountingByteStream(toByteArray(0, 1, 2, 3, 4, 5));
+        final Source source = createFromByteStream(stream).source;
+        final Slice loaded = Slice.createFromSource(source, ONE, BigInteger.valueOf(4)).get().load();
+        assertEquals(1, stream.reads);
+        assertEquals(loaded, loaded.load());
+        assertArrayEquals(toByteArray(2, 3), loaded.subSlice(BigInteger.valueOf(2), BigInteger.valueOf(2)).get().getData());
+        assertArrayEquals(toByteArray(4), loaded.subSlice(BigInteger.valueOf(4), ONE).get().getData());
+        assertEquals(ByteBuffer.wrap(toByteArray(3, 4)), loaded.subSlice(BigInteger.valueOf(3), BigInteger.valueOf(2)).get().getBuffer());
+        assertArrayEquals(toByteArray(1, 2, 3, 4), loaded.getData());
+        assertEquals(1, stream.reads);
+        // Slices outside of the loaded data are read from the source.
+        assertArrayEquals(toByteArray(4, 5), loaded.subSlice(BigInteger.valueOf(4), BigInteger.valueOf(2)).get().getData());
+        assertArrayEquals(toByteArray(0), loaded.subSlice(ZERO, ONE).get().getData());
+        assertEquals(3, stream.reads);
+        assertFalse(loaded.subSlice(BigInteger.valueOf(5), BigInteger.valueOf(2)).isPresent());
     }
 
     @Test
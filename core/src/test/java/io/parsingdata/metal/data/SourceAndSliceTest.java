@@ -19,6 +19,8 @@ package io.parsingdata.metal.data;
 import static java.math.BigInteger.ONE;
 import static java.math.BigInteger.ZERO;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -28,6 +30,7 @@ import static io.parsingdata.metal.expression.value.BytesTest.EMPTY_PARSE_STATE;
 import static io.parsingdata.metal.util.EncodingFactory.enc;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -74,6 +77,26 @@ public class SourceAndSliceTest {
         assertFalse(source.isAvailable(BigInteger.valueOf(5), ZERO));
     }
 
+    @Test
+    public void validSourcePrimitive() {
+        assertTrue(source.isAvailable(0L, 4L));
+        assertTrue(source.isAvailable(1L, 3L));
+        assertTrue(source.isAvailable(4L, 0L));
+        assertFalse(source.isAvailable(0L, 5L));
+        assertFalse(source.isAvailable(5L, 0L));
+        assertFalse(source.isAvailable(1L, Long.MAX_VALUE));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, source.getData(1L, 3));
+        assertArrayEquals(new byte[0], source.getData(4L, 0));
+    }
+
+    @Test
+    public void bufferView() {
+        final ByteBuffer buffer = createFromSource(source, ONE, BigInteger.valueOf(3)).get().getBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), buffer);
+        assertEquals(0, buffer.position());
+    }
+
     @Test
     public void validSlice() {
         checkSlice(ZERO, 2);
@@ -125,6 +148,18 @@ public class SourceAndSliceTest {
         source.getData(BigInteger.valueOf(-1L), ONE);
     }
 
+    @Test
+    public void readBeyondEndOfSourcePrimitive() {
+        thrown.expect(IllegalStateException.class);
+        source.getData(1L, 4);
+    }
+
+    @Test
+    public void startReadAtNegativeOffsetSourcePrimitive() {
+        thrown.expect(IllegalArgumentException.class);
+        source.getData(-1L, 1);
+    }
+
     @Test
     public void startReadAtNegativeOffsetSlice() {
         assertFalse(createFromSource(source, BigInteger.valueOf(-1L), ONE).isPresent());
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.data.callback;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.data.Selection.getAllRoots;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.data.selection.ByName.getValue;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseItem;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.token.Token;
+
+public class StreamingTest {
+
+    private static final Token RECORD = seq("record", def("size", con(1)), def("data", last(ref("size"))));
+    private static final Token FILE = seq(def("header", con(1), eq(con(0))), rep(RECORD), def("footer", con(1), eq(con(0xff))));
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private static class Sink implements Callback {
+
+        final List<byte[]> data = new ArrayList<>();
+        int failures;
+
+        @Override
+        public void handleSuccess(final Token token, final ParseState before, final ParseState after) {
+            data.add(getValue(parsedItem(after.order).asGraph(), "data").value());
+        }
+
+        @Override
+        public void handleFailure(final Token token, final ParseState before) {
+            failures++;
+        }
+
+    }
+
+    private static ParseItem parsedItem(final ParseGraph graph) {
+        return graph.branched ? parsedItem(graph.head.asGraph()) : graph.head;
+    }
+
+    @Test
+    public void streamRecords() {
+        final Sink sink = new Sink();
+        final Optional<ParseState> result = FILE.parse(env(stream(0, 2, 1, 2, 1, 3, 3, 4, 5, 6, 0xff), Callbacks.create().stream(FILE, RECORD, sink), enc()));
+        assertTrue(result.isPresent());
+        assertEquals(3, sink.data.size());
+        assertArrayEquals(toByteArray(1, 2), sink.data.get(0));
+        assertArrayEquals(toByteArray(3), sink.data.get(1));
+        assertArrayEquals(toByteArray(4, 5, 6), sink.data.get(2));
+        // The last attempt to parse a record fails on the footer.
+        assertEquals(1, sink.failures);
+
+        final ParseGraph graph = result.get().order;
+        assertTrue(getAllRoots(graph, RECORD).isEmpty());
+        assertTrue(getAllValues(graph, "data").isEmpty());
+        assertEquals(0, getValue(graph, "header").asNumeric().intValueExact());
+        assertEquals(0xff, getValue(graph, "footer").asNumeric().intValueExact());
+        assertEquals(FILE.parse(env(stream(0, 2, 1, 2, 1, 3, 3, 4, 5, 6, 0xff), enc())).get().offset, result.get().offset);
+    }
+
+    @Test
+    public void streamedByIdentity() {
+        final Callbacks callbacks = Callbacks.create().stream(FILE, RECORD, new Sink());
+        assertTrue(callbacks.isStreamed(RECORD));
+        assertFalse(callbacks.isStreamed(seq("record", def("size", con(1)), def("data", last(ref("size"))))));
+        assertFalse(Callbacks.create().isStreamed(RECORD));
+    }
+
+    @Test
+    public void equalTokenNotStreamed() {
+        final Token record = seq("record", def("data", con(1)), def("more", con(1)));
+        final Token copy = seq("record", def("data", con(1)), def("more", con(1)));
+        final Token root = seq(record, def("separator", con(1)), copy);
+        final Sink sink = new Sink();
+        final Optional<ParseState> result = root.parse(env(stream(1, 2, 3, 4, 5), Callbacks.create().stream(root, record, sink), enc()));
+        assertTrue(result.isPresent());
+        assertEquals(1, sink.data.size());
+        assertArrayEquals(toByteArray(1), sink.data.get(0));
+        // The copy is neither passed to the sink nor dropped.
+        assertEquals(1, getAllValues(result.get().order, "data").size);
+        assertEquals(4, getValue(result.get().order, "data").asNumeric().intValueExact());
+    }
+
+    @Test
+    public void streamInFailingAlternative() {
+        final Token token = cho(seq(RECORD, def("end", con(1), eq(con(0)))), seq(RECORD, def("other", con(1))));
+        final Sink sink = new Sink();
+        final Optional<ParseState> result = token.parse(env(stream(1, 2, 3), Callbacks.create().stream(token, RECORD, sink), enc()));
+        assertTrue(result.isPresent());
+        // The record is passed to the sink for both alternatives.
+        assertEquals(2, sink.data.size());
+        assertEquals(3, getValue(result.get().order, "other").asNumeric().intValueExact());
+    }
+
+    @Test
+    public void streamWithOtherCallbacks() {
+        final Sink sink = new Sink();
+        final List<ParseState> results = new ArrayList<>();
+        final Callbacks callbacks = Callbacks.create()
+            .add(FILE, new Callback() {
+                @Override public void handleSuccess(final Token token, final ParseState before, final ParseState after) { results.add(after); }
+                @Override public void handleFailure(final Token token, final ParseState before) {}
+            })
+            .stream(FILE, RECORD, sink);
+        assertTrue(callbacks.isStreamed(RECORD));
+        assertFalse(callbacks.isStreamed(FILE));
+        assertTrue(FILE.parse(env(stream(0, 1, 1, 0xff), callbacks, enc())).isPresent());
+        assertEquals(1, sink.data.size());
+        assertEquals(1, results.size());
+        assertTrue(getAllValues(results.get(0).order, "size").isEmpty());
+    }
+
+    @Test
+    public void referencedToken() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Token record cannot be streamed, because its values can still be referenced.");
+        Callbacks.create().stream(seq(rep(RECORD), def("total", con(1), eq(count(ref("data"))))), RECORD, new Sink());
+    }
+
+}
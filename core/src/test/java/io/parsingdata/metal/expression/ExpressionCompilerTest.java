@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.and;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.div;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.gtEqNum;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ltEqNum;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.mod;
+import static io.parsingdata.metal.Shorthand.mul;
+import static io.parsingdata.metal.Shorthand.neg;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.or;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compile;
+import static io.parsingdata.metal.expression.ExpressionCompiler.compileValue;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.le;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BinaryOperator;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.token.Token;
+
+public class ExpressionCompilerTest {
+
+    private static final Encoding[] ENCODINGS = { enc(), signed(), le() };
+    private static final long[] NUMBERS = { 0, 1, -1, 2, 7, -7, 127, 128, -128, -129, 255, 256, 70000, -70000, 1L << 55, -(1L << 55), Long.MAX_VALUE, Long.MIN_VALUE };
+
+    private static final Token FORMAT = seq(def("a", 1), def("b", 2, signed()), rep(def("c", 1, gtNum(con(0)))), def("d", 9));
+    private static final ParseState STATE = FORMAT.parse(env(stream(200, 255, 254, 1, 2, 3, 0, 0, 0, 0, 0, 0, 0, 0, 1))).get();
+
+    private static List<ValueExpression> operands() {
+        final List<ValueExpression> operands = new ArrayList<>();
+        for (final long number : NUMBERS) {
+            for (final Encoding encoding : ENCODINGS) {
+                operands.add(con(number, encoding));
+            }
+        }
+        operands.add(con(new byte[0]));
+        operands.add(last(ref("a")));
+        operands.add(last(ref("b")));
+        operands.add(ref("c"));
+        operands.add(ref("d"));
+        operands.add(ref("e"));
+        return operands;
+    }
+
+    private static void checkValueExpression(final ValueExpression expression) {
+        for (final Encoding encoding : ENCODINGS) {
+            assertEquals(expression.toString(), expression.eval(STATE, encoding), compileValue(expression).eval(STATE, encoding));
+        }
+    }
+
+    private static void checkExpression(final Expression expression) {
+        for (final Encoding encoding : ENCODINGS) {
+            assertEquals(expression.toString(), expression.eval(STATE, encoding), compile(expression).eval(STATE, encoding));
+        }
+    }
+
+    @Test
+    public void arithmeticMatchesInterpreter() {
+        final List<BinaryOperator<ValueExpression>> operators = List.of((l, r) -> add(l, r), (l, r) -> sub(l, r), (l, r) -> mul(l, r), (l, r) -> div(l, r), (l, r) -> mod(l, r));
+        for (final ValueExpression left : operands()) {
+            checkValueExpression(neg(left));
+            for (final ValueExpression right : operands()) {
+                for (final BinaryOperator<ValueExpression> operator : operators) {
+                    checkValueExpression(operator.apply(left, right));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void comparisonsMatchInterpreter() {
+        for (final ValueExpression left : operands()) {
+            for (final ValueExpression right : operands()) {
+                checkExpression(eqNum(left, right));
+                checkExpression(gtNum(left, right));
+                checkExpression(gtEqNum(left, right));
+                checkExpression(ltNum(left, right));
+                checkExpression(ltEqNum(left, right));
+                checkExpression(and(ltNum(left, right), not(eqNum(sub(left, right), neg(right)))));
+            }
+            checkExpression(eqNum(left));
+            checkExpression(gtNum(left));
+        }
+    }
+
+    @Test
+    public void nestedUnsignedResult() {
+        // With an unsigned encoding, the intermediate result -1 is stored as 0xFF.
+        final ValueExpression expression = add(sub(con(1), con(2)), con(1));
+        assertEquals(256, compileValue(expression).eval(STATE, enc()).head.asNumeric().intValueExact());
+        assertEquals(0, compileValue(expression).eval(STATE, signed()).head.asNumeric().intValueExact());
+        checkValueExpression(mul(sub(con(0), con(200)), sub(con(0), con(70000))));
+        checkValueExpression(add(sub(con(0), con(1L << 55)), con(0)));
+        checkValueExpression(sub(sub(con(0), con(Long.MAX_VALUE)), con(2)));
+    }
+
+    @Test
+    public void parseWithCompiledPredicate() {
+        final Expression predicate = gtNum(add(last(ref("size")), con(250)));
+        final Token interpreted = seq(def("size", 1), def("data", last(ref("size")), predicate));
+        final Token compiled = seq(def("size", 1), def("data", last(ref("size")), compile(predicate)));
+        assertEquals(interpreted.parse(env(stream(2, 1, 2))).map(state -> state.offset), compiled.parse(env(stream(2, 1, 2))).map(state -> state.offset));
+        assertTrue(compiled.parse(env(stream(2, 1, 2))).isPresent());
+        assertEquals(interpreted.parse(env(stream(2, 0, 1))).map(state -> state.offset), compiled.parse(env(stream(2, 0, 1))).map(state -> state.offset));
+        assertFalse(compiled.parse(env(stream(2, 0, 1))).isPresent());
+        assertEquals(interpreted.parse(env(stream(9, 1, 0, 0, 0, 0, 0, 0, 0, 0))).map(state -> state.offset), compiled.parse(env(stream(9, 1, 0, 0, 0, 0, 0, 0, 0, 0))).map(state -> state.offset));
+    }
+
+    @Test
+    public void notCompiled() {
+        final ValueExpression value = last(ref("a"));
+        assertSame(value, compileValue(value));
+        final Expression expression = eq(con(1));
+        assertSame(expression, compile(expression));
+    }
+
+    @Test
+    public void compiledEquality() {
+        final ValueExpression value = add(con(1), con(2));
+        assertEquals(compileValue(value), compileValue(value));
+        assertEquals(compileValue(value).hashCode(), compileValue(value).hashCode());
+        assertNotEquals(compileValue(value), compileValue(sub(con(1), con(2))));
+        assertNotEquals(compileValue(value), value);
+        assertEquals("CompiledValueExpression(" + value + ")", compileValue(value).toString());
+        final Expression expression = eqNum(con(1));
+        assertEquals(compile(expression), compile(expression));
+        assertEquals(compile(expression).hashCode(), compile(expression).hashCode());
+        assertNotEquals(compile(expression), compile(gtNum(con(1))));
+        assertNotEquals(compile(expression), expression);
+        assertEquals("CompiledExpression(" + expression + ")", compile(expression).toString());
+        assertEquals(and(compile(expression), compile(expression)), compile(and(expression, expression)));
+        assertEquals(or(compile(expression), compile(expression)), compile(or(expression, expression)));
+    }
+
+}
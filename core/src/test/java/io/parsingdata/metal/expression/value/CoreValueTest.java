@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.encoding.Encoding.DEFAULT_ENCODING;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.le;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import io.parsingdata.metal.encoding.ByteOrder;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.encoding.Sign;
+
+@RunWith(Parameterized.class)
+public class CoreValueTest {
+
+    private final byte[] data;
+    private final Encoding encoding;
+
+    public CoreValueTest(final String description, final byte[] data, final Encoding encoding) {
+        this.data = data;
+        this.encoding = encoding;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> arguments() {
+        final List<Object[]> arguments = new ArrayList<>();
+        for (final Encoding encoding : new Encoding[] { enc(), signed(), le(), new Encoding(Sign.SIGNED, DEFAULT_ENCODING.charset, ByteOrder.LITTLE_ENDIAN) }) {
+            for (int size = 1; size <= 9; size++) {
+                arguments.add(new Object[] { size + " bytes of 0x80 " + encoding, filled(size, 0x80), encoding });
+                arguments.add(new Object[] { size + " bytes of 0x7F " + encoding, filled(size, 0x7F), encoding });
+                arguments.add(new Object[] { size + " bytes of 0xFF " + encoding, filled(size, 0xFF), encoding });
+            }
+        }
+        return arguments;
+    }
+
+    private static byte[] filled(final int size, final int first) {
+        final byte[] data = new byte[size];
+        data[0] = (byte) first;
+        for (int i = 1; i < size; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    @Test
+    public void asNumeric() {
+        final byte[] ordered = encoding.byteOrder.apply(data);
+        final BigInteger expected = encoding.sign == Sign.SIGNED ? new BigInteger(ordered) : new BigInteger(1, ordered);
+        assertEquals(expected, ConstantFactory.createFromBytes(data, encoding).asNumeric());
+    }
+
+    @Test
+    public void buffer() {
+        final ByteBuffer buffer = ConstantFactory.createFromBytes(data, encoding).buffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(ByteBuffer.wrap(data), buffer);
+    }
+
+}
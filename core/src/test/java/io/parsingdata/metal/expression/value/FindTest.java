@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.CURRENT_OFFSET;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.div;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.find;
+import static io.parsingdata.metal.Shorthand.first;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.until;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.data.selection.ByName.getValue;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.ParseValue;
+import io.parsingdata.metal.token.Token;
+
+public class FindTest {
+
+    private static final ParseState PARSE_STATE = stream(0, 0xff, 0xd9, 1, 0xff, 0xd8, 0xff, 0xd9, 2);
+
+    private static String offsets(final ImmutableList<Value> values) {
+        final StringBuilder result = new StringBuilder();
+        for (ImmutableList<Value> remaining = values; !remaining.isEmpty(); remaining = remaining.tail) {
+            result.insert(0, " " + remaining.head.asNumeric());
+        }
+        return result.toString().trim();
+    }
+
+    @Test
+    public void findSingle() {
+        assertEquals("1 6", offsets(find(con(0xff, 0xd9)).eval(PARSE_STATE, enc())));
+        assertEquals(1, first(find(con(0xff, 0xd9))).evalSingle(PARSE_STATE, enc()).get().asNumeric().intValueExact());
+    }
+
+    @Test
+    public void findMultiple() {
+        final Optional<ParseState> result = seq(def("pattern", con(2)), def("pattern", con(1))).parse(env(stream(0xff, 0xd8, 0xd9, 0, 0xd9, 0xff, 0xd8, 0xd9)));
+        assertTrue(result.isPresent());
+        assertEquals("4 5 7", offsets(find(ref("pattern")).eval(result.get(), enc())));
+    }
+
+    @Test
+    public void findDistinctOffsets() {
+        final Optional<ParseState> result = seq(def("pattern", con(1)), def("pattern", con(2))).parse(env(stream(0xff, 0xff, 0xd9, 0, 0xff, 0xd9, 0xff)));
+        assertTrue(result.isPresent());
+        assertEquals("4 6", offsets(find(ref("pattern")).eval(result.get(), enc())));
+    }
+
+    @Test
+    public void findWithinSize() {
+        assertEquals("1", offsets(find(con(0xff, 0xd9), con(3)).eval(PARSE_STATE, enc())));
+        assertEquals("", offsets(find(con(0xff, 0xd9), con(2)).eval(PARSE_STATE, enc())));
+        assertEquals("1 6", offsets(find(con(0xff, 0xd9), con(100)).eval(PARSE_STATE, enc())));
+    }
+
+    @Test
+    public void findFromCurrentOffset() {
+        final Optional<ParseState> result = seq(def("a", con(2)), def("b", con(1))).parse(env(PARSE_STATE));
+        assertTrue(result.isPresent());
+        assertEquals("6", offsets(find(con(0xff, 0xd9)).eval(result.get(), enc())));
+    }
+
+    @Test
+    public void findEmpty() {
+        assertTrue(find(ref("none")).eval(PARSE_STATE, enc()).isEmpty());
+        assertTrue(find(div(con(1), con(0))).eval(PARSE_STATE, enc()).isEmpty());
+        assertTrue(find(con(0xff), last(ref("none"))).eval(PARSE_STATE, enc()).isEmpty());
+        assertTrue(find(con(0x42)).eval(PARSE_STATE, enc()).isEmpty());
+    }
+
+    @Test
+    public void findAsUntilSize() {
+        final Token token =
+            seq(def("start", con(2)),
+                until("data", sub(first(find(con(0xff, 0xd9))), CURRENT_OFFSET), def("end", con(2), eq(con(0xff, 0xd9)))),
+                def("rest", con(1)));
+        final Optional<ParseState> result = token.parse(env(PARSE_STATE));
+        assertTrue(result.isPresent());
+        assertEquals(4, getValue(result.get().order, "data").length().intValueExact());
+        assertEquals(2, getValue(result.get().order, "rest").asNumeric().intValueExact());
+    }
+
+    @Test
+    public void findAsSubAddress() {
+        final Optional<ParseState> result =
+            seq(def("header", con(1)),
+                sub(def("marker", con(3)), find(con(0xff, 0xd9)))).parse(env(PARSE_STATE));
+        assertTrue(result.isPresent());
+        final ImmutableList<ParseValue> markers = getAllValues(result.get().order, "marker");
+        assertEquals(2, markers.size);
+        assertEquals(1, markers.head.slice().offset.intValueExact());
+        assertEquals(6, markers.tail.head.slice().offset.intValueExact());
+        assertEquals(2, markers.tail.head.value()[2]);
+    }
+
+    @Test
+    public void toStringWithSize() {
+        assertEquals("Find(Const(0x01))", find(con(1)).toString());
+        assertEquals("Find(Const(0x01),Const(0x02))", find(con(1), con(2)).toString());
+    }
+
+}
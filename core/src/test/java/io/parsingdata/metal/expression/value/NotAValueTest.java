@@ -48,6 +48,13 @@ public class NotAValueTest {
         NOT_A_VALUE.value();
     }
 
+    @Test
+    public void getBuffer() {
+        thrown.expect(UnsupportedOperationException.class);
+        thrown.expectMessage("NOT_A_VALUE does not support any Value operation.");
+        NOT_A_VALUE.buffer();
+    }
+
     @Test
     public void getLength() {
         thrown.expect(UnsupportedOperationException.class);
@@ -144,6 +144,29 @@ public class NthExpressionTest {
         }
     }
 
+    @Test
+    public void testManyValuesManyIndices() {
+        // 100 values = [0, 1, ..., 99], 100 indices = [99, 98, ..., 0], result = [99, 98, ..., 0]
+        final int[] data = new int[202];
+        data[0] = 100;
+        data[101] = 100;
+        for (int i = 0; i < 100; i++) {
+            data[1 + i] = i;
+            data[102 + i] = 99 - i;
+        }
+        final ImmutableList<Value> values = makeList(stream(data));
+        assertEquals(100, values.size);
+        checkRange(values, 0);
+    }
+
+    private void checkRange(final ImmutableList<Value> values, final int expected) {
+        if (values.isEmpty()) {
+            return;
+        }
+        assertEquals(expected, values.head.asNumeric().intValueExact());
+        checkRange(values.tail, expected + 1);
+    }
+
     private ImmutableList<Value> makeList(final ParseState parseState) {
         final Optional<ParseState> result = format.parse(env(parseState, signed()));
         assertTrue(result.isPresent());
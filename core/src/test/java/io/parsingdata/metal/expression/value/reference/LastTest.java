@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.expression.value.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.expression.value.reference.Ref.DefinitionRef;
+import io.parsingdata.metal.expression.value.reference.Ref.NameRef;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class LastTest {
+
+    private static final int VALUE_COUNT = 5000;
+
+    private final Token value = def("value", con(1));
+
+    private ParseState parseValues() {
+        final byte[] data = new byte[VALUE_COUNT];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final Optional<ParseState> result = rep(value).parse(env(createFromByteStream(new InMemoryByteStream(data)), enc()));
+        assertTrue(result.isPresent());
+        return result.get();
+    }
+
+    @Test
+    public void lastByName() {
+        final ParseState parseState = parseValues();
+        assertEquals((VALUE_COUNT - 1) & 0xFF, last(ref("value")).evalSingle(parseState, enc()).get().asNumeric().intValueExact());
+    }
+
+    @Test
+    public void lastByDefinition() {
+        final ParseState parseState = parseValues();
+        assertEquals((VALUE_COUNT - 1) & 0xFF, last(ref(value)).evalSingle(parseState, enc()).get().asNumeric().intValueExact());
+    }
+
+    @Test
+    public void lastNotFound() {
+        assertFalse(last(ref("other")).evalSingle(parseValues(), enc()).isPresent());
+        assertFalse(last(ref("value")).evalSingle(stream(1, 2), enc()).isPresent());
+    }
+
+    @Test
+    public void lastIgnoresLimit() {
+        assertEquals(new Last(new NameRef("value")), last(ref("value", con(2))));
+        assertEquals(new Last(new DefinitionRef(value)), last(ref(value, con(2))));
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.find;
+import static io.parsingdata.metal.Shorthand.first;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.scan;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Shorthand.until;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.token.Budget.UNLIMITED;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class BatchParserTest {
+
+    // Uses the tokens and expressions that cache data derived from their definition.
+    private static final Token RECORD =
+        seq("record",
+            def("magic", 2, eq(con(0xca, 0xfe))),
+            def("size", 1),
+            def("data", last(ref("size"))),
+            tie(rep(def("nibble", 1)), last(ref("data"))),
+            scan("text", ltNum(con(0x80))),
+            until("body", def("end", 1, eq(con(0xff)))),
+            cho(def("one", 1, eq(con(1))), def("two", 1, eq(con(2)))),
+            sub(def("marker", 1), first(find(con(0xca, 0xfe)))));
+    private static final Token FORMAT = rep("records", RECORD);
+
+    private static InMemoryByteStream input(final int seed) {
+        final Random random = new Random(seed);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int record = random.nextInt(4) + 1; record > 0; record--) {
+            output.write(0xca);
+            output.write(0xfe);
+            final int size = random.nextInt(32);
+            output.write(size);
+            for (int i = 0; i < size; i++) {
+                output.write(random.nextInt(256));
+            }
+            for (int i = random.nextInt(16); i > 0; i--) {
+                output.write(random.nextInt(0x80));
+            }
+            output.write(0x80);
+            for (int i = random.nextInt(16); i > 0; i--) {
+                output.write(random.nextInt(0xff));
+            }
+            output.write(0xff);
+            output.write(random.nextInt(2) + 1);
+        }
+        return new InMemoryByteStream(output.toByteArray());
+    }
+
+    private static List<InMemoryByteStream> inputs(final int count) {
+        final List<InMemoryByteStream> inputs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            inputs.add(input(i));
+        }
+        return inputs;
+    }
+
+    @Test
+    public void sameResultsAsSequential() {
+        final List<InMemoryByteStream> inputs = inputs(400);
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            // A new token is used, so that its caches are populated concurrently.
+            final Token format = rep("records", RECORD);
+            final List<Optional<ParseState>> results = new BatchParser(format, enc(), executor).parseAll(inputs);
+            assertEquals(inputs.size(), results.size());
+            for (int i = 0; i < inputs.size(); i++) {
+                final Optional<ParseState> expected = FORMAT.parse(new Environment(createFromByteStream(inputs.get(i)), enc()));
+                assertTrue(expected.isPresent());
+                assertEquals(expected, results.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void budgetPerInput() {
+        final List<InMemoryByteStream> inputs = inputs(10);
+        final List<Budget> budgets = new ArrayList<>();
+        final Supplier<Budget> supplier = () -> {
+            final Budget budget = new Budget(UNLIMITED, UNLIMITED, UNLIMITED, null);
+            synchronized (budgets) {
+                budgets.add(budget);
+            }
+            return budget;
+        };
+        final List<Optional<ParseState>> results = new BatchParser(FORMAT, enc(), ForkJoinPool.commonPool(), supplier).parseAll(inputs);
+        assertEquals(10, budgets.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertTrue(results.get(i).isPresent());
+            assertTrue(budgets.get(i).getTokens() > 0);
+        }
+    }
+
+    @Test
+    public void budgetExceeded() {
+        try {
+            new BatchParser(FORMAT, enc(), Runnable::run, () -> new Budget(10, UNLIMITED, UNLIMITED, null)).parseAll(inputs(2));
+            fail("Expected the budget to be exceeded.");
+        } catch (final CompletionException exception) {
+            assertTrue(exception.getCause() instanceof BudgetExceededException);
+        }
+    }
+
+    @Test
+    public void submit() {
+        final BatchParser parser = new BatchParser(RECORD, enc(), Runnable::run);
+        assertTrue(parser.submit(input(1)).join().isPresent());
+        assertFalse(parser.submit(new InMemoryByteStream(new byte[] { 1 })).join().isPresent());
+    }
+
+    @Test
+    public void equality() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Supplier<Budget> budgets = () -> Budget.NONE;
+            final BatchParser parser = new BatchParser(FORMAT, enc(), executor, budgets);
+            assertEquals(parser, new BatchParser(FORMAT, enc(), executor, budgets));
+            assertEquals(parser.hashCode(), new BatchParser(FORMAT, enc(), executor, budgets).hashCode());
+            assertNotEquals(parser, new BatchParser(RECORD, enc(), executor, budgets));
+            assertNotEquals(parser, new BatchParser(FORMAT, enc(), Runnable::run, budgets));
+            assertTrue(parser.toString().startsWith("BatchParser(" + FORMAT + "," + enc() + ","));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
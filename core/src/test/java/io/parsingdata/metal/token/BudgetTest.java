@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.until;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.token.Budget.UNLIMITED;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class BudgetTest {
+
+    private static final Token ZEROES = rep("zeroes", def("zero", 1, eq(con(0))));
+    private static final Token BACKTRACKING =
+        cho(seq(ZEROES, def("end", 1, eq(con(1)))),
+            seq(ZEROES, def("end", 1, eq(con(2)))),
+            seq(ZEROES, def("end", 1, eq(con(3)))));
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private static ParseState zeroes(final int count, final int end) {
+        final byte[] data = new byte[count + 1];
+        data[count] = (byte) end;
+        return createFromByteStream(new InMemoryByteStream(data));
+    }
+
+    private static void checkExceeded(final Token token, final ParseState parseState, final Budget budget, final Budget.Limit limit) {
+        try {
+            token.parse(env(parseState).withBudget(budget));
+            fail("Expected the budget to be exceeded.");
+        } catch (final BudgetExceededException exception) {
+            assertEquals(limit, exception.limit);
+        }
+    }
+
+    @Test
+    public void withinBudget() {
+        final Budget budget = new Budget(100, 100, 100, Duration.ofMinutes(1));
+        final Optional<ParseState> result = BACKTRACKING.parse(env(zeroes(3, 3)).withBudget(budget));
+        assertEquals(BACKTRACKING.parse(env(zeroes(3, 3))), result);
+        assertTrue(budget.getTokens() > 0);
+        // Each alternative reads the three zeroes, the byte that ends the repetition and that byte again as its end.
+        assertEquals(15, budget.getBytes());
+        assertEquals(7, budget.getBacktracks());
+    }
+
+    @Test
+    public void mismatchWithinBudget() {
+        final Budget budget = new Budget(100, 100, 100, null);
+        assertFalse(BACKTRACKING.parse(env(zeroes(3, 4)).withBudget(budget)).isPresent());
+    }
+
+    @Test
+    public void tokensExceeded() {
+        checkExceeded(ZEROES, zeroes(100, 1), new Budget(50, UNLIMITED, UNLIMITED, null), Budget.Limit.TOKENS);
+    }
+
+    @Test
+    public void bytesExceeded() {
+        checkExceeded(ZEROES, zeroes(100, 1), new Budget(UNLIMITED, 50, UNLIMITED, null), Budget.Limit.BYTES);
+    }
+
+    @Test
+    public void backtracksExceeded() {
+        checkExceeded(BACKTRACKING, zeroes(10, 4), new Budget(UNLIMITED, UNLIMITED, 5, null), Budget.Limit.BACKTRACKS);
+    }
+
+    @Test
+    public void timeExceeded() {
+        checkExceeded(ZEROES, zeroes(10000, 1), new Budget(UNLIMITED, UNLIMITED, UNLIMITED, Duration.ZERO), Budget.Limit.TIME);
+    }
+
+    @Test
+    public void untilChargesEachByteOnce() {
+        // Every attempted size only charges the bytes it adds, besides the byte the terminator reads.
+        final Token token =
+            seq(def("marker", 1),
+                until("data", def("end", 1, eq(last(ref("marker"))))));
+        final byte[] data = new byte[10000];
+        data[0] = 1;
+        data[9999] = 1;
+        final Budget budget = new Budget(UNLIMITED, 20000, UNLIMITED, null);
+        assertTrue(token.parse(env(createFromByteStream(new InMemoryByteStream(data))).withBudget(budget)).isPresent());
+        assertEquals(1 + 9998 + 9999, budget.getBytes());
+        data[9999] = 0;
+        checkExceeded(token, createFromByteStream(new InMemoryByteStream(data)), new Budget(UNLIMITED, 10000, UNLIMITED, null), Budget.Limit.BYTES);
+    }
+
+    @Test
+    public void noneIsUnlimited() {
+        assertTrue(ZEROES.parse(env(zeroes(1000, 1)).withBudget(Budget.NONE)).isPresent());
+        assertEquals(0, Budget.NONE.getTokens());
+        assertEquals("Budget(NONE)", Budget.NONE.toString());
+    }
+
+    @Test
+    public void exceptionMessage() {
+        thrown.expect(BudgetExceededException.class);
+        thrown.expectMessage("Parse budget exceeded (limit=TOKENS;maximum=1).");
+        seq(def("a", 1), def("b", 1)).parse(env(stream(1, 2)).withBudget(new Budget(1, UNLIMITED, UNLIMITED, null)));
+    }
+
+    @Test
+    public void negativeLimit() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument maxBytes may not be negative.");
+        new Budget(1, -1, 1, null);
+    }
+
+    @Test
+    public void negativeTimeout() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument timeout may not be negative.");
+        new Budget(1, 1, 1, Duration.ofSeconds(-1));
+    }
+
+}
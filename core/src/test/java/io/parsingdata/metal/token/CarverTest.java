@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static java.math.BigInteger.ONE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class CarverTest {
+
+    private static final Token RECORD =
+        seq("record",
+            def("magic", con(2), eq(con(0xca, 0xfe))),
+            def("size", con(1), ltNum(con(8))),
+            def("data", last(ref("size"))));
+    private static final Token MARKER =
+        seq("marker",
+            def("tag", con(3), eq(con(0xca, 0xfe, 0xff))),
+            def("flags", con(1)));
+
+    @Rule public final ExpectedException thrown = ExpectedException.none();
+
+    private static String describe(final ImmutableList<Carver.Match> matches) {
+        final StringBuilder result = new StringBuilder();
+        for (ImmutableList<Carver.Match> remaining = matches; !remaining.isEmpty(); remaining = remaining.tail) {
+            result.append(" ").append(remaining.head.token.name).append("@").append(remaining.head.offset).append("-").append(remaining.head.parseState.offset);
+        }
+        return result.toString().trim();
+    }
+
+    @Test
+    public void carveSortedByOffset() throws IOException {
+        final byte[] data = toByteArray(0, 0xca, 0xfe, 2, 1, 2, 0xca, 0xfe, 0xff, 0xca, 0xfe, 9, 0xca, 0xfe, 0, 0xca);
+        final Carver carver = new Carver(enc(), MARKER, RECORD);
+        assertEquals("record@1-6 marker@6-10 record@12-15", describe(carver.carve(new InMemoryByteStream(data))));
+    }
+
+    @Test
+    public void carveFromRandomData() throws IOException {
+        final byte[] data = new byte[200000];
+        new Random(1).nextBytes(data);
+        for (int i = 0; i < data.length - 1; i++) {
+            if ((data[i] & 0xff) == 0xca && (data[i + 1] & 0xff) == 0xfe) {
+                data[i + 1] = 0;
+            }
+        }
+        final int[] offsets = { 5, 70000, 131070, 199990 };
+        for (final int offset : offsets) {
+            System.arraycopy(toByteArray(0xca, 0xfe, 3, 1, 2, 3), 0, data, offset, 6);
+        }
+        final ImmutableList<Carver.Match> matches = new Carver(enc(), RECORD).carve(new InMemoryByteStream(data));
+        assertEquals((long) offsets.length, matches.size);
+        ImmutableList<Carver.Match> remaining = matches;
+        for (int i = 0; i < offsets.length; i++, remaining = remaining.tail) {
+            assertEquals(BigInteger.valueOf(offsets[i]), remaining.head.offset);
+            assertEquals(BigInteger.valueOf(offsets[i] + 6), remaining.head.parseState.offset);
+        }
+    }
+
+    @Test
+    public void carveMoreCandidatesThanTasks() throws IOException {
+        final int groups = Carver.MAX_TASKS;
+        final byte[] data = new byte[groups * 8];
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < groups; i++) {
+            // A marker and a failing record at the same offset, followed by a record.
+            System.arraycopy(toByteArray(0xca, 0xfe, 0xff, 0, 0xca, 0xfe, 1, 7), 0, data, i * 8, 8);
+            expected.append(" marker@").append(i * 8).append("-").append(i * 8 + 4).append(" record@").append(i * 8 + 4).append("-").append(i * 8 + 8);
+        }
+        final Carver carver = new Carver(enc(), MARKER, RECORD);
+        final List<Carver.Match> streamed = new ArrayList<>();
+        carver.carve(new InMemoryByteStream(data), streamed::add);
+        final ImmutableList<Carver.Match> matches = carver.carve(new InMemoryByteStream(data));
+        assertEquals(expected.toString().trim(), describe(matches));
+        assertEquals(ImmutableList.create(streamed.toArray(new Carver.Match[0])), matches);
+    }
+
+    @Test
+    public void tokenWithoutSignature() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Token unsigned does not start with a signature.");
+        new Carver(enc(), RECORD, seq("unsigned", def("size", con(1)), def("magic", con(1), eq(con(1)))));
+    }
+
+    @Test
+    public void noTokens() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Argument tokens may not be empty.");
+        new Carver(enc());
+    }
+
+    @Test
+    public void equality() throws IOException {
+        final Carver carver = new Carver(enc(), RECORD, MARKER);
+        assertEquals(carver, new Carver(enc(), RECORD, MARKER));
+        assertEquals(carver.hashCode(), new Carver(enc(), RECORD, MARKER).hashCode());
+        assertNotEquals(carver, new Carver(enc(), MARKER, RECORD));
+        final ImmutableList<Carver.Match> matches = carver.carve(new InMemoryByteStream(toByteArray(0xca, 0xfe, 0xff, 0)));
+        assertEquals(1, matches.size);
+        assertEquals("Match(marker@0;4)", matches.head.toString());
+        assertEquals(matches.head, carver.carve(new InMemoryByteStream(toByteArray(0xca, 0xfe, 0xff, 0))).head);
+        assertNotEquals(matches.head, new Carver.Match(MARKER, ONE, matches.head.parseState));
+    }
+
+}
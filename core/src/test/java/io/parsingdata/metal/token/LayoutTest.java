@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static java.math.BigInteger.ZERO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.post;
+import static io.parsingdata.metal.Shorthand.pre;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.Shorthand.until;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class LayoutTest {
+
+    private static final Token HEADER =
+        seq("header",
+            def("signature", con(4), eq(con(0x50, 0x4b, 0x03, 0x04))),
+            def("version", con(2)),
+            post(def("flags", con(2)), eq(con(0, 0))),
+            repn(def("reserved", con(1)), con(3)),
+            cho(def("small", con(1)), def("large", con(1))),
+            def("crc", con(4)));
+
+    private static void checkSize(final Token token, final int minimum, final Integer maximum) {
+        final Layout layout = Layout.of(token);
+        assertEquals(BigInteger.valueOf(minimum), layout.minimumSize);
+        assertEquals(Optional.ofNullable(maximum).map(BigInteger::valueOf), layout.getMaximumSize());
+        assertEquals(maximum != null && maximum == minimum, layout.isFixed());
+    }
+
+    @Test
+    public void fixedLayout() {
+        final Layout layout = Layout.of(HEADER);
+        assertEquals(Optional.of(BigInteger.valueOf(16)), layout.getFixedSize());
+        assertEquals(4, layout.fields.size);
+        assertEquals("header.signature", layout.fields.head.name);
+        assertEquals(ZERO, layout.fields.head.offset);
+        assertEquals(BigInteger.valueOf(4), layout.getField("header.version").get().offset);
+        assertEquals(BigInteger.valueOf(6), layout.getField("header.flags").get().offset);
+        assertEquals(BigInteger.valueOf(12), layout.getField("header.crc").get().offset);
+        assertEquals(BigInteger.valueOf(4), layout.getField("header.crc").get().size);
+        assertFalse(layout.getField("header.reserved").isPresent());
+        assertFalse(layout.getField("header.small").isPresent());
+    }
+
+    @Test
+    public void variableLayout() {
+        final Token token = seq(def("a", con(2)), def("size", con(1)), def("data", last(ref("size"))), def("b", con(1)));
+        checkSize(token, 4, null);
+        final Layout layout = Layout.of(token);
+        assertEquals(2, layout.fields.size);
+        assertEquals(BigInteger.valueOf(2), layout.getField("size").get().offset);
+        assertFalse(layout.getField("b").isPresent());
+    }
+
+    @Test
+    public void sizes() {
+        checkSize(def("a", con(3)), 3, 3);
+        checkSize(def("a", last(ref("b"))), 0, null);
+        checkSize(cho(def("a", con(1)), seq(def("b", con(2)), def("c", con(3)))), 1, 5);
+        checkSize(repn(def("a", con(2)), con(4)), 8, 8);
+        checkSize(repn(def("a", con(2)), last(ref("n"))), 0, null);
+        checkSize(repn(sub(def("a", con(2)), con(0)), last(ref("n"))), 0, 0);
+        checkSize(rep(def("a", con(2))), 0, null);
+        checkSize(opt(def("a", con(2))), 0, 2);
+        checkSize(pre(def("a", con(2)), eq(con(1))), 2, 2);
+        checkSize(until("a", def("b", con(2))), 2, null);
+        checkSize(sub(def("a", con(10)), con(0)), 0, 0);
+    }
+
+    @Test
+    public void tokenReferences() {
+        checkSize(seq("outer", def("a", con(1)), sub(token("outer"), con(0)), def("b", con(1))), 2, 2);
+        checkSize(seq(def("a", con(1)), cho(def("b", con(1)), seq("nested", def("c", con(2)), def("d", con(2)))), token("nested")), 6, 9);
+        final Token recursive = seq("list", def("a", con(1)), cho(def("end", con(1), eq(con(0))), token("list")));
+        checkSize(recursive, 1, null); // The recursive reference itself is assumed to have a minimum size of zero.
+        checkSize(seq(def("a", con(1)), token("unknown")), 1, null);
+        checkSize(seq(seq("x", def("a", con(1)), def("b", con(1))), def("x", con(1)), token("x")), 3, null);
+    }
+
+    @Test
+    public void valueIndependence() {
+        assertTrue(Layout.of(HEADER).valueIndependent);
+        assertTrue(Layout.of(rep(def("a", con(1), eq(con(0))))).valueIndependent);
+        assertTrue(Layout.of(until("a", def("b", con(2), eq(con(0, 0))))).valueIndependent);
+        assertFalse(Layout.of(seq(def("size", con(1)), def("data", last(ref("size"))))).valueIndependent);
+        assertFalse(Layout.of(seq(def("a", con(1)), def("b", con(1), eq(last(ref("a")))))).valueIndependent);
+        assertFalse(Layout.of(post(def("a", con(0)), eq(con(0)))).valueIndependent);
+        assertFalse(Layout.of(pre(def("a", con(1)), eq(con(1)))).valueIndependent);
+        assertFalse(Layout.of(repn(def("a", con(1)), last(ref("n")))).valueIndependent);
+        assertFalse(Layout.of(seq("list", def("a", con(1)), opt(token("list")))).valueIndependent);
+    }
+
+    @Test
+    public void isAvailable() {
+        final Layout layout = Layout.of(seq(def("a", con(2)), def("b", con(2))));
+        assertTrue(layout.isAvailable(stream(1, 2, 3, 4)));
+        assertFalse(layout.isAvailable(stream(1, 2, 3)));
+        assertFalse(layout.isAvailable(stream(1, 2, 3, 4).seek(BigInteger.ONE).get()));
+    }
+
+    @Test
+    public void equality() {
+        assertEquals(Layout.of(HEADER), Layout.of(HEADER));
+        assertEquals(Layout.of(HEADER).hashCode(), Layout.of(HEADER).hashCode());
+        assertNotEquals(Layout.of(HEADER), Layout.of(def("a", con(1))));
+        assertEquals(Layout.of(HEADER).fields.head, Layout.of(HEADER).fields.head);
+        assertNotEquals(Layout.of(HEADER).fields.head, Layout.of(HEADER).fields.tail.head);
+        assertEquals("Layout(Def(a,Const(0x01));minimumSize=1;maximumSize=1;fields=>Field(a@0:1);valueIndependent=true)", Layout.of(def("a", con(1))).toString());
+        assertEquals("Layout(Rep(Def(a,Const(0x01)));minimumSize=0;maximumSize=unbounded;fields=;valueIndependent=true)", Layout.of(rep(def("a", con(1)))).toString());
+    }
+
+}
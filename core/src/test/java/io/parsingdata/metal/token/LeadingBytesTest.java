@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.and;
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.toByteArray;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.signed;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callback;
+import io.parsingdata.metal.data.callback.Callbacks;
+import io.parsingdata.metal.expression.Expression;
+
+public class LeadingBytesTest {
+
+    private static void checkMatches(final LeadingBytes leadingBytes, final boolean expected, final int... data) {
+        assertEquals(expected, leadingBytes.matches(toByteArray(data), data.length));
+    }
+
+    @Test
+    public void singleByteEvaluatedForAllValues() {
+        final LeadingBytes leadingBytes = LeadingBytes.of(def("a", 1, and(gtNum(con(1)), not(eq(con(3))))), enc());
+        assertEquals(1, leadingBytes.length());
+        assertTrue(leadingBytes.complete);
+        checkMatches(leadingBytes, false, 1);
+        checkMatches(leadingBytes, true, 2);
+        checkMatches(leadingBytes, false, 3);
+        checkMatches(leadingBytes, true, 255);
+    }
+
+    @Test
+    public void singleByteUsesEncoding() {
+        final LeadingBytes leadingBytes = LeadingBytes.of(def("a", 1, ltNum(con(0))), signed());
+        checkMatches(leadingBytes, false, 0);
+        checkMatches(leadingBytes, false, 127);
+        checkMatches(leadingBytes, true, 128);
+    }
+
+    @Test
+    public void sequenceOfConstants() {
+        final LeadingBytes leadingBytes = LeadingBytes.of(seq(def("a", 2, eq(con(1, 2))), def("b", 1), def("c", 1, eq(con(4))), rep(def("d", 1))), enc());
+        assertEquals(4, leadingBytes.length());
+        assertFalse(leadingBytes.complete);
+        checkMatches(leadingBytes, true, 1, 2, 0, 4);
+        checkMatches(leadingBytes, true, 1, 2, 3, 4, 5);
+        checkMatches(leadingBytes, false, 1, 3, 3, 4);
+        checkMatches(leadingBytes, false, 1, 2, 3, 5);
+        checkMatches(leadingBytes, false, 1, 2, 3);
+    }
+
+    @Test
+    public void choiceOfConstants() {
+        final LeadingBytes leadingBytes = LeadingBytes.of(cho(def("a", 2, eq(con(1, 2))), seq(def("b", 1, eq(con(3))), def("c", 1, eq(con(4))), def("d", 1))), enc());
+        assertEquals(2, leadingBytes.length());
+        assertFalse(leadingBytes.complete);
+        checkMatches(leadingBytes, true, 1, 2);
+        checkMatches(leadingBytes, true, 3, 4);
+        checkMatches(leadingBytes, true, 1, 4);
+        checkMatches(leadingBytes, false, 2, 2);
+        checkMatches(leadingBytes, false, 1, 3);
+        assertEquals(1, LeadingBytes.of(cho(def("a", 2, eq(con(1, 2))), def("b", 1, eq(con(3)))), enc()).length());
+    }
+
+    @Test
+    public void unknownLeadingBytes() {
+        assertEquals(0, LeadingBytes.of(rep(def("a", 1, eq(con(1)))), enc()).length());
+        assertEquals(0, LeadingBytes.of(seq(sub(def("a", 1, eq(con(1))), con(4)), def("b", 1)), enc()).length());
+        assertEquals(1, LeadingBytes.of(seq(sub(def("a", 1), con(4)), def("b", 1, eq(con(1)))), enc()).length());
+        checkMatches(LeadingBytes.of(def("a", 1, eq(con(1, 2))), enc()), false, 1);
+        checkMatches(LeadingBytes.of(def("a", 2, eq(con(1))), enc()), false, 1, 0);
+    }
+
+    @Test
+    public void search() {
+        final LeadingBytes.Search constant = LeadingBytes.of(def("a", 3, eq(con(1, 2, 3))), enc()).search();
+        final byte[] data = toByteArray(1, 2, 1, 2, 3, 0, 1, 2, 3);
+        assertEquals(2, constant.find(data, data.length, data.length, 1));
+        assertEquals(6, constant.find(data, data.length, data.length, 3));
+        assertEquals(-1, constant.find(data, 2, data.length, 1));
+        assertEquals(-1, constant.find(data, data.length, 4, 1));
+        final LeadingBytes.Search wildcard = LeadingBytes.of(seq(def("a", 1, eq(con(2))), def("b", 1), def("c", 1, eq(con(0)))), enc()).search();
+        assertEquals(3, wildcard.find(data, data.length, data.length, 1));
+        assertEquals(0, LeadingBytes.of(rep(def("a", 1, eq(con(1)))), enc()).search().length);
+    }
+
+    @Test
+    public void choSkipsAlternatives() {
+        final AtomicInteger evaluations = new AtomicInteger();
+        final Expression counting = (parseState, encoding) -> evaluations.incrementAndGet() > 0;
+        final Token choice = cho(def("a", 1, and(counting, eq(con(1)))), def("b", 1, eq(con(2))));
+        final Optional<ParseState> result = choice.parse(env(stream(2)));
+        assertTrue(result.isPresent());
+        assertEquals(0, evaluations.get());
+        assertEquals(result, choice.parse(env(stream(2), Callbacks.create().add(new Callback() {
+            @Override public void handleSuccess(final Token token, final ParseState before, final ParseState after) {}
+            @Override public void handleFailure(final Token token, final ParseState before) {}
+        }), enc())));
+        assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    public void choAtEndOfInput() {
+        final Token choice = cho(def("a", 2, eq(con(1, 2))), def("b", 1, eq(con(1))), def("c", 0));
+        final Optional<ParseState> result = choice.parse(env(stream(1)));
+        assertTrue(result.isPresent());
+        assertEquals(1, result.get().offset.intValueExact());
+        assertTrue(choice.parse(env(stream())).isPresent());
+        assertEquals(0, choice.parse(env(stream())).get().offset.intValueExact());
+    }
+
+    @Test
+    public void signaturesOfRestrictedPrefix() {
+        final LeadingBytes leadingBytes = LeadingBytes.of(seq(def("a", 2, eq(con(1, 2))), def("b", 1, ltNum(con(2))), def("c", 1, ltNum(con(3))), def("d", 1, eq(con(4)))), enc());
+        final List<byte[]> signatures = leadingBytes.signatures(4);
+        assertEquals(2, signatures.size());
+        assertArrayEquals(toByteArray(1, 2, 0), signatures.get(0));
+        assertArrayEquals(toByteArray(1, 2, 1), signatures.get(1));
+        assertEquals(6, leadingBytes.signatures(6).size());
+        assertEquals(1, leadingBytes.signatures(1).size());
+    }
+
+    @Test
+    public void signaturesOfUnrestrictedStart() {
+        assertTrue(LeadingBytes.of(seq(def("a", 1), def("b", 1, eq(con(1)))), enc()).signatures(256).isEmpty());
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.until;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EncodingFactory.le;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callback;
+import io.parsingdata.metal.data.callback.Callbacks;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class MemoTableTest {
+
+    private static final Token ZEROES = rep("zeroes", def("zero", 1, eq(con(0))));
+    private static final Token BACKTRACKING =
+        cho(seq(ZEROES, def("end", 1, eq(con(1)))),
+            seq(ZEROES, def("end", 1, eq(con(2)))),
+            seq(ZEROES, def("end", 1, eq(con(3)))));
+
+    private static class CountingByteStream extends InMemoryByteStream {
+
+        int reads;
+
+        CountingByteStream(final byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public byte[] read(final BigInteger offset, final int length) throws IOException {
+            reads++;
+            return super.read(offset, length);
+        }
+
+    }
+
+    private static Optional<ParseState> checkSameResult(final Token token, final ParseState parseState) {
+        final MemoTable memo = new MemoTable();
+        final Optional<ParseState> expected = token.parse(env(parseState));
+        assertEquals(expected, token.parse(env(parseState).withMemo(memo)));
+        assertEquals(expected, token.parse(env(parseState).withMemo(memo)));
+        return expected;
+    }
+
+    @Test
+    public void backtrackingParsesOnce() {
+        final byte[] data = new byte[101];
+        data[100] = 3;
+        final CountingByteStream plain = new CountingByteStream(data);
+        final Optional<ParseState> expected = BACKTRACKING.parse(env(createFromByteStream(plain)));
+        final CountingByteStream memoized = new CountingByteStream(data);
+        final MemoTable memo = new MemoTable();
+        final Environment environment = env(createFromByteStream(memoized)).withMemo(memo);
+        final Optional<ParseState> result = BACKTRACKING.parse(environment);
+        assertTrue(result.isPresent());
+        assertEquals(expected.get().order, result.get().order);
+        assertEquals(expected.get().offset, result.get().offset);
+        assertTrue(memoized.reads * 2 < plain.reads);
+        assertTrue(memo.size() > 0);
+    }
+
+    @Test
+    public void sameResults() {
+        checkSameResult(BACKTRACKING, stream(0, 0, 3));
+        checkSameResult(BACKTRACKING, stream(0, 0, 4));
+        checkSameResult(BACKTRACKING, stream());
+        checkSameResult(seq(repn(seq(def("a", 1), def("b", 2, eq(con(1, 2)))), con(2)), ZEROES), stream(0, 1, 2, 0, 1, 2, 0, 0));
+        checkSameResult(cho(until("text", def("term", 1, eq(con(0)))), def("other", 1)), stream(65, 66, 0));
+        checkSameResult(cho(seq("x", def("a", 2, ltNum(con(256)), le()), def("b", 0)), def("y", 1)), stream(0, 1, 0));
+    }
+
+    @Test
+    public void scopeIsPartOfKey() {
+        final Token inner = seq("inner", def("a", 1), def("b", 1, eq(con(2))));
+        final Token token = cho(seq("first", inner, def("c", 1, eq(con(0)))), seq("second", inner, def("c", 0)));
+        assertTrue(checkSameResult(token, stream(1, 2, 3)).get().order.getValues("second.inner.a").size == 1);
+    }
+
+    @Test
+    public void contextDependentTokensNotMemoized() {
+        final MemoTable memo = new MemoTable();
+        final Token token = seq(def("size", 1), def("data", last(ref("size"))));
+        assertEquals(token.parse(env(stream(1, 2))), token.parse(env(stream(1, 2)).withMemo(memo)));
+        assertEquals(0, memo.size());
+        final Token predicate = seq(def("a", 1), seq(def("b", 1, eq(last(ref("a")))), def("c", 0)));
+        assertEquals(predicate.parse(env(stream(1, 1))), predicate.parse(env(stream(1, 1)).withMemo(memo)));
+        assertEquals(0, memo.size());
+    }
+
+    @Test
+    public void notUsedWithCallbacks() {
+        final MemoTable memo = new MemoTable();
+        final Callbacks callbacks = Callbacks.create().add(new Callback() {
+            @Override public void handleSuccess(final Token token, final ParseState before, final ParseState after) {}
+            @Override public void handleFailure(final Token token, final ParseState before) {}
+        });
+        assertTrue(BACKTRACKING.parse(env(stream(0, 3), callbacks, enc()).withMemo(memo)).isPresent());
+        assertEquals(0, memo.size());
+        assertFalse(BACKTRACKING.parse(env(stream(0, 4)).withMemo(MemoTable.NONE)).isPresent());
+    }
+
+}
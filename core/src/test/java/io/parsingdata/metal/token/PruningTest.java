@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.TWO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.token.TokenCompiler.compile;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ParseGraph;
+import io.parsingdata.metal.data.ParseItem;
+import io.parsingdata.metal.data.ParsePlaceholder;
+import io.parsingdata.metal.data.ParseState;
+
+public class PruningTest {
+
+    private static final Token RECORD = seq("record", def("size", con(1)), def("data", last(ref("size"))));
+    private static final Token ENTRY = seq("entry", def("type", con(1)), RECORD);
+    private static final Token FILE = seq(rep(ENTRY), def("types", con(1), eq(count(ref("type")))));
+
+    private static List<ParsePlaceholder> getPlaceholders(final ParseGraph graph) {
+        final List<ParsePlaceholder> placeholders = new ArrayList<>();
+        for (ParseGraph current = graph; !current.isEmpty(); current = current.tail) {
+            final ParseItem item = current.head;
+            if (item.isPlaceholder()) {
+                placeholders.add(0, item.asPlaceholder());
+            } else if (item.isGraph()) {
+                placeholders.addAll(0, getPlaceholders(item.asGraph()));
+            }
+        }
+        return placeholders;
+    }
+
+    @Test
+    public void pruneRecords() {
+        // The predicate of types is only evaluated when it is parsed, so it can be pruned as well.
+        assertEquals(Set.of(RECORD, ((Seq) FILE).tokens.tail.head), Reachability.getPrunableTokens(FILE));
+        final ParseState parseState = stream(7, 2, 1, 2, 8, 1, 3, 2);
+        final Optional<ParseState> result = compile(FILE).withPruning().parse(env(parseState));
+        assertTrue(result.isPresent());
+        assertEquals(compile(FILE).parse(env(parseState)).get().offset, result.get().offset);
+        assertEquals(2, getAllValues(result.get().order, "type").size);
+        assertTrue(getAllValues(result.get().order, "size").isEmpty());
+        assertTrue(getAllValues(result.get().order, "data").isEmpty());
+        final List<ParsePlaceholder> placeholders = getPlaceholders(result.get().order);
+        assertEquals(List.of(new ParsePlaceholder(RECORD, ONE, BigInteger.valueOf(3)),
+                             new ParsePlaceholder(RECORD, BigInteger.valueOf(5), TWO),
+                             new ParsePlaceholder(((Seq) FILE).tokens.tail.head, BigInteger.valueOf(7), ONE)), placeholders);
+    }
+
+    @Test
+    public void pruneOutermost() {
+        final Token token = seq(def("count", con(1)), repn(RECORD, last(ref("count"))), def("footer", con(1), eq(con(0xff))));
+        // The records are pruned as well, so that the repetition does not keep them until it is done.
+        assertEquals(Set.of(RECORD, ((Seq) token).tokens.tail.head, ((Seq) token).tokens.tail.tail.head), Reachability.getPrunableTokens(token));
+        final Optional<ParseState> result = compile(token).withPruning().parse(env(stream(2, 1, 9, 2, 8, 8, 0xff)));
+        assertTrue(result.isPresent());
+        assertEquals(BigInteger.valueOf(7), result.get().offset);
+        assertEquals(1, getAllValues(result.get().order, "count").size);
+        assertEquals(2, getPlaceholders(result.get().order).size());
+        assertEquals(BigInteger.valueOf(5), getPlaceholders(result.get().order).get(0).length);
+    }
+
+    @Test
+    public void pruneNothing() {
+        final Token token = seq(rep(RECORD), def("last", last(ref("size"))));
+        assertTrue(Reachability.getPrunableTokens(token).isEmpty());
+        final ParseState parseState = stream(1, 1, 2, 2, 2, 2, 2);
+        assertEquals(compile(token).parse(env(parseState)), compile(token).withPruning().parse(env(parseState)));
+    }
+
+    @Test
+    public void pruneUnderOpenBranch() {
+        // An open branch with the name of a resolved reference disables the resolved references, but not the pruning.
+        final Token token = seq("outer", rep(ENTRY), def("types", con(1), eq(count(ref("type")))), token("outer"));
+        final Optional<ParseState> result = compile(FILE).withPruning().parse(env(stream(7, 1, 1, 1).addBranch(token)));
+        assertTrue(result.isPresent());
+        assertEquals(2, getPlaceholders(result.get().order).size());
+    }
+
+    @Test
+    public void placeholder() {
+        final ParsePlaceholder placeholder = new ParsePlaceholder(RECORD, ONE, TWO);
+        assertTrue(placeholder.isPlaceholder());
+        assertFalse(placeholder.isGraph());
+        assertEquals(RECORD, placeholder.getDefinition());
+        assertEquals("pph(@1;2)", placeholder.toString());
+        assertEquals(placeholder, new ParsePlaceholder(RECORD, ONE, TWO));
+        assertEquals(placeholder.hashCode(), new ParsePlaceholder(RECORD, ONE, TWO).hashCode());
+        assertNotEquals(placeholder, new ParsePlaceholder(ENTRY, ONE, TWO));
+        assertNotEquals(placeholder, new ParsePlaceholder(RECORD, TWO, TWO));
+        assertNotEquals(placeholder, new ParsePlaceholder(RECORD, ONE, ONE));
+    }
+
+    @Test
+    public void compiledEquality() {
+        final CompiledToken pruning = compile(FILE).withPruning();
+        assertEquals(pruning, compile(FILE).withPruning());
+        assertEquals(pruning.hashCode(), compile(FILE).withPruning().hashCode());
+        assertNotEquals(pruning, compile(FILE));
+        assertEquals("CompiledToken(" + FILE + ",pruning)", pruning.toString());
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.SELF;
+import static io.parsingdata.metal.Shorthand.add;
+import static io.parsingdata.metal.Shorthand.and;
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.count;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.exp;
+import static io.parsingdata.metal.Shorthand.find;
+import static io.parsingdata.metal.Shorthand.first;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.nth;
+import static io.parsingdata.metal.Shorthand.post;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.scope;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.tie;
+import static io.parsingdata.metal.Shorthand.token;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.encoding.Encoding;
+import io.parsingdata.metal.expression.value.Value;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.expression.value.reference.Ref;
+
+public class ReachabilityTest {
+
+    private static final Token SIZE = def("size", con(1));
+    private static final Token RECORD = seq("record", SIZE, def("data", last(ref("size"))));
+
+    @Test
+    public void selfContainedRecord() {
+        assertTrue(Reachability.isDroppable(rep(RECORD), RECORD));
+        assertTrue(Reachability.isDroppable(seq(def("header", con(1)), rep(RECORD), def("footer", con(1), eq(last(ref("header"))))), RECORD));
+        assertTrue(Reachability.isDroppable(RECORD, RECORD));
+    }
+
+    @Test
+    public void referencedByName() {
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), def("total", con(1), eq(count(ref("data"))))), RECORD));
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), def("more", last(ref("record.size")))), RECORD));
+        // Names are compared conservatively on their last segment.
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), def("more", last(ref("other.size")))), RECORD));
+    }
+
+    @Test
+    public void referencedByDefinition() {
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), def("more", last(ref(SIZE)))), RECORD));
+        assertTrue(Reachability.isDroppable(seq(rep(RECORD), def("more", last(ref(def("size", con(2)))))), RECORD));
+    }
+
+    @Test
+    public void referencesPreviousInstance() {
+        final Token first = seq("record", def("a", con(1)), def("b", con(1), eq(first(ref("a")))));
+        assertFalse(Reachability.isDroppable(rep(first), first));
+        final Token before = seq("record", def("b", con(1), eq(last(ref("a")))), def("a", con(1)));
+        assertFalse(Reachability.isDroppable(rep(before), before));
+        final Token optional = seq("record", cho(def("a", con(1), eq(con(1))), def("c", con(1))), def("b", last(ref("a"))));
+        assertFalse(Reachability.isDroppable(rep(optional), optional));
+        final Token repeated = seq("record", repn(def("a", con(1)), con(2)), def("b", last(ref("a"))));
+        assertTrue(Reachability.isDroppable(rep(repeated), repeated));
+        final Token either = seq("record", cho(def("a", con(1), eq(con(1))), post(def("a", con(1)), eq(con(2)))), def("b", last(ref("a"))));
+        assertTrue(Reachability.isDroppable(rep(either), either));
+    }
+
+    @Test
+    public void emptyDefinitionSize() {
+        final Token empty = seq("record", def("a", con(0)), def("b", last(ref("a"))));
+        assertFalse(Reachability.isDroppable(rep(empty), empty));
+    }
+
+    @Test
+    public void equalTokensAreDistinct() {
+        final Token record = seq("record", def("a", con(1)), def("b", last(ref("a"))));
+        final Token copy = seq("record", def("a", con(1)), def("b", last(ref("a"))));
+        assertTrue(Reachability.isDroppable(rep(record), record));
+        // The copy is analyzed as a token outside the record, so its reference to a may refer to the record.
+        assertFalse(Reachability.isDroppable(seq(record, copy), record));
+    }
+
+    @Test
+    public void selfContained() {
+        assertTrue(Reachability.isSelfContained(RECORD));
+        assertTrue(Reachability.isSelfContained(seq("record", def("count", con(1)), def("data", last(ref("outside"))))));
+        assertFalse(Reachability.isSelfContained(seq("record", def("data", con(1)), def("total", count(ref("data"))))));
+        assertFalse(Reachability.isSelfContained(seq("record", def("offset", con(1)), sub(def("target", con(1)), last(ref("offset"))))));
+        assertFalse(Reachability.isSelfContained(seq("record", def("data", con(1)), tie(def("inner", con(1)), last(ref("data"))))));
+        assertFalse(Reachability.isSelfContained(seq("record", def("data", con(1)), token("record"))));
+    }
+
+    @Test
+    public void subs() {
+        assertFalse(Reachability.isDroppable(rep(seq("record", def("offset", con(1)), sub(def("target", con(1)), last(ref("offset"))))), def("target", con(1))));
+        final Token withSub = seq("record", def("offset", con(1)), sub(def("target", con(1)), last(ref("offset"))));
+        assertFalse(Reachability.isDroppable(rep(withSub), withSub));
+        final Token target = seq("target", def("value", con(1)), def("more", con(1)));
+        assertFalse(Reachability.isDroppable(seq(rep(target), sub(target, con(0))), target));
+    }
+
+    @Test
+    public void tokenReferences() {
+        final Token recursive = seq("list", def("value", con(1)), cho(def("end", con(1), eq(con(0))), token("list")));
+        assertFalse(Reachability.isDroppable(recursive, recursive));
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), token("record")), RECORD));
+        assertTrue(Reachability.isDroppable(seq("outer", rep(RECORD), cho(def("end", con(1), eq(con(0))), token("outer"))), RECORD));
+    }
+
+    @Test
+    public void currentValue() {
+        final Token value = def("value", con(1));
+        assertFalse(Reachability.isDroppable(rep(post(value, eq(con(1)))), value));
+        final Token checked = post(value, eq(con(1)));
+        assertTrue(Reachability.isDroppable(rep(checked), checked));
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), post(rep(def("other", con(1))), eq(con(1)))), RECORD));
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), def("other", SELF)), RECORD));
+        assertTrue(Reachability.isDroppable(seq(rep(RECORD), def("other", con(1), eq(con(1)))), RECORD));
+    }
+
+    @Test
+    public void references() {
+        assertEquals(Optional.of(ImmutableList.create(new Ref<?>[] { ref("a"), ref(RECORD), ref("b") })),
+                     Reachability.getValueReferences(add(last(ref("a")), scope(count(ref(RECORD)), last(ref("b"))))));
+        assertEquals(Optional.of(ImmutableList.create(new Ref<?>[] { ref("a"), ref("b") })),
+                     Reachability.getPredicateReferences(and(eq(ref("a")), not(gtNum(SELF, nth(ref("b"), con(0)))))));
+        assertEquals(Optional.of(new ImmutableList<>()), Reachability.getValueReferences(con(1)));
+        assertEquals(Optional.of(ImmutableList.create(new Ref<?>[] { ref("a"), ref("b") })), Reachability.getValueReferences(find(ref("a"), last(ref("b")))));
+        final ValueExpression unknown = new ValueExpression() {
+            @Override
+            public ImmutableList<Value> eval(final ParseState parseState, final Encoding encoding) {
+                return new ImmutableList<>();
+            }
+        };
+        assertEquals(Optional.empty(), Reachability.getValueReferences(exp(unknown, con(1))));
+    }
+
+    @Test
+    public void unknownToken() {
+        final Token unknown = new Token("unknown", null) {
+            @Override
+            protected Optional<ParseState> parseImpl(final Environment environment) {
+                return Optional.of(environment.parseState);
+            }
+        };
+        assertFalse(Reachability.isDroppable(seq(rep(RECORD), unknown), RECORD));
+        assertTrue(Reachability.isDroppable(rep(RECORD), def("unused", con(1))));
+    }
+
+}
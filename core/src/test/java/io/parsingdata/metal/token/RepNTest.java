@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.prepn;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callback;
+import io.parsingdata.metal.data.callback.Callbacks;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class RepNTest {
+
+    private static void checkNullArgument(final Supplier<Token> constructor) {
+        try {
+            constructor.get();
+            fail("Should have thrown an IllegalArgumentException.");
+        }
+        catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().endsWith("may not be null."));
+        }
+    }
+
+    private static final Callbacks SEQUENTIAL = Callbacks.create().add(new Callback() {
+        @Override public void handleSuccess(final Token token, final ParseState before, final ParseState after) {}
+        @Override public void handleFailure(final Token token, final ParseState before) {}
+    });
+
+    private static final Token RECORD =
+        seq("record",
+            def("type", con(1), ltNum(con(3))),
+            cho(def("small", con(1), eq(con(0))),
+                def("large", con(1))),
+            repn(def("field", con(2)), con(2)));
+
+    private static ParseState input(final int records) {
+        return input(records, -1);
+    }
+
+    private static ParseState input(final int records, final int invalid) {
+        final byte[] data = new byte[records * 6 + 1];
+        for (int i = 0; i < records; i++) {
+            data[i * 6] = (byte) (i == invalid ? 3 : i % 3);
+            data[i * 6 + 1] = (byte) (i % 5 == 0 ? 0 : i % 255 + 1);
+            data[i * 6 + 2] = (byte) (i >> 8);
+            data[i * 6 + 3] = (byte) i;
+            data[i * 6 + 4] = (byte) (i >> 16);
+            data[i * 6 + 5] = (byte) (i * 13);
+        }
+        return createFromByteStream(new InMemoryByteStream(data));
+    }
+
+    private static void checkParallel(final Token token, final ParseState input) {
+        // Setting callbacks disables parallel parsing, which makes the parse graphs comparable since they share their definitions.
+        final Optional<ParseState> sequential = token.parse(env(input, SEQUENTIAL, enc()));
+        final Optional<ParseState> parallel = token.parse(env(input, enc()));
+        assertEquals(sequential.isPresent(), parallel.isPresent());
+        if (sequential.isPresent()) {
+            assertEquals(sequential.get().order, parallel.get().order);
+            assertEquals(sequential.get().offset, parallel.get().offset);
+        }
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        final int records = RepN.RECORDS_PER_TASK * 4 + 17;
+        final Token token = prepn(RECORD, con(records));
+        checkParallel(token, input(records));
+        final Optional<ParseState> result = token.parse(env(input(records), enc()));
+        assertEquals(records * 6, result.get().offset.intValueExact());
+        assertEquals(records, getAllValues(result.get().order, "type").size);
+        assertEquals(records * 2, getAllValues(result.get().order, "field").size);
+        assertEquals((records + 4) / 5, getAllValues(result.get().order, "small").size);
+    }
+
+    @Test
+    public void parallelFailsIfAnyRecordFails() {
+        final int records = RepN.RECORDS_PER_TASK * 3;
+        for (final int invalid : new int[] { 0, RepN.RECORDS_PER_TASK + 5, records - 1 }) {
+            assertFalse(prepn(RECORD, con(records)).parse(env(input(records, invalid), enc())).isPresent());
+        }
+        assertTrue(prepn(RECORD, con(records)).parse(env(input(records), enc())).isPresent());
+    }
+
+    @Test
+    public void parallelWithInsufficientData() {
+        checkParallel(prepn(RECORD, con(RepN.RECORDS_PER_TASK * 2)), input(RepN.RECORDS_PER_TASK * 2 - 1));
+    }
+
+    @Test
+    public void sequentialIfSizeDependsOnValues() {
+        final Token record = seq(def("size", con(1), ltNum(con(4))), def("data", last(ref("size"))));
+        checkParallel(seq(def("count", con(2)), prepn(record, last(ref("count")))), input(RepN.RECORDS_PER_TASK * 2));
+        checkParallel(prepn(seq(def("a", con(1)), def("b", con(1), not(eq(last(ref("a")))))), con(RepN.RECORDS_PER_TASK + 1)), input(RepN.RECORDS_PER_TASK));
+    }
+
+    @Test
+    public void parallelIsPartOfIdentity() {
+        final Token sequential = repn(def("a", con(1)), con(2));
+        final Token parallel = prepn(def("a", con(1)), con(2));
+        assertNotEquals(sequential, parallel);
+        assertNotEquals(sequential.hashCode(), parallel.hashCode());
+        assertEquals("RepN(Def(a,Const(0x01)),Const(0x02),parallel)", parallel.toString());
+    }
+
+    @Test
+    public void nullArguments() {
+        final Token token = def("a", con(1));
+        checkNullArgument(() -> new RepN(null, token, con(1), null));
+        checkNullArgument(() -> new RepN("name", null, con(1), null));
+        checkNullArgument(() -> new RepN("name", token, null, null));
+        checkNullArgument(() -> new RepN(null, token, con(1), null, true));
+        checkNullArgument(() -> new RepN("name", null, con(1), null, true));
+        checkNullArgument(() -> new RepN("name", token, null, null, true));
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.and;
+import static io.parsingdata.metal.Shorthand.cho;
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.eqNum;
+import static io.parsingdata.metal.Shorthand.gtNum;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.ltNum;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.or;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.scan;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.ImmutableList;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.ParseValue;
+import io.parsingdata.metal.expression.Expression;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class ScanTest {
+
+    private static final Expression NOT_MARKER = not(eq(con(0xff)));
+    private static final Expression ESCAPE = or(eq(con(0xff00)), and(gtNum(con(0xffcf)), ltNum(con(0xffd8))));
+    private static final Token JPEG_SCAN = scan("data", NOT_MARKER, 2, ESCAPE);
+
+    @Test
+    public void runWithEscapes() {
+        final Optional<ParseState> result = JPEG_SCAN.parse(env(stream(1, 2, 0xff, 0x00, 3, 0xff, 0xd0, 4, 0xff, 0xd9)));
+        assertTrue(result.isPresent());
+        assertEquals(8, result.get().offset.intValueExact());
+        final ImmutableList<ParseValue> values = getAllValues(result.get().order, "data");
+        assertEquals(1, values.size);
+        assertEquals(8, values.head.slice().length.intValueExact());
+    }
+
+    @Test
+    public void emptyRun() {
+        final Optional<ParseState> result = JPEG_SCAN.parse(env(stream(0xff, 0xd9)));
+        assertTrue(result.isPresent());
+        assertEquals(0, result.get().offset.intValueExact());
+        assertTrue(result.get().order.isEmpty());
+        assertTrue(scan("data", NOT_MARKER).parse(env(stream())).isPresent());
+    }
+
+    @Test
+    public void escapeAtEndOfInput() {
+        assertEquals(2, JPEG_SCAN.parse(env(stream(1, 2, 0xff))).get().offset.intValueExact());
+        assertEquals(4, JPEG_SCAN.parse(env(stream(1, 2, 0xff, 0))).get().offset.intValueExact());
+        assertEquals(3, scan("data", NOT_MARKER).parse(env(stream(1, 2, 3))).get().offset.intValueExact());
+    }
+
+    @Test
+    public void escapeAcrossWindows() {
+        final byte[] data = new byte[300];
+        Arrays.fill(data, (byte) 1);
+        data[255] = (byte) 0xff;
+        data[256] = 0;
+        data[298] = (byte) 0xff;
+        data[299] = (byte) 0xd9;
+        assertEquals(298, JPEG_SCAN.parse(env(createFromByteStream(new InMemoryByteStream(data)))).get().offset.intValueExact());
+    }
+
+    @Test
+    public void sameAsRepetition() {
+        final Token repetition = rep(cho(def("data", 1, NOT_MARKER), def("data", 2, ESCAPE)));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            final int value = random.nextInt(256);
+            output.write(value);
+            if (value == 0xff) {
+                output.write(random.nextInt(10) == 0 ? 0xd3 : 0);
+            }
+        }
+        output.write(0xff);
+        output.write(0xd9);
+        final byte[] data = output.toByteArray();
+        final ParseState parseState = createFromByteStream(new InMemoryByteStream(data));
+        final ParseState expected = repetition.parse(env(parseState)).get();
+        final ParseState actual = JPEG_SCAN.parse(env(parseState)).get();
+        assertEquals(expected.offset, actual.offset);
+        assertEquals(data.length - 2, actual.offset.intValueExact());
+        assertArrayEquals(Arrays.copyOf(data, data.length - 2), getAllValues(actual.order, "data").head.value());
+    }
+
+    @Test
+    public void escapeSizes() {
+        final Token token = seq(def("size", 1), scan("data", NOT_MARKER, last(ref("size")), or(eq(con(0xff)), eq(con(0xff, 0, 0)))));
+        assertEquals(4, token.parse(env(stream(1, 1, 0xff, 2))).get().offset.intValueExact());
+        assertEquals(2, token.parse(env(stream(2, 1, 0xff, 0xff, 2))).get().offset.intValueExact());
+        assertEquals(6, token.parse(env(stream(3, 1, 0xff, 0, 0, 2, 0xff, 1))).get().offset.intValueExact());
+        assertEquals(4, token.parse(env(stream(1, 1, 0xff, 2))).get().offset.intValueExact());
+    }
+
+    @Test
+    public void contextDependentPredicate() {
+        final Token token = seq(def("marker", 1), scan("data", not(eqNum(last(ref("marker"))))));
+        final Optional<ParseState> result = token.parse(env(stream(3, 1, 2, 4, 3, 5)));
+        assertTrue(result.isPresent());
+        assertEquals(BigInteger.valueOf(4), result.get().offset);
+    }
+
+    @Test
+    public void invalidEscapeSize() {
+        assertFalse(scan("data", NOT_MARKER, last(ref("none")), ESCAPE).parse(env(stream(1))).isPresent());
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.div;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.last;
+import static io.parsingdata.metal.Shorthand.not;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.psub;
+import static io.parsingdata.metal.Shorthand.ref;
+import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.sub;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.data.selection.ByType.getReferences;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.Shorthand;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.data.callback.Callback;
+import io.parsingdata.metal.data.callback.Callbacks;
+import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class SubTest {
+
+    private static Token table(final BiFunction<Token, ValueExpression, Token> sub) {
+        return seq(def("count", con(1)),
+                   repn(def("offset", con(1)), last(ref("count"))),
+                   sub.apply(seq("record", def("size", con(1)), def("data", last(ref("size")))), ref("offset")));
+    }
+
+    private static Token linkedList(final BiFunction<Token, ValueExpression, Token> sub) {
+        return seq("linkedlist",
+                   def("header", con(1), eq(con(0))),
+                   def("next", con(1)),
+                   opt(sub.apply(token("linkedlist"), last(ref("next")))),
+                   def("footer", con(1), eq(con(1))));
+    }
+
+    private static ParseState tableInput(final int count) {
+        final byte[] data = new byte[1 + count + count * 3];
+        data[0] = (byte) count;
+        for (int i = 0; i < count; i++) {
+            // Every fourth entry points to the same record as the one before it.
+            final int record = i % 4 == 3 ? i - 1 : i;
+            data[1 + i] = (byte) (1 + count + record * 3);
+            data[1 + count + i * 3] = 2;
+            data[1 + count + i * 3 + 1] = (byte) i;
+            data[1 + count + i * 3 + 2] = (byte) (i * 7);
+        }
+        return createFromByteStream(new InMemoryByteStream(data));
+    }
+
+    private static void checkNullArgument(final Supplier<Token> constructor) {
+        try {
+            constructor.get();
+            fail("Should have thrown an IllegalArgumentException.");
+        }
+        catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().endsWith("may not be null."));
+        }
+    }
+
+    private static final Callbacks SEQUENTIAL = Callbacks.create().add(new Callback() {
+        @Override public void handleSuccess(final Token token, final ParseState before, final ParseState after) {}
+        @Override public void handleFailure(final Token token, final ParseState before) {}
+    });
+
+    private static void checkParallel(final Token token, final ParseState input) {
+        // Setting callbacks disables parallel parsing, which makes the parse graphs comparable since they share their definitions.
+        final Optional<ParseState> sequential = token.parse(env(input, SEQUENTIAL, enc()));
+        final Optional<ParseState> parallel = token.parse(env(input, enc()));
+        assertTrue(sequential.isPresent());
+        assertEquals(sequential.get().order, parallel.get().order);
+        assertEquals(sequential.get().offset, parallel.get().offset);
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        final ParseState input = tableInput(64);
+        checkParallel(table(Shorthand::psub), input);
+        assertEquals(16, getReferences(table(Shorthand::psub).parse(env(input, enc())).get().order).size);
+        assertEquals(table(Shorthand::sub).parse(env(input, enc())).get().order.toString(), table(Shorthand::psub).parse(env(input, enc())).get().order.toString());
+    }
+
+    @Test
+    public void parallelLinkedList() {
+        checkParallel(linkedList(Shorthand::psub), stream(0, 8, 1, 42, 0, 12, 1, 84, 0, 4, 1));
+        checkParallel(linkedList(Shorthand::psub), stream(0, 0, 1));
+        checkParallel(linkedList(Shorthand::psub), stream(0, 4, 1, 21, 0, 0, 1));
+    }
+
+    @Test
+    public void parallelNestedSub() {
+        // Both records refer to the same leaf, which is only parsed once sequentially, so the records may not be parsed concurrently.
+        final Token record = seq("record", def("link", con(1)), sub(def("leaf", con(1)), last(ref("link"))));
+        final Token table = seq(def("count", con(1)), repn(def("offset", con(1)), last(ref("count"))), psub(record, ref("offset")));
+        final ParseState input = stream(2, 3, 4, 5, 5, 9);
+        checkParallel(table, input);
+        assertEquals(1, getReferences(table.parse(env(input, enc())).get().order).size);
+        // A record that refers to itself through a nested Sub as well.
+        final Token node = seq("node", def("value", con(1)), def("next", con(1)), sub(token("node"), last(ref("next"))));
+        checkParallel(seq(def("count", con(1)), repn(def("offset", con(1)), last(ref("count"))), psub(node, ref("offset"))), stream(2, 3, 5, 7, 5, 8, 3));
+    }
+
+    @Test
+    public void parallelFailsIfAnyLocationFails() {
+        final Token token = psub(def("a", con(1), not(eq(con(0)))), ref("offset"));
+        assertFalse(seq(def("offset", con(1)), def("offset", con(1)), def("offset", con(1)), token).parse(env(stream(2, 3, 1, 0))).isPresent());
+        assertTrue(seq(def("offset", con(1)), def("offset", con(1)), def("offset", con(1)), token).parse(env(stream(2, 1, 1, 5))).isPresent());
+    }
+
+    @Test
+    public void parallelFailsOnNotAValue() {
+        assertFalse(psub(def("a", con(1)), div(con(1), con(0))).parse(env(stream(1, 2, 3))).isPresent());
+    }
+
+    @Test
+    public void parallelIsPartOfIdentity() {
+        final Token sequential = sub(def("a", con(1)), con(0));
+        final Token parallel = psub(def("a", con(1)), con(0));
+        assertNotEquals(sequential, parallel);
+        assertNotEquals(sequential.hashCode(), parallel.hashCode());
+        assertEquals("Sub(Def(a,Const(0x01)),Const(0x00),parallel)", parallel.toString());
+    }
+
+    @Test
+    public void nullArguments() {
+        final Token token = def("a", con(1));
+        checkNullArgument(() -> new Sub(null, token, con(0), null));
+        checkNullArgument(() -> new Sub("name", null, con(0), null));
+        checkNullArgument(() -> new Sub("name", token, null, null));
+        checkNullArgument(() -> new Sub(null, token, con(0), null, true));
+        checkNullArgument(() -> new Sub("name", null, con(0), null, true));
+        checkNullArgument(() -> new Sub("name", token, null, null, true));
+    }
+
+}
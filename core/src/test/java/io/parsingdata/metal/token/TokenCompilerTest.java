@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.Shorthand.con;
+import static io.parsingdata.metal.Shorthand.def;
+import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.opt;
+import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.seq;
+import static io.parsingdata.metal.Shorthand.token;
+import static io.parsingdata.metal.token.Token.NO_NAME;
+import static io.parsingdata.metal.token.TokenCompiler.compile;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+import static io.parsingdata.metal.util.EnvironmentFactory.env;
+import static io.parsingdata.metal.util.ParseStateFactory.stream;
+import static io.parsingdata.metal.util.TokenDefinitions.any;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseState;
+
+public class TokenCompilerTest {
+
+    private final TokenRef reference = (TokenRef) token("in");
+
+    private Token createNamedTokens(final String firstSeq, final String secondSeq) {
+        return
+            seq(firstSeq,
+                seq(secondSeq,
+                    def("value", 1, eq(con(21))),
+                    opt(reference)
+                ),
+                def("footer", 1, eq(con(42)))
+            );
+    }
+
+    private void checkSameResult(final Token token, final ParseState parseState) {
+        final Optional<ParseState> expected = token.parse(env(parseState));
+        assertEquals(expected, compile(token).parse(env(parseState)));
+        assertEquals(expected, compile(token).parse(parseState, enc()));
+    }
+
+    @Test
+    public void resolveEnclosingToken() {
+        final Token token = createNamedTokens("out", "in");
+        assertEquals(Optional.of(((Seq) token).tokens.head), compile(token).resolve(reference));
+        checkSameResult(token, stream(21, 42));
+        checkSameResult(token, stream(21, 21, 21, 42));
+        checkSameResult(token, stream(21, 21, 21));
+    }
+
+    @Test
+    public void resolveRootToken() {
+        final Token token = createNamedTokens("in", "out");
+        assertEquals(Optional.of(token), compile(token).resolve(reference));
+        checkSameResult(token, stream(21, 42, 21, 42));
+        checkSameResult(token, stream(21, 42, 42));
+    }
+
+    @Test
+    public void ambiguousReferenceNotResolved() {
+        final Token token = createNamedTokens("in", "in");
+        assertFalse(compile(token).resolve(reference).isPresent());
+        checkSameResult(token, stream(21, 42, 21, 42));
+        checkSameResult(token, stream(21, 21, 42));
+    }
+
+    @Test
+    public void nonEnclosingReferenceNotResolved() {
+        final Token token = seq(rep(seq("in", any("a"), any("b"))), reference);
+        assertFalse(compile(token).resolve(reference).isPresent());
+        checkSameResult(token, stream(1, 2, 3, 4));
+    }
+
+    @Test
+    public void unknownTokenNotResolved() {
+        final Token unknown = new Token("unknown", null) {
+            @Override
+            protected Optional<ParseState> parseImpl(final Environment environment) {
+                return Optional.of(environment.parseState);
+            }
+        };
+        final Token token = seq("in", any("a"), opt(reference), unknown);
+        assertFalse(compile(token).resolve(reference).isPresent());
+        checkSameResult(token, stream(1, 2, 3));
+    }
+
+    @Test
+    public void openBranchWithReferencedName() {
+        // The open branch named "in" is found by the reference before the compiled token.
+        final Token token = createNamedTokens("out", "in");
+        checkSameResult(token, stream(21, 21, 42).addBranch(any("in")));
+    }
+
+    @Test
+    public void sharedScopes() {
+        final CompiledToken compiled = compile(createNamedTokens("out", "in"));
+        assertEquals("out", compiled.extendScope(NO_NAME, "out"));
+        assertEquals("out.in.value", compiled.extendScope("out.in", "value"));
+        assertSame(compiled.extendScope("out.in", "value"), compiled.extendScope("out.in", "value"));
+        assertEquals("out.in.other", compiled.extendScope("out.in", "other"));
+        assertEquals("a.b", CompiledToken.NONE.extendScope("a", "b"));
+        assertEquals("b", CompiledToken.NONE.extendScope(NO_NAME, "b"));
+    }
+
+    @Test
+    public void compiledEquality() {
+        final Token token = createNamedTokens("out", "in");
+        assertEquals(compile(token), compile(token));
+        assertEquals(compile(token).hashCode(), compile(token).hashCode());
+        assertNotEquals(compile(token), compile(createNamedTokens("in", "out")));
+        assertNotEquals(compile(token), null);
+        assertEquals("CompiledToken(" + token + ")", compile(token).toString());
+        assertTrue(compile(token).parse(env(stream(21, 42))).isPresent());
+    }
+
+}
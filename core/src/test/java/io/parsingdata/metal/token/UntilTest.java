@@ -23,28 +23,37 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import static io.parsingdata.metal.Shorthand.EMPTY;
+import static io.parsingdata.metal.Shorthand.cho;
 import static io.parsingdata.metal.Shorthand.con;
 import static io.parsingdata.metal.Shorthand.def;
 import static io.parsingdata.metal.Shorthand.eq;
+import static io.parsingdata.metal.Shorthand.gtNum;
 import static io.parsingdata.metal.Shorthand.last;
 import static io.parsingdata.metal.Shorthand.mod;
 import static io.parsingdata.metal.Shorthand.post;
 import static io.parsingdata.metal.Shorthand.ref;
 import static io.parsingdata.metal.Shorthand.repn;
+import static io.parsingdata.metal.Shorthand.seq;
 import static io.parsingdata.metal.Shorthand.until;
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
 import static io.parsingdata.metal.data.selection.ByName.getAllValues;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
 import static io.parsingdata.metal.util.EncodingFactory.signed;
 import static io.parsingdata.metal.util.EnvironmentFactory.env;
 import static io.parsingdata.metal.util.ParseStateFactory.stream;
 
 import java.util.Optional;
+import java.util.Random;
 
 import org.junit.Test;
 
 import io.parsingdata.metal.data.ImmutableList;
 import io.parsingdata.metal.data.ParseState;
 import io.parsingdata.metal.data.ParseValue;
+import io.parsingdata.metal.data.callback.Callback;
+import io.parsingdata.metal.data.callback.Callbacks;
 import io.parsingdata.metal.expression.value.ValueExpression;
+import io.parsingdata.metal.util.InMemoryByteStream;
 
 public class UntilTest {
 
@@ -75,6 +84,37 @@ public class UntilTest {
         assertEquals(INPUT_1 + '\n', values.tail.tail.head.asString());
     }
 
+    @Test
+    public void searchTerminator() {
+        final byte[] data = new byte[100000];
+        new Random(42).nextBytes(data);
+        for (final int position : new int[] { 10, 254, 70000, 99997 }) {
+            data[position] = 1;
+            data[position + 1] = 2;
+            data[position + 2] = 3;
+        }
+        final Token constant = def("terminator", 3, eq(con(1, 2, 3)));
+        assertEquals(13, checkSearch(until("value", constant), data).get().offset.intValueExact());
+        assertEquals(70003, checkSearch(until("value", con(300), con(1), con(70000), constant), data).get().offset.intValueExact());
+        assertFalse(checkSearch(until("value", con(300), con(1), con(69999), constant), data).isPresent());
+        checkSearch(until("value", con(0), con(2), con(100000), constant), data);
+        checkSearch(until("value", con(1), con(3), con(100000), constant), data);
+        checkSearch(until("value", con(99998), con(1), con(100000), constant), data);
+        checkSearch(until("value", cho(seq(def("a", 1, eq(con(2))), def("b", 1, eq(con(3)))), constant)), data);
+        checkSearch(until("value", seq(def("a", 1, gtNum(con(250))), def("b", 1), def("c", 1, eq(con(255))))), data);
+    }
+
+    private Optional<ParseState> checkSearch(final Token token, final byte[] data) {
+        final ParseState parseState = createFromByteStream(new InMemoryByteStream(data));
+        final Callbacks callbacks = Callbacks.create().add(new Callback() {
+            @Override public void handleSuccess(final Token token, final ParseState before, final ParseState after) {}
+            @Override public void handleFailure(final Token token, final ParseState before) {}
+        });
+        final Optional<ParseState> result = token.parse(env(parseState));
+        assertEquals(token.parse(env(parseState, callbacks, enc())), result);
+        return result;
+    }
+
     @Test
     public void allDefaultValueExpressions() {
         assertTrue(until("value", def("terminator", 1, eq(con(0)))).parse(env(stream(1, 2, 3, 0))).isPresent());
@@ -28,14 +28,16 @@ import static io.parsingdata.metal.Shorthand.not;
 import static io.parsingdata.metal.Shorthand.or;
 import static io.parsingdata.metal.Shorthand.ref;
 import static io.parsingdata.metal.Shorthand.rep;
+import static io.parsingdata.metal.Shorthand.scan;
 import static io.parsingdata.metal.Shorthand.seq;
 import static io.parsingdata.metal.Shorthand.sub;
 
 import io.parsingdata.metal.token.Token;
 
 /*
- * Since nearly every byte of the scan data is individually matched, this
- * approach will lead to stack overflow on files of realistic size.
+ * The entropy-coded scan data is parsed as a single value, consisting of all
+ * bytes except 0xff, which may only occur in stuffed (0xff00) and restart
+ * (0xffd0-0xffd7) markers.
  */
 public final class JPEG {
 
@@ -69,8 +71,7 @@ public final class JPEG {
                 def(IDENTIFIER, con(1), eq(con(0xda))),
                 def(LENGTH, con(2)),
                 def(PAYLOAD, last(sub(last(ref(LENGTH)), con(2)))),
-                rep(cho(def("scandata", con(1), not(eq(con(0xff)))),
-                        def("escape", con(2), or(eq(con(0xff00)), and(gtNum(con(0xffcf)), ltNum(con(0xffd8))))))));
+                scan("scandata", not(eq(con(0xff))), 2, or(eq(con(0xff00)), and(gtNum(con(0xffcf)), ltNum(con(0xffd8))))));
 
     public static final Token FORMAT =
             seq("JPEG",
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013-2020 Netherlands Forensic Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.parsingdata.metal.format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.parsingdata.metal.data.ParseState.createFromByteStream;
+import static io.parsingdata.metal.util.EncodingFactory.enc;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import io.parsingdata.metal.data.Environment;
+import io.parsingdata.metal.data.ParseState;
+import io.parsingdata.metal.token.BatchParser;
+import io.parsingdata.metal.token.Token;
+import io.parsingdata.metal.util.InMemoryByteStream;
+
+public class ConcurrentFormatTest {
+
+    private static final int COPIES = 50;
+
+    private static InMemoryByteStream input(final String path) throws URISyntaxException, IOException {
+        return new InMemoryByteStream(Files.readAllBytes(Paths.get(ConcurrentFormatTest.class.getResource(path).toURI())));
+    }
+
+    private static void checkConcurrent(final Token format, final String... paths) throws URISyntaxException, IOException {
+        final List<InMemoryByteStream> inputs = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            inputs.add(input(paths[i % paths.length]));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            final List<Optional<ParseState>> results = new BatchParser(format, enc(), executor).parseAll(inputs);
+            for (int i = 0; i < COPIES; i++) {
+                final Optional<ParseState> expected = format.parse(new Environment(createFromByteStream(inputs.get(i)), enc()));
+                assertTrue(expected.isPresent());
+                assertEquals(expected, results.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void zip() throws URISyntaxException, IOException {
+        checkConcurrent(ZIP.FORMAT, "/singlefile-zip30-ubuntu.zip", "/multifile-zip30-ubuntu.zip");
+    }
+
+    @Test
+    public void png() throws URISyntaxException, IOException {
+        checkConcurrent(PNG.FORMAT, "/test.png");
+    }
+
+    @Test
+    public void jpeg() throws URISyntaxException, IOException {
+        checkConcurrent(JPEG.FORMAT, "/test.jpg");
+    }
+
+}